@@ -123,6 +123,7 @@
 }
 
 -keep class org.coolreader.crengine.Selection {
+    <init>();
     java.lang.String startPos;
     java.lang.String endPos;
     java.lang.String text;
@@ -134,6 +135,17 @@
     int percent;
 }
 
+-keep class org.coolreader.crengine.SearchResult {
+    <init>();
+    java.lang.String startPos;
+    java.lang.String endPos;
+    int page;
+    int percent;
+    java.lang.String snippet;
+    int matchStart;
+    int matchEnd;
+}
+
 # Found in cr3engine.cpp
 
 -keep class org.coolreader.crengine.Engine {
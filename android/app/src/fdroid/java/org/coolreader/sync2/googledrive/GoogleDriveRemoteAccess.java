@@ -32,6 +32,7 @@ import org.coolreader.sync2.OnSignInListener;
 import org.coolreader.sync2.OnSignOutListener;
 import org.coolreader.sync2.RemoteAccess;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.Map;
 
@@ -127,6 +128,17 @@ public class GoogleDriveRemoteAccess implements RemoteAccess {
 		}
 	}
 
+	@Override
+	public void writeFile(String filePath, InputStream stream, long length, Map<String, String> customProps, OnOperationCompleteListener<Boolean> completeListener) {
+		try {
+			stream.close();
+		} catch (IOException ignored) {}
+		if (null != completeListener) {
+			completeListener.onCompleted(null, false);
+			completeListener.onFailed(new NotImplementedException());
+		}
+	}
+
 	@Override
 	public void trash(String filePath, OnOperationCompleteListener<Boolean> completeListener) {
 		if (null != completeListener) {
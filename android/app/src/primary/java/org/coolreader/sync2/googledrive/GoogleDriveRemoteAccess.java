@@ -41,7 +41,11 @@ import com.google.android.gms.tasks.Tasks;
 import com.google.api.client.extensions.android.http.AndroidHttp;
 import com.google.api.client.googleapis.extensions.android.gms.auth.GoogleAccountCredential;
 import com.google.api.client.googleapis.extensions.android.gms.auth.UserRecoverableAuthIOException;
+import com.google.api.client.googleapis.media.MediaHttpUploader;
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.client.http.AbstractInputStreamContent;
 import com.google.api.client.http.ByteArrayContent;
+import com.google.api.client.http.InputStreamContent;
 import com.google.api.client.json.gson.GsonFactory;
 import com.google.api.client.util.DateTime;
 import com.google.api.services.drive.Drive;
@@ -145,17 +149,22 @@ public class GoogleDriveRemoteAccess implements RemoteAccess {
 	private GoogleSignInAccount m_account;
 	private Drive m_googleDriveService;
 	private Executor m_executor;
+	// file contents are fetched in parallel, metadata requests are kept serialized in m_executor
+	private Executor m_downloadExecutor;
 	private FolderListCache m_folderListCache;
 	private boolean m_needSignInRepeat = false;
 	private final Object m_cacheLocker = new Object();
 
 	private static final char EMULATED_PATH_SEPARATOR = '/';
+	private static final int UPLOAD_CHUNK_SIZE = MediaHttpUploader.DEFAULT_CHUNK_SIZE;
+	private static final int DOWNLOAD_THREADS = 4;
 	private static final String EMULATED_ROOT_PATH = "/";
 
 	public GoogleDriveRemoteAccess(Activity activity) {
 		m_activity = activity;
 		m_executor = Executors.newSingleThreadExecutor();
 		//m_executor = Executors.newFixedThreadPool(1);
+		m_downloadExecutor = Executors.newFixedThreadPool(DOWNLOAD_THREADS);
 		m_folderListCache = new FolderListCache();
 		if (!isServicesAvailable())
 			Log.e(TAG, "Google Play Services NOT available!");
@@ -165,6 +174,7 @@ public class GoogleDriveRemoteAccess implements RemoteAccess {
 		m_activity = activity;
 		m_executor = Executors.newSingleThreadExecutor();
 		//m_executor = Executors.newFixedThreadPool(1);
+		m_downloadExecutor = Executors.newFixedThreadPool(DOWNLOAD_THREADS);
 		m_folderListCache = new FolderListCache(keepAlive);
 		if (!isServicesAvailable()) {
 			Log.e(TAG, "Google Play Services NOT available!");
@@ -333,7 +343,33 @@ public class GoogleDriveRemoteAccess implements RemoteAccess {
 
 	@Override
 	public void writeFile(String filePath, byte[] data, Map<String, String> customProps, OnOperationCompleteListener<Boolean> completeListener) {
-		writeFile_wrapper(filePath, data, customProps, completeListener);
+		writeFile_wrapper(filePath, null != data ? new ByteArrayContent(null, data) : null, customProps, completeListener);
+	}
+
+	@Override
+	public void writeFile(String filePath, InputStream stream, long length, Map<String, String> customProps, OnOperationCompleteListener<Boolean> completeListener) {
+		// stream must be closed on any result, including errors before upload is started
+		writeFile_wrapper(filePath, new InputStreamContent(null, stream).setLength(length), customProps, new OnOperationCompleteListener<Boolean>() {
+			@Override
+			public void onCompleted(Boolean result, boolean ok) {
+				closeStream(stream);
+				if (null != completeListener)
+					completeListener.onCompleted(result, ok);
+			}
+
+			@Override
+			public void onFailed(Exception e) {
+				closeStream(stream);
+				if (null != completeListener)
+					completeListener.onFailed(e);
+			}
+		});
+	}
+
+	private static void closeStream(InputStream stream) {
+		try {
+			stream.close();
+		} catch (IOException ignored) {}
 	}
 
 	@Override
@@ -866,7 +902,23 @@ public class GoogleDriveRemoteAccess implements RemoteAccess {
 		}
 	}
 
-	private void createFile_impl(final String fileName, final String parentPath, String parentId, final byte[] data, Map<String, String> customProps, final OnOperationCompleteListener<Boolean> completeListener) {
+	/**
+	 * Stream content is uploaded by resumable upload in fixed size chunks,
+	 * so memory usage doesn't depend on file size and failed chunk is resent alone.
+	 */
+	private static void setupMediaUpload(AbstractGoogleClientRequest<?> request, AbstractInputStreamContent content) {
+		MediaHttpUploader uploader = request.getMediaHttpUploader();
+		if (null == uploader || content instanceof ByteArrayContent)
+			return;
+		long length = -1;
+		try {
+			length = content.getLength();
+		} catch (IOException ignored) {}
+		uploader.setDirectUploadEnabled(length >= 0 && length <= UPLOAD_CHUNK_SIZE);
+		uploader.setChunkSize(UPLOAD_CHUNK_SIZE);
+	}
+
+	private void createFile_impl(final String fileName, final String parentPath, String parentId, final AbstractInputStreamContent content, Map<String, String> customProps, final OnOperationCompleteListener<Boolean> completeListener) {
 		if (null == parentId || parentId.isEmpty())
 			parentId = "root";
 		final String finalParentId = parentId;
@@ -879,10 +931,9 @@ public class GoogleDriveRemoteAccess implements RemoteAccess {
 					.setName(fileName)
 					.setMimeType(mimeType)
 					.setAppProperties(customProps);
-			ByteArrayContent content = null;
-			if (null != data)
-				content = new ByteArrayContent(null, data);
-			File googleFile = m_googleDriveService.files().create(file, content).setFields("id").execute();
+			Drive.Files.Create request = m_googleDriveService.files().create(file, content).setFields("id");
+			setupMediaUpload(request, content);
+			File googleFile = request.execute();
 			if (null == googleFile)
 				throw new IOException("Null result when requesting file creation.");
 			return googleFile;
@@ -904,12 +955,13 @@ public class GoogleDriveRemoteAccess implements RemoteAccess {
 		});
 	}
 
-	private void updateFile_impl(final FileMetadata meta, final String parentPath, final byte[] data, Map<String, String> customProps, final OnOperationCompleteListener<Boolean> completeListener) {
+	private void updateFile_impl(final FileMetadata meta, final String parentPath, final AbstractInputStreamContent content, Map<String, String> customProps, final OnOperationCompleteListener<Boolean> completeListener) {
 		Tasks.call(m_executor, () -> {
 			// metadata can be 'application/octet-stream', 'application/vnd.google-apps.file'
-			ByteArrayContent content = new ByteArrayContent(null, data);
 			File file = new File().setAppProperties(customProps);
-			File googleFile = m_googleDriveService.files().update(meta.id, file, content).execute();
+			Drive.Files.Update request = m_googleDriveService.files().update(meta.id, file, content);
+			setupMediaUpload(request, content);
+			File googleFile = request.execute();
 			if (null == googleFile)
 				throw new IOException("Null result when requesting file creation.");
 			return googleFile;
@@ -931,7 +983,7 @@ public class GoogleDriveRemoteAccess implements RemoteAccess {
 		});
 	}
 
-	private void writeFile_wrapper(final String filePath, final byte[] data, Map<String, String> customProps, final OnOperationCompleteListener<Boolean> completeListener) {
+	private void writeFile_wrapper(final String filePath, final AbstractInputStreamContent data, Map<String, String> customProps, final OnOperationCompleteListener<Boolean> completeListener) {
 		// 1. Check if file already exist
 		final String finalFilePath = simplifyFilePath(filePath);
 		stat_wrapper(finalFilePath, true, new OnOperationCompleteListener<FileMetadata>() {
@@ -1000,9 +1052,9 @@ public class GoogleDriveRemoteAccess implements RemoteAccess {
 				if (ok) {
 					if (null != meta) {
 						// File found, get his content
-						Tasks.call(m_executor, () -> {
+						Tasks.call(m_downloadExecutor, () -> {
 							return m_googleDriveService.files().get(meta.id).executeMediaAsInputStream();
-						}).addOnSuccessListener(m_executor, inputStream -> {
+						}).addOnSuccessListener(m_downloadExecutor, inputStream -> {
 							if (null != completeListener) {
 								completeListener.onCompleted(inputStream, true);
 							}
@@ -1246,6 +1246,9 @@ static JNINativeMethod sDocViewMethods[] = {
   {"checkLinkInternal", "(III)Ljava/lang/String;", (void*)Java_org_coolreader_crengine_DocView_checkLinkInternal},
   {"goLinkInternal", "(Ljava/lang/String;)I", (void*)Java_org_coolreader_crengine_DocView_goLinkInternal},
   {"moveSelectionInternal", "(Lorg/coolreader/crengine/Selection;II)Z", (void*)Java_org_coolreader_crengine_DocView_moveSelectionInternal},
+  {"getSentencesInternal", "(Ljava/lang/String;II)[Lorg/coolreader/crengine/Selection;", (void*)Java_org_coolreader_crengine_DocView_getSentencesInternal},
+  {"findAllTextInternal", "(Ljava/lang/String;IIII)[Lorg/coolreader/crengine/SearchResult;", (void*)Java_org_coolreader_crengine_DocView_findAllTextInternal},
+  {"selectTextInternal", "(Ljava/lang/String;Ljava/lang/String;)Z", (void*)Java_org_coolreader_crengine_DocView_selectTextInternal},
   {"swapToCacheInternal", "()I", (void*)Java_org_coolreader_crengine_DocView_swapToCacheInternal},
   {"checkImageInternal", "(IILorg/coolreader/crengine/ImageInfo;)Z", (void*)Java_org_coolreader_crengine_DocView_checkImageInternal},
   {"drawImageInternal", "(Landroid/graphics/Bitmap;ILorg/coolreader/crengine/ImageInfo;)Z", (void*)Java_org_coolreader_crengine_DocView_drawImageInternal},
@@ -2255,6 +2255,162 @@ JNIEXPORT jboolean JNICALL Java_org_coolreader_crengine_DocView_moveSelectionInt
     return JNI_FALSE;
 }
 
+/*
+ * Class:     org_coolreader_crengine_DocView
+ * Method:    getSentencesInternal
+ * Signature: (Ljava/lang/String;II)[Lorg/coolreader/crengine/Selection;
+ */
+JNIEXPORT jobjectArray JNICALL Java_org_coolreader_crengine_DocView_getSentencesInternal
+  (JNIEnv * _env, jobject _this, jstring _startPos, jint _skip, jint _maxCount)
+{
+    CRJNIEnv env(_env);
+    DocViewNative * p = getNative(_env, _this);
+    if (!p) {
+    	CRLog::error("Cannot get native view");
+    	return NULL;
+    }
+	if (!p->_docview->isDocumentOpened()) {
+		CRLog::debug("getSentencesInternal: document is not opened");
+		return NULL;
+	}
+    p->_docview->checkPos();
+    lString32 str = env.fromJavaString(_startPos);
+    ldomXPointerEx pos;
+    if ( !str.empty() )
+        pos = p->_docview->getDocument()->createXPointer(str);
+    else
+        pos = p->_docview->getBookmark();
+    // collect ranges first, then convert them in one pass
+    LVArray<ldomXRange> ranges;
+    if ( !pos.isNull() && pos.thisSentenceStart() ) {
+        bool found = true;
+        for ( int i=0; i<_skip && found; i++ )
+            found = pos.nextSentenceStart();
+        while ( found && ranges.length()<_maxCount ) {
+            ldomXPointerEx end(pos);
+            end.thisSentenceEnd();
+            ranges.add( ldomXRange(pos, end) );
+            found = pos.nextSentenceStart();
+        }
+    }
+    jclass cls = _env->FindClass("org/coolreader/crengine/Selection");
+    jmethodID mid = _env->GetMethodID(cls, "<init>", "()V");
+    jobjectArray array = _env->NewObjectArray(ranges.length(), cls, NULL);
+    int pages = p->_docview->getPageCount();
+    for ( int i=0; i<ranges.length(); i++ ) {
+        // release local references of each item, there may be many items
+        _env->PushLocalFrame(16);
+        ldomXRange & r = ranges[i];
+        jobject obj = _env->NewObject(cls, mid);
+        CRObjectAccessor sel(_env, obj);
+        CRStringField(sel, "startPos").set( r.getStart().toString() );
+        CRStringField(sel, "endPos").set( r.getEnd().toString() );
+        CRStringField(sel, "text").set( r.getRangeText( '\n', 8192 ) );
+        lvPoint startpt ( r.getStart().toPoint() );
+        lvPoint endpt ( r.getEnd().toPoint() );
+        CRIntField(sel, "startX").set( startpt.x );
+        CRIntField(sel, "startY").set( startpt.y );
+        CRIntField(sel, "endX").set( endpt.x );
+        CRIntField(sel, "endY").set( endpt.y );
+        int page = p->_docview->getBookmarkPage(r.getStart());
+        CRIntField(sel, "percent").set( pages>1 ? 10000 * page/(pages-1) : 0 );
+        _env->SetObjectArrayElement(array, i, obj);
+        _env->PopLocalFrame(NULL);
+    }
+    return array;
+}
+
+/*
+ * Class:     org_coolreader_crengine_DocView
+ * Method:    findAllTextInternal
+ * Signature: (Ljava/lang/String;IIII)[Lorg/coolreader/crengine/SearchResult;
+ */
+JNIEXPORT jobjectArray JNICALL Java_org_coolreader_crengine_DocView_findAllTextInternal
+  (JNIEnv * _env, jobject _this, jstring jpattern, jint caseInsensitive, jint startY, jint endY, jint maxCount)
+{
+    CRJNIEnv env(_env);
+    DocViewNative * p = getNative(_env, _this);
+    if (!p) {
+    	CRLog::error("Cannot get native view");
+    	return NULL;
+    }
+    if ( !p->_docview->isDocumentOpened() )
+        return NULL;
+    p->_docview->checkPos();
+    lString32 pattern = env.fromJavaString(jpattern);
+    LVArray<ldomWord> words;
+    if ( !pattern.empty() && maxCount > 0 )
+        p->_docview->getDocument()->findText( pattern, caseInsensitive!=0, false, startY, endY, words, maxCount, 0 );
+    jclass cls = _env->FindClass("org/coolreader/crengine/SearchResult");
+    jmethodID mid = _env->GetMethodID(cls, "<init>", "()V");
+    jobjectArray array = _env->NewObjectArray(words.length(), cls, NULL);
+    int pages = p->_docview->getPageCount();
+    const int contextChars = 40;
+    for ( int i=0; i<words.length(); i++ ) {
+        // release local references of each item, there may be many items
+        _env->PushLocalFrame(16);
+        ldomWord & word = words[i];
+        ldomXPointer start = word.getStartXPointer();
+        jobject obj = _env->NewObject(cls, mid);
+        CRObjectAccessor res(_env, obj);
+        CRStringField(res, "startPos").set( start.toString() );
+        CRStringField(res, "endPos").set( word.getEndXPointer().toString() );
+        // text of match with some context around it, inside of the same text node
+        lString32 text = word.getNode()->getText();
+        int from = word.getStart() > contextChars ? word.getStart() - contextChars : 0;
+        int to = word.getEnd() + contextChars < (int)text.length() ? word.getEnd() + contextChars : text.length();
+        CRStringField(res, "snippet").set( text.substr(from, to - from) );
+        CRIntField(res, "matchStart").set( word.getStart() - from );
+        CRIntField(res, "matchEnd").set( word.getEnd() - from );
+        int page = p->_docview->getBookmarkPage(start);
+        CRIntField(res, "page").set( page );
+        CRIntField(res, "percent").set( pages>1 ? 10000 * page/(pages-1) : 0 );
+        _env->SetObjectArrayElement(array, i, obj);
+        _env->PopLocalFrame(NULL);
+    }
+    return array;
+}
+
+/*
+ * Class:     org_coolreader_crengine_DocView
+ * Method:    selectTextInternal
+ * Signature: (Ljava/lang/String;Ljava/lang/String;)Z
+ */
+JNIEXPORT jboolean JNICALL Java_org_coolreader_crengine_DocView_selectTextInternal
+  (JNIEnv * _env, jobject _this, jstring jstartPos, jstring jendPos)
+{
+    CRJNIEnv env(_env);
+    DocViewNative * p = getNative(_env, _this);
+    if (!p) {
+    	CRLog::error("Cannot get native view");
+    	return JNI_FALSE;
+    }
+    if ( !p->_docview->isDocumentOpened() )
+        return JNI_FALSE;
+    ldomDocument * doc = p->_docview->getDocument();
+    ldomXPointer start = doc->createXPointer(env.fromJavaString(jstartPos));
+    ldomXPointer end = doc->createXPointer(env.fromJavaString(jendPos));
+    if ( start.isNull() || end.isNull() )
+        return JNI_FALSE;
+    ldomXRange r( start, end );
+    r.setFlags(1);
+    p->_docview->selectRange( r );
+    // move to selection only if its start is not visible, like sentence selection commands do
+    lvPoint pt = start.toPoint();
+    if ( pt.y >= 0 ) {
+        lvRect rc;
+        p->_docview->GetPos( rc );
+        if ( p->_docview->getViewMode() == DVM_SCROLL ) {
+            if ( pt.y < rc.top || pt.y > rc.top + rc.height() * 3/4 )
+                p->_docview->SetPos( pt.y - p->_docview->getFontSize() * 2 );
+        } else {
+            if ( pt.y < rc.top || pt.y >= rc.bottom )
+                p->_docview->SetPos( pt.y );
+        }
+    }
+    return JNI_TRUE;
+}
+
 /*
  * Class:     org_coolreader_crengine_DocView
  * Method:    checkLinkInternal
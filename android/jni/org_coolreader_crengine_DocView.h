@@ -205,6 +205,30 @@ JNIEXPORT void JNICALL Java_org_coolreader_crengine_DocView_updateSelectionInter
 JNIEXPORT jboolean JNICALL Java_org_coolreader_crengine_DocView_moveSelectionInternal
   (JNIEnv *, jobject, jobject, jint, jint);
 
+/*
+ * Class:     org_coolreader_crengine_DocView
+ * Method:    getSentencesInternal
+ * Signature: (Ljava/lang/String;II)[Lorg/coolreader/crengine/Selection;
+ */
+JNIEXPORT jobjectArray JNICALL Java_org_coolreader_crengine_DocView_getSentencesInternal
+  (JNIEnv *, jobject, jstring, jint, jint);
+
+/*
+ * Class:     org_coolreader_crengine_DocView
+ * Method:    findAllTextInternal
+ * Signature: (Ljava/lang/String;IIII)[Lorg/coolreader/crengine/SearchResult;
+ */
+JNIEXPORT jobjectArray JNICALL Java_org_coolreader_crengine_DocView_findAllTextInternal
+  (JNIEnv *, jobject, jstring, jint, jint, jint, jint);
+
+/*
+ * Class:     org_coolreader_crengine_DocView
+ * Method:    selectTextInternal
+ * Signature: (Ljava/lang/String;Ljava/lang/String;)Z
+ */
+JNIEXPORT jboolean JNICALL Java_org_coolreader_crengine_DocView_selectTextInternal
+  (JNIEnv *, jobject, jstring, jstring);
+
 /*
  * Class:     org_coolreader_crengine_DocView
  * Method:    checkLinkInternal
@@ -1,5 +1,6 @@
 package org.coolreader.crengine;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.concurrent.Callable;
 
@@ -9,10 +10,15 @@ import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
+import android.os.SystemClock;
 import android.util.Log;
 
 /**
  * Allows running tasks either in background thread or in GUI thread.
+ *
+ * Background tasks are queued in priority lanes: when background thread is free,
+ * the oldest task of the most urgent non-empty lane is executed next.
+ * All tasks are still executed in the single background thread (engine is not thread safe).
  */
 public class BackgroundThread extends Thread {
 	
@@ -46,6 +52,33 @@ public class BackgroundThread extends Thread {
 		return instance().guiHandler;
 	}
 
+	// background task priorities, most urgent first
+	/**
+	 * Navigation, page drawing and other document commands, default priority.
+	 * Page drawing shares this lane with commands to be executed in the order they are posted.
+	 */
+	public final static int PRIORITY_NAVIGATION = 0;
+	/** Processing of DB query results */
+	public final static int PRIORITY_DB = 1;
+	/** Speculative work: page prefetch, coverpage drawing, directory scanning */
+	public final static int PRIORITY_PREFETCH = 2;
+	private final static int PRIORITY_COUNT = 3;
+
+	/**
+	 * Allows to cancel background task which is not yet started.
+	 */
+	public static class CancelToken {
+		private volatile boolean cancelled;
+
+		public void cancel() {
+			cancelled = true;
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+	}
+
 	public final static boolean CHECK_THREAD_CONTEXT = true; 
 
 	/**
@@ -71,8 +104,7 @@ public class BackgroundThread extends Thread {
 	}
 	
 	// 
-	private Handler handler;
-	private final ArrayList<Runnable> posted = new ArrayList<>();
+	private volatile Handler handler;
 	private Handler guiHandler;
 	private final ArrayList<Runnable> postedGUI = new ArrayList<>();
 
@@ -112,13 +144,11 @@ public class BackgroundThread extends Thread {
 			}
 		};
 		Log.i("cr3", "Background thread handler is created");
-		synchronized(posted) {
-			for ( Runnable task : posted ) {
-				Log.i("cr3", "Copying posted bg task to handler : " + task);
-				handler.post(task);
-			}
-			posted.clear();
-		}
+		int queued = getQueueDepth();
+		if (queued > 0)
+			Log.i("cr3", "Scheduling " + queued + " bg tasks posted before handler is created");
+		for (int i = 0; i < queued; i++)
+			handler.post(runNextTask);
 		Looper.loop();
 		handler = null;
 		instance = null;
@@ -155,6 +185,28 @@ public class BackgroundThread extends Thread {
 	 * @param delay is delay before running task, in millis
 	 */
 	public void postBackground( Runnable task, long delay )
+	{
+		postBackground(task, delay, PRIORITY_NAVIGATION, null);
+	}
+
+	/**
+	 * Post runnable to be executed in background thread with specified priority.
+	 * @param task is runnable to execute in background thread.
+	 * @param priority is one of PRIORITY_* constants
+	 */
+	public void postBackground( Runnable task, int priority )
+	{
+		postBackground(task, 0, priority, null);
+	}
+
+	/**
+	 * Post runnable to be executed in background thread.
+	 * @param task is runnable to execute in background thread.
+	 * @param delay is delay before queueing task, in millis
+	 * @param priority is one of PRIORITY_* constants
+	 * @param token if not null, task is skipped when token is cancelled before task is started
+	 */
+	public void postBackground( Runnable task, long delay, int priority, CancelToken token )
 	{
 		Engine.suspendLongOperation();
 		if ( mStopped ) {
@@ -163,26 +215,128 @@ public class BackgroundThread extends Thread {
 			return;
 		}
 		task = guard(task);
-		if ( handler==null ) {
-			synchronized(posted) {
-				L.i("Adding task " + task + " to posted list since handler is not yet created");
-				posted.add(task);
-			}
+		Handler h = handler;
+		if (delay > 0 && h != null) {
+			Runnable finalTask = task;
+			h.postDelayed(() -> enqueue(() -> {
+				try {
+					finalTask.run();
+				} catch (Throwable e) {
+					Log.e("cr3", "Exception while processing task in Background thread: " + finalTask, e);
+				}
+			}, priority, token), delay);
 		} else {
-			if (delay > 0) {
-				Runnable finalTask = task;
-				handler.postDelayed(() -> {
-					try {
-						finalTask.run();
-					} catch (Throwable e) {
-						Log.e("cr3", "Exception while processing task in Background thread: " + finalTask, e);
-					}
-				}, delay);
-			} else
-				handler.post(task);
+			if (h == null)
+				L.i("Adding task " + task + " to queue, handler is not yet created");
+			enqueue(task, priority, token);
+		}
+	}
+
+	private static class QueuedTask {
+		final Runnable task;
+		final CancelToken token;
+		final long queuedTime;
+
+		QueuedTask(Runnable task, CancelToken token) {
+			this.task = task;
+			this.token = token;
+			this.queuedTime = SystemClock.uptimeMillis();
+		}
+	}
+
+	private final ArrayDeque<QueuedTask>[] lanes = createLanes();
+	private final int[] maxQueueDepth = new int[PRIORITY_COUNT];
+	private final long[] executedCount = new long[PRIORITY_COUNT];
+	private final long[] cancelledCount = new long[PRIORITY_COUNT];
+	private final long[] totalWaitTime = new long[PRIORITY_COUNT];
+
+	@SuppressWarnings("unchecked")
+	private static ArrayDeque<QueuedTask>[] createLanes() {
+		ArrayDeque<QueuedTask>[] lanes = new ArrayDeque[PRIORITY_COUNT];
+		for (int i = 0; i < PRIORITY_COUNT; i++)
+			lanes[i] = new ArrayDeque<>();
+		return lanes;
+	}
+
+	private void enqueue(Runnable task, int priority, CancelToken token) {
+		if (priority < 0 || priority >= PRIORITY_COUNT)
+			priority = PRIORITY_NAVIGATION;
+		synchronized (lanes) {
+			lanes[priority].add(new QueuedTask(task, token));
+			if (lanes[priority].size() > maxQueueDepth[priority])
+				maxQueueDepth[priority] = lanes[priority].size();
+		}
+		// one message per queued task; each message runs most urgent task available at the moment
+		Handler h = handler;
+		if (h != null)
+			h.post(runNextTask);
+	}
+
+	private final Runnable runNextTask = new Runnable() {
+		@Override
+		public void run() {
+			QueuedTask item = null;
+			int priority;
+			synchronized (lanes) {
+				for (priority = 0; priority < PRIORITY_COUNT; priority++) {
+					item = lanes[priority].poll();
+					if (item != null)
+						break;
+				}
+				if (item == null)
+					return;
+				if (item.token != null && item.token.isCancelled()) {
+					cancelledCount[priority]++;
+					return;
+				}
+				executedCount[priority]++;
+				totalWaitTime[priority] += SystemClock.uptimeMillis() - item.queuedTime;
+			}
+			item.task.run();
+		}
+	};
+
+	/**
+	 * Returns number of tasks waiting in queue of specified priority.
+	 */
+	public int getQueueDepth(int priority) {
+		synchronized (lanes) {
+			return lanes[priority].size();
 		}
 	}
 
+	/**
+	 * Returns total number of tasks waiting in all queues.
+	 */
+	public int getQueueDepth() {
+		synchronized (lanes) {
+			int count = 0;
+			for (ArrayDeque<QueuedTask> lane : lanes)
+				count += lane.size();
+			return count;
+		}
+	}
+
+	/**
+	 * Returns queue statistics: current and max depth, executed and cancelled task count,
+	 * average waiting time for each priority.
+	 */
+	public String getQueueStats() {
+		StringBuilder buf = new StringBuilder("BackgroundThread queues[");
+		synchronized (lanes) {
+			for (int i = 0; i < PRIORITY_COUNT; i++) {
+				if (i > 0)
+					buf.append(", ");
+				buf.append(i).append(": depth=").append(lanes[i].size())
+						.append(" max=").append(maxQueueDepth[i])
+						.append(" done=").append(executedCount[i])
+						.append(" cancelled=").append(cancelledCount[i])
+						.append(" avgWait=").append(executedCount[i] > 0 ? totalWaitTime[i] / executedCount[i] : 0).append("ms");
+			}
+		}
+		return buf.append("]").toString();
+	}
+
 	/**
 	 * Post runnable to be executed in GUI thread
 	 * @param task is runnable to execute in GUI thread
@@ -287,10 +441,16 @@ public class BackgroundThread extends Thread {
      * Waits until all pending background tasks are executed.
      */
     public void syncWithBackground() {
-    	callBackground((Callable<Integer>) () -> null);
+    	// lowest priority lane is processed only when all other lanes are empty
+    	callBackground((Callable<Integer>) () -> null, PRIORITY_PREFETCH);
     }
 	
     public <T> T callBackground( final Callable<T> srcTask )
+    {
+    	return callBackground(srcTask, PRIORITY_NAVIGATION);
+    }
+
+    private <T> T callBackground( final Callable<T> srcTask, int priority )
     {
     	final Callable<T> task = srcTask; //guard(srcTask);
     	if ( isBackgroundThread() ) {
@@ -310,7 +470,7 @@ public class BackgroundThread extends Thread {
 			} catch ( Exception e ) {
 				sync.set( null );
 			}
-		});
+		}, priority);
     	if(DBG) L.d("callBackground : calling get " + Thread.currentThread().getName());
     	T res = sync.get();
     	if(DBG) L.d("callBackground : returned from get " + Thread.currentThread().getName());
@@ -360,10 +520,12 @@ public class BackgroundThread extends Thread {
 	
 	public void waitForBackgroundCompletion() {
 		Engine.suspendLongOperation();
-		callBackground(() -> null);
+		syncWithBackground();
 	}
 	
 	public void quit() {
+		Log.i("cr3", getQueueStats());
+		// lowest priority: all previously queued tasks are executed before quit
 		postBackground(() -> {
 			if (handler != null) {
 				L.i("Calling quit() on background thread looper.");
@@ -372,6 +534,6 @@ public class BackgroundThread extends Thread {
 				else
 					handler.getLooper().quit();
 			}
-		});
+		}, PRIORITY_PREFETCH);
 	}
 }
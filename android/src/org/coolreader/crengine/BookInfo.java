@@ -7,6 +7,7 @@ import java.io.OutputStreamWriter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 
 import android.os.Parcel;
 import android.os.Parcelable;
@@ -16,6 +17,14 @@ public class BookInfo implements Parcelable {
 	private FileInfo fileInfo;
 	private Bookmark lastPosition;
 	private ArrayList<Bookmark> bookmarks = new ArrayList<Bookmark>();
+	// false if only last position is loaded, and other bookmarks are still in DB
+	private boolean bookmarksLoaded = true;
+	// unique keys of bookmarks added or changed since last save
+	private HashSet<String> changedBookmarks = new HashSet<String>();
+	// bookmarks removed since last save
+	private ArrayList<Bookmark> removedBookmarks = new ArrayList<Bookmark>();
+	// true if DB state differs from this object only by tracked changes
+	private boolean changesTracked = false;
 
 	public static final Creator<BookInfo> CREATOR = new Creator<BookInfo>() {
 		@Override
@@ -32,6 +41,7 @@ public class BookInfo implements Parcelable {
 	synchronized public void setShortcutBookmark(int shortcut, Bookmark bookmark)
 	{
 		bookmark.setShortcut(shortcut);
+		markChanged(bookmark);
 		for ( int i=0; i<bookmarks.size(); i++ ) {
 			Bookmark bm = bookmarks.get(i);
 			if ( bm.getType()==Bookmark.TYPE_POSITION && bm.getShortcut()==shortcut ) {
@@ -51,17 +61,19 @@ public class BookInfo implements Parcelable {
 		return null;
 	}
 	
-	public void updateAccess()
+	synchronized public void updateAccess()
 	{
 		if (lastPosition != null) {
 			lastPosition.setTimeStamp(System.currentTimeMillis());
+			markChanged(lastPosition);
 		}
 	}
 	
-	public void updateTimeElapsed(long timeElapsed)
+	synchronized public void updateTimeElapsed(long timeElapsed)
 	{
 		if (lastPosition != null) {
 			lastPosition.setTimeElapsed(timeElapsed);
+			markChanged(lastPosition);
 		}
 	}	
 	
@@ -76,6 +88,14 @@ public class BookInfo implements Parcelable {
 		for (int i=0; i < bookInfo.getBookmarkCount(); i++) {
 			this.addBookmark(new Bookmark(bookInfo.getBookmark(i)));
 		}
+		synchronized (bookInfo) {
+			this.bookmarksLoaded = bookInfo.bookmarksLoaded;
+			this.changedBookmarks = new HashSet<String>(bookInfo.changedBookmarks);
+			this.removedBookmarks = new ArrayList<Bookmark>(bookInfo.removedBookmarks.size());
+			for (Bookmark bm : bookInfo.removedBookmarks)
+				this.removedBookmarks.add(new Bookmark(bm));
+			this.changesTracked = bookInfo.changesTracked;
+		}
 	}
 	
 	public BookInfo(FileInfo fileInfo)
@@ -87,6 +107,7 @@ public class BookInfo implements Parcelable {
 		fileInfo = in.readParcelable(FileInfo.class.getClassLoader());
 		lastPosition = in.readParcelable(Bookmark.class.getClassLoader());
 		bookmarks = in.createTypedArrayList(Bookmark.CREATOR);
+		bookmarksLoaded = in.readInt() != 0;
 	}
 
 	public Bookmark getLastPosition()
@@ -103,6 +124,7 @@ public class BookInfo implements Parcelable {
 				position.setId(lastPosition.getId());
 			}
 			lastPosition = position;
+			markChanged(lastPosition);
 			fileInfo.lastAccessTime = lastPosition.getTimeStamp();
 		}
 	}
@@ -116,11 +138,13 @@ public class BookInfo implements Parcelable {
 	{
 		if (bm.getType() == Bookmark.TYPE_LAST_POSITION) {
 			lastPosition = bm;
+			markChanged(bm);
 		} else {
 			if (findBookmarkIndex(bm) >= 0) {
 				L.w("duplicate bookmark added " + bm.getUniqueKey());
 			} else {
 				bookmarks.add(bm);
+				markChanged(bm);
 			}
 		}
 	}
@@ -178,10 +202,13 @@ public class BookInfo implements Parcelable {
 		Bookmark item = bookmarks.get(index);
 		if (item.getTimeStamp() >= bm.getTimeStamp())
 			return null;
+		if (item.getType() != bm.getType())
+			changesTracked = false; // unique key is changed, old DB record cannot be found by key
 		item.setType(bm.getType());
 		item.setTimeStamp(bm.getTimeStamp());
 		item.setPosText(bm.getPosText());
 		item.setCommentText(bm.getCommentText());
+		markChanged(item);
 		return item;
 	}
 
@@ -198,6 +225,7 @@ public class BookInfo implements Parcelable {
 		item.setTimeStamp(bm.getTimeStamp());
 		item.setPosText(bm.getPosText());
 		item.setCommentText(bm.getCommentText());
+		markChanged(item);
 		return item;
 	}
 	synchronized public Bookmark removeBookmark(Bookmark bm)
@@ -209,7 +237,7 @@ public class BookInfo implements Parcelable {
 			Log.e("cr3", "cannot find bookmark " + bm);
 			return null;
 		}
-		return bookmarks.remove(index);
+		return removeBookmark(index);
 	}
 
 	synchronized public void sortBookmarks() {
@@ -292,17 +320,106 @@ public class BookInfo implements Parcelable {
 	
 	synchronized public Bookmark removeBookmark( int index )
 	{
-		return bookmarks.remove(index);
+		Bookmark bm = bookmarks.remove(index);
+		changedBookmarks.remove(bm.getUniqueKey());
+		removedBookmarks.add(bm);
+		return bm;
 	}
 	
 	synchronized public void setBookmarks(ArrayList<Bookmark> list)
 	{
+		if (list != null && isSameBookmarks(list))
+			return; // e.g. history item updated from itself
 		lastPosition = null;
 		bookmarks = new ArrayList<Bookmark>();
-		if (list == null)
-			return;
-		for (Bookmark bm : list)
-			addBookmark(bm);
+		bookmarksLoaded = true;
+		if (list != null) {
+			for (Bookmark bm : list)
+				addBookmark(bm);
+		}
+		// not known which bookmarks are changed
+		changesTracked = false;
+		changedBookmarks.clear();
+		removedBookmarks.clear();
+	}
+
+	private boolean isSameBookmarks(ArrayList<Bookmark> list) {
+		int offset = lastPosition != null ? 1 : 0;
+		if (list.size() != bookmarks.size() + offset)
+			return false;
+		if (lastPosition != null && list.get(0) != lastPosition)
+			return false;
+		for (int i = 0; i < bookmarks.size(); i++)
+			if (list.get(i + offset) != bookmarks.get(i))
+				return false;
+		return true;
+	}
+
+	private void markChanged(Bookmark bm) {
+		changedBookmarks.add(bm.getUniqueKey());
+	}
+
+	/**
+	 * Check whether bookmark changes since last save are known, so only changed bookmarks may be saved.
+	 * @return true if changes are tracked, false if all bookmarks should be compared with DB
+	 */
+	synchronized public boolean isBookmarkChangesTracked() {
+		return changesTracked;
+	}
+
+	/**
+	 * Get bookmarks added or changed since last save, including last position.
+	 */
+	synchronized public ArrayList<Bookmark> getChangedBookmarks() {
+		ArrayList<Bookmark> list = new ArrayList<Bookmark>();
+		if (changedBookmarks.isEmpty())
+			return list;
+		for (Bookmark bm : getAllBookmarks()) {
+			if (changedBookmarks.contains(bm.getUniqueKey()))
+				list.add(bm);
+		}
+		return list;
+	}
+
+	/**
+	 * Get bookmarks removed since last save.
+	 */
+	synchronized public ArrayList<Bookmark> getRemovedBookmarks() {
+		return new ArrayList<Bookmark>(removedBookmarks);
+	}
+
+	/**
+	 * Add tracked changes of older unsaved copy of this book, to save both in one pass.
+	 * @param older is older copy which is replaced by this object before it's saved
+	 */
+	synchronized public void addBookmarkChanges(BookInfo older) {
+		synchronized (older) {
+			if (!older.changesTracked)
+				changesTracked = false;
+			changedBookmarks.addAll(older.changedBookmarks);
+			removedBookmarks.addAll(older.removedBookmarks);
+		}
+	}
+
+	/**
+	 * Forget tracked changes: to be called when bookmarks are loaded from or saved to DB.
+	 */
+	synchronized public void clearBookmarkChanges() {
+		changedBookmarks.clear();
+		removedBookmarks.clear();
+		changesTracked = true;
+	}
+
+	/**
+	 * Check whether all bookmarks are loaded, or only last position.
+	 * @return false if bookmarks other than last position are not loaded from DB yet
+	 */
+	synchronized public boolean isBookmarksLoaded() {
+		return bookmarksLoaded;
+	}
+
+	synchronized public void setBookmarksLoaded(boolean bookmarksLoaded) {
+		this.bookmarksLoaded = bookmarksLoaded;
 	}
 
 	@Override
@@ -322,6 +439,7 @@ public class BookInfo implements Parcelable {
 		dest.writeParcelable(fileInfo, flags);
 		dest.writeParcelable(lastPosition, flags);
 		dest.writeTypedList(bookmarks);
+		dest.writeInt(bookmarksLoaded ? 1 : 0);
 	}
 
 	@Override
@@ -1,12 +1,16 @@
 package org.coolreader.crengine;
 
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 
 import org.coolreader.db.CRDBService;
 
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.ColorFilter;
 import android.graphics.Paint;
@@ -67,6 +71,7 @@ public class CoverpageManager {
 	public void unqueue(Collection<ImageItem> filesToUnqueue) {
 		synchronized(LOCK) {
 			for (ImageItem file : filesToUnqueue) {
+				mThumbnailQueue.remove(file);
 				mCheckFileCacheQueue.remove(file);
 				mScanFileQueue.remove(file);
 				mReadyQueue.remove(file);
@@ -115,8 +120,9 @@ public class CoverpageManager {
 			ImageItem item = new ImageItem(fileInfo, -1, -1);
 			unqueue(Collections.singleton(item));
 			mCache.remove(item);
+			db.deleteCoverThumbnails(item.file);
 			db.saveBookCoverpage(item.file, data);
-			coverpageLoaded(item, data);
+			coverpageLoaded(db, item, data);
 		}
 	}
 	
@@ -124,6 +130,7 @@ public class CoverpageManager {
 		log.d("CoverpageManager.clear()");
 		synchronized(LOCK) {
 			mCache.clear();
+			mThumbnailQueue.clear();
 			mCheckFileCacheQueue.clear();
 			mScanFileQueue.clear();
 			mReadyQueue.clear();
@@ -200,6 +207,9 @@ public class CoverpageManager {
 				runtime.trackFree(bytes); // hack for heap size limit
 			}
 		}
+		private int getBytes() {
+			return bitmap != null ? bitmap.getRowBytes() * bitmap.getHeight() : 0;
+		}
 		private void removed() {
 			if (bitmap != null) {
 				int bytes = bitmap.getRowBytes() * bitmap.getHeight();
@@ -217,73 +227,110 @@ public class CoverpageManager {
 		
 	}
 
+	/**
+	 * LRU cache of decoded coverpage bitmaps, limited by total size of bitmaps in bytes.
+	 * Items are keyed by book pathname and requested image size.
+	 */
 	private class BitmapCache {
-		public BitmapCache(int maxSize) {
-			this.maxSize = maxSize;
-		}
-		private ArrayList<BitmapCacheItem> list = new ArrayList<BitmapCacheItem>();
-		private int maxSize;
-		private int find(ImageItem file) {
-			for (int i = 0; i < list.size(); i++) {
-				BitmapCacheItem item = list.get(i); 
-				if (item.file.matches(file))
-					return i;
+		public BitmapCache(long maxBytes, int maxItems) {
+			this.maxBytes = maxBytes;
+			this.maxItems = maxItems;
+		}
+		// access ordered: eldest entry is least recently used one
+		private final LinkedHashMap<String, BitmapCacheItem> map = new LinkedHashMap<>(64, 0.75f, true);
+		private final long maxBytes;
+		private final int maxItems;
+		private long currentBytes;
+		private String key(ImageItem file) {
+			return file.file.getPathName() + ":" + file.maxWidth + "x" + file.maxHeight;
+		}
+		private boolean anySize(ImageItem file) {
+			return file.maxWidth <= -1 && file.maxHeight <= -1;
+		}
+		private void checkMaxSize(BitmapCacheItem keep) {
+			Iterator<BitmapCacheItem> it = map.values().iterator();
+			while (it.hasNext() && (currentBytes > maxBytes || map.size() > maxItems)) {
+				BitmapCacheItem item = it.next();
+				if (item == keep)
+					continue;
+				it.remove();
+				removed(item);
 			}
-			return -1;
 		}
-		private void moveOnTop(int index) {
-			if (index >= list.size() - 1)
-				return;
-			BitmapCacheItem item = list.get(index);
-			list.remove(index);
-			list.add(item);
+		private void removed(BitmapCacheItem item) {
+			currentBytes -= item.getBytes();
+			item.removed();
 		}
-		private void checkMaxSize() {
-			int itemsToRemove = list.size() - maxSize;
-			for (int i = itemsToRemove - 1; i >= 0; i--) {
-				BitmapCacheItem item = list.get(i);
-				list.remove(i);
-				item.removed();
+		public void setBitmap(BitmapCacheItem item, Bitmap bmp) {
+			synchronized (LOCK) {
+				currentBytes -= item.getBytes();
+				item.setBitmap(bmp);
+				if (map.get(key(item.file)) != item) {
+					// already removed from cache
+					item.removed();
+					return;
+				}
+				currentBytes += item.getBytes();
+				checkMaxSize(item);
 			}
 		}
 		public void clear() {
-			for (BitmapCacheItem item : list) {
-				if (item.bitmap != null)
-					item.removed();
-			}
-			list.clear();
+			for (BitmapCacheItem item : map.values())
+				item.removed();
+			map.clear();
+			currentBytes = 0;
 		}
 		public BitmapCacheItem getItem(ImageItem file) {
-			int index = find(file);
-			if (index < 0)
+			if (anySize(file)) {
+				for (BitmapCacheItem item : map.values()) {
+					if (item.file.matches(file))
+						return item;
+				}
 				return null;
-			BitmapCacheItem item = list.get(index);
-			moveOnTop(index);
-			return item;
+			}
+			return map.get(key(file));
 		}
 		public BitmapCacheItem addItem(ImageItem file) {
 			BitmapCacheItem item = new BitmapCacheItem(file);
-			list.add(item);
-			checkMaxSize();
+			BitmapCacheItem old = map.put(key(file), item);
+			if (old != null)
+				removed(old);
+			checkMaxSize(item);
 			return item;
 		}
 		public void unqueue(ImageItem file) {
-			int index = find(file);
-			if (index < 0)
+			if (!anySize(file)) {
+				BitmapCacheItem item = map.get(key(file));
+				if (item != null && item.canUnqueue()) {
+					map.remove(key(file));
+					removed(item);
+				}
 				return;
-			BitmapCacheItem item = list.get(index);
-			if (item.canUnqueue()) {
-				list.remove(index);
-				item.removed();
+			}
+			Iterator<BitmapCacheItem> it = map.values().iterator();
+			while (it.hasNext()) {
+				BitmapCacheItem item = it.next();
+				if (item.file.matches(file) && item.canUnqueue()) {
+					it.remove();
+					removed(item);
+				}
 			}
 		}
 		public void remove(ImageItem file) {
-			int index = find(file);
-			if (index < 0)
+			if (!anySize(file)) {
+				BitmapCacheItem item = map.remove(key(file));
+				if (item != null)
+					removed(item);
 				return;
-			BitmapCacheItem item = list.get(index);
-			list.remove(index);
-			item.removed();
+			}
+			Iterator<BitmapCacheItem> it = map.values().iterator();
+			while (it.hasNext()) {
+				BitmapCacheItem item = it.next();
+				if (item.file.matches(file)) {
+					it.remove();
+					removed(item);
+				}
+			}
 		}
 		public Bitmap getBitmap(ImageItem file) {
 			synchronized (LOCK) {
@@ -294,8 +341,16 @@ public class CoverpageManager {
 			}
 		}
 	}
-	private BitmapCache mCache = new BitmapCache(32);
+
+	private static long getBitmapCacheBudget() {
+		// use 1/16 of heap, but not less than 2Mb and not more than 32Mb
+		long budget = Runtime.getRuntime().maxMemory() / 16;
+		return Math.max(2 * 1024 * 1024, Math.min(budget, 32 * 1024 * 1024));
+	}
+
+	private final BitmapCache mCache = new BitmapCache(getBitmapCacheBudget(), 1000);
 	
+	private FileInfoQueue mThumbnailQueue = new FileInfoQueue();
 	private FileInfoQueue mCheckFileCacheQueue = new FileInfoQueue(); 
 	private FileInfoQueue mScanFileQueue = new FileInfoQueue();
 	private FileInfoQueue mReadyQueue = new FileInfoQueue();
@@ -359,6 +414,7 @@ public class CoverpageManager {
 	
 	private Object LOCK = new Object();
 
+	private Runnable lastThumbnailTask = null;
 	private Runnable lastCheckCacheTask = null;
 	private Runnable lastScanFileTask = null;
 	private BitmapCacheItem setItemState(ImageItem file, State state) {
@@ -408,7 +464,9 @@ public class CoverpageManager {
 		BackgroundThread.instance().postGUI(task, COVERPAGE_UPDATE_DELAY);
 	}
 
-	private void draw(ImageItem file, byte[] data) {
+	private void draw(final CRDBService.LocalBinder db, ImageItem file, byte[] data) {
+		if (file.maxWidth <= 0 || file.maxHeight <= 0)
+			return;
 		BitmapCacheItem item;
 		synchronized(LOCK) {
 			item = mCache.getItem(file);
@@ -422,16 +480,86 @@ public class CoverpageManager {
 		if (bmp != null) {
 			// successfully decoded
 			log.v("coverpage is decoded for " + file);
-			item.setBitmap(bmp);
+			mCache.setBitmap(item, bmp);
 			item.state = State.READY;
 			notifyBitmapIsReady(file);
+			saveThumbnail(db, file, bmp);
 		}
 	}
 
-	private void coverpageLoaded(final ImageItem file, final byte[] data) {
+	private void coverpageLoaded(final CRDBService.LocalBinder db, final ImageItem file, final byte[] data) {
 		log.v("coverpage data is loaded for " + file);
 		setItemState(file, State.IMAGE_DRAW_SCHEDULED);
-		BackgroundThread.instance().postBackground(() -> draw(file, data));
+		BackgroundThread.instance().postBackground(() -> draw(db, file, data), BackgroundThread.PRIORITY_PREFETCH);
+	}
+
+	private static final int THUMBNAIL_JPEG_QUALITY = 85;
+
+	/**
+	 * Store drawn coverpage in DB to avoid drawing it by engine next time the same size is requested.
+	 * Covers are mostly pictures, so JPEG is much smaller and faster to encode than PNG.
+	 */
+	private void saveThumbnail(final CRDBService.LocalBinder db, ImageItem file, Bitmap bmp) {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		if (bmp.compress(Bitmap.CompressFormat.JPEG, THUMBNAIL_JPEG_QUALITY, os))
+			db.saveCoverThumbnail(file.file, file.maxWidth, file.maxHeight, fontFace, os.toByteArray());
+	}
+
+	private void thumbnailLoaded(final CRDBService.LocalBinder db, final ImageItem file, byte[] data) {
+		// background thread
+		BitmapCacheItem item;
+		synchronized(LOCK) {
+			item = mCache.getItem(file);
+			if (item == null || item.state != State.FILE_CACHE_LOOKUP)
+				return;
+		}
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inPreferredConfig = DeviceInfo.BUFFER_COLOR_FORMAT;
+		Bitmap bmp = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+		if (bmp != null && bmp.getWidth() == file.maxWidth && bmp.getHeight() == file.maxHeight) {
+			log.v("coverpage thumbnail is decoded for " + file);
+			mCache.setBitmap(item, bmp);
+			item.state = State.READY;
+			notifyBitmapIsReady(file);
+		} else {
+			if (bmp != null)
+				bmp.recycle();
+			BackgroundThread.instance().postGUI(() -> {
+				synchronized (LOCK) {
+					queueForLoading(db, file);
+				}
+			});
+		}
+	}
+
+	private void scheduleThumbnailLookup(final CRDBService.LocalBinder db) {
+		// pre-scaled image lookup
+		lastThumbnailTask = new Runnable() {
+			@Override
+			public void run() {
+				ImageItem file = null;
+				synchronized(LOCK) {
+					if (lastThumbnailTask == this) {
+						file = mThumbnailQueue.next();
+					}
+				}
+				if (file != null) {
+					final ImageItem request = file;
+					setItemState(request, State.FILE_CACHE_LOOKUP);
+					db.loadCoverThumbnail(request.file, request.maxWidth, request.maxHeight, fontFace, (fileInfo, data) -> {
+						if (data == null || data.length == 0) {
+							synchronized (LOCK) {
+								queueForLoading(db, request);
+							}
+						} else {
+							BackgroundThread.instance().postBackground(() -> thumbnailLoaded(db, request, data), BackgroundThread.PRIORITY_PREFETCH);
+						}
+					});
+					scheduleThumbnailLookup(db);
+				}
+			}
+		};
+		BackgroundThread.instance().postGUI(lastThumbnailTask);
 	}
 	private void scheduleCheckCache(final CRDBService.LocalBinder db) {
 		// cache lookup
@@ -452,7 +580,7 @@ public class CoverpageManager {
 							mScanFileQueue.addOnTop(request);
 							scheduleScanFile(db);
 						} else {
-							coverpageLoaded(request, data);
+							coverpageLoaded(db, request, data);
 						}
 					});
 					scheduleCheckCache(db);
@@ -481,10 +609,10 @@ public class CoverpageManager {
 								data = new byte[] {};
 							if (fileInfo.file.format.needCoverPageCaching())
 								db.saveBookCoverpage(fileInfo.file, data);
-							coverpageLoaded(fileInfo, data);
-						});
+							coverpageLoaded(db, fileInfo, data);
+						}, BackgroundThread.PRIORITY_PREFETCH);
 					} else {
-						coverpageLoaded(fileInfo, new byte[] {});
+						coverpageLoaded(db, fileInfo, new byte[] {});
 					}
 					scheduleScanFile(db);
 				}
@@ -500,6 +628,23 @@ public class CoverpageManager {
 			BitmapCacheItem item = mCache.getItem(file);
 			if (item != null && (item.state == State.READY || item.state == State.DRAWING))
 				return;
+			if (file.maxWidth > 0 && file.maxHeight > 0 && (item == null || item.state == State.UNINITIALIZED)) {
+				// try pre-scaled image from DB first
+				if (mThumbnailQueue.addOnTop(file)) {
+					log.v("Scheduled coverpage thumbnail lookup for " + file);
+					scheduleThumbnailLookup(db);
+				}
+				return;
+			}
+			if (item != null && (item.state == State.FILE_CACHE_LOOKUP || item.state == State.IMAGE_DRAW_SCHEDULED))
+				return;
+			queueForLoading(db, file);
+		}
+	}
+
+	private void queueForLoading(final CRDBService.LocalBinder db, ImageItem file) {
+		synchronized (LOCK) {
+			setItemState(file, State.LOAD_SCHEDULED);
 			if (file.file.format.needCoverPageCaching()) {
 				if (mCheckFileCacheQueue.addOnTop(file)) {
 					log.v("Scheduled coverpage DB lookup for " + file);
@@ -671,7 +816,7 @@ public class CoverpageManager {
 				ImageItem item = new ImageItem(file, buffer.getWidth(), buffer.getHeight());
 				callback.onCoverpageReady(item, buffer);
 			});
-		}));
+		}, BackgroundThread.PRIORITY_DB));
 	}
 	
 	private Rect getBestCoverSize(Rect dst, int srcWidth, int srcHeight) {
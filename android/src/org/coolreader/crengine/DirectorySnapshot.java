@@ -0,0 +1,74 @@
+package org.coolreader.crengine;
+
+import java.io.File;
+
+/**
+ * Summary of directory state: modification time, number of book files and digest of their names, sizes and modification times.
+ * Stored in DB after successful scan to detect whether directory has been changed since.
+ */
+public class DirectorySnapshot {
+	public final long modificationTime;
+	public final int fileCount;
+	public final long sizeDigest;
+
+	public DirectorySnapshot(long modificationTime, int fileCount, long sizeDigest) {
+		this.modificationTime = modificationTime;
+		this.fileCount = fileCount;
+		this.sizeDigest = sizeDigest;
+	}
+
+	/**
+	 * Make snapshot of listed directory.
+	 * @param dir is directory item with file children already listed
+	 * @return snapshot of directory
+	 */
+	public static DirectorySnapshot of(FileInfo dir) {
+		long digest = 0;
+		for (int i = 0; i < dir.fileCount(); i++) {
+			FileInfo item = dir.getFile(i);
+			String pathName = item.getPathName();
+			long h = pathName != null ? pathName.hashCode() : 0;
+			h = h * 0x9E3779B97F4A7C15L + item.size;
+			h = h * 31 + item.arcsize;
+			// file rewritten in place with the same size
+			h = h * 31 + item.createTime;
+			// order independent
+			digest += h ^ (h >>> 29);
+		}
+		return new DirectorySnapshot(new File(dir.getPathName()).lastModified(), dir.fileCount(), digest);
+	}
+
+	@Override
+	public String toString() {
+		return "DirectorySnapshot [modificationTime=" + modificationTime + ", fileCount=" + fileCount
+				+ ", sizeDigest=" + sizeDigest + "]";
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + (int) (modificationTime ^ (modificationTime >>> 32));
+		result = prime * result + fileCount;
+		result = prime * result + (int) (sizeDigest ^ (sizeDigest >>> 32));
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		DirectorySnapshot other = (DirectorySnapshot) obj;
+		if (modificationTime != other.modificationTime)
+			return false;
+		if (fileCount != other.fileCount)
+			return false;
+		if (sizeDigest != other.sizeDigest)
+			return false;
+		return true;
+	}
+}
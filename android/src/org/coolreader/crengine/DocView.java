@@ -107,6 +107,20 @@ public class DocView {
 		}
 	}
 
+	/**
+	 * Get consecutive sentences with their ranges in one call, without changing selection.
+	 * @param startPos is xpointer inside of first sentence, or null to start from current page
+	 * @param skip is number of sentences to skip
+	 * @param maxCount is max number of sentences to return
+	 * @return sentences found, empty array at end of document
+	 */
+	public Selection[] getSentences(String startPos, int skip, int maxCount) {
+		synchronized(mutex) {
+			Selection[] res = getSentencesInternal(startPos, skip, maxCount);
+			return res != null ? res : new Selection[0];
+		}
+	}
+
 	/**
 	 * Send battery state to native object.
 	 * @param state
@@ -337,6 +351,34 @@ public class DocView {
 		}
 	}
 
+	/**
+	 * Find all matches of pattern in part of document, without changing selection and position.
+	 * @param pattern is text to search for
+	 * @param caseInsensitive
+	 * @param startY is top of document part to search in
+	 * @param endY is bottom of document part to search in
+	 * @param maxCount is max number of matches to return
+	 * @return matches found, in document order
+	 */
+	public SearchResult[] findAllText(String pattern, boolean caseInsensitive, int startY, int endY, int maxCount) {
+		synchronized(mutex) {
+			SearchResult[] res = findAllTextInternal(pattern, caseInsensitive ? 1 : 0, startY, endY, maxCount);
+			return res != null ? res : new SearchResult[0];
+		}
+	}
+
+	/**
+	 * Select text range and move to its page.
+	 * @param startPos
+	 * @param endPos
+	 * @return true if range is selected
+	 */
+	public boolean selectText(String startPos, String endPos) {
+		synchronized(mutex) {
+			return selectTextInternal(startPos, endPos);
+		}
+	}
+
 	/**
 	 * Get current page image.
 	 * @param bitmap is buffer to put data to.
@@ -463,6 +505,10 @@ public class DocView {
 	private native boolean findTextInternal(String pattern, int origin,
 			int reverse, int caseInsensitive);
 
+	private native SearchResult[] findAllTextInternal(String pattern, int caseInsensitive, int startY, int endY, int maxCount);
+
+	private native boolean selectTextInternal(String startPos, String endPos);
+
 	private native void setBatteryStateInternal(int state, int chargingConn, int chargeLevel);
 
 	private native byte[] getCoverPageDataInternal();
@@ -475,6 +521,8 @@ public class DocView {
 	private native boolean moveSelectionInternal(Selection sel,
 			int moveCmd, int params);
 
+	private native Selection[] getSentencesInternal(String startPos, int skip, int maxCount);
+
 	private native String checkLinkInternal(int x, int y, int delta);
 
 	private native boolean checkImageInternal(int x, int y, ImageInfo dstImage);
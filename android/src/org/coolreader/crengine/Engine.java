@@ -250,10 +250,20 @@ public class Engine {
 	 * @param task is task to execute
 	 */
 	public void post(final EngineTask task) {
+		post(task, BackgroundThread.PRIORITY_NAVIGATION);
+	}
+
+	/**
+	 * Schedule task for execution in Engine thread with specified priority
+	 *
+	 * @param task     is task to execute
+	 * @param priority is one of BackgroundThread.PRIORITY_* constants
+	 */
+	public void post(final EngineTask task, int priority) {
 		if (LOG_ENGINE_TASKS)
 			log.d("executing task " + task.getClass().getSimpleName());
 		TaskHandler taskHandler = new TaskHandler(task);
-		BackgroundThread.instance().postBackground(taskHandler);
+		BackgroundThread.instance().postBackground(taskHandler, priority);
 	}
 
 	/**
@@ -939,6 +949,18 @@ public class Engine {
 		}
 	}
 
+	/**
+	 * Scan book properties without taking engine lock.
+	 * Properties parser keeps no shared state between files, so this method
+	 * can be called concurrently for different files from scanner worker threads.
+	 */
+	public static boolean scanBookPropertiesConcurrent(FileInfo info) {
+		long start = Utils.timeStamp();
+		boolean res = scanBookPropertiesInternal(info);
+		L.v("scanBookProperties took " + Utils.timeInterval(start) + " ms for " + info.getPathName());
+		return res;
+	}
+
 	public byte[] scanBookCover(String path) {
 		synchronized (lock) {
 			long start = Utils.timeStamp();
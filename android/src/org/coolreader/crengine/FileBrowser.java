@@ -727,8 +727,9 @@ public class FileBrowser extends LinearLayout implements FileInfoChangeListener
 
 					@Override
 					public void onDownloadProgress(String type, String url,
-							int percent) {
-						mEngine.showProgress(percent * 100, "Downloading");
+							long bytesDownloaded, long totalBytes) {
+						if (totalBytes > 0)
+							mEngine.showProgress((int)(bytesDownloaded * 10000 / totalBytes), "Downloading");
 					}
 					
 				};
@@ -848,13 +849,13 @@ public class FileBrowser extends LinearLayout implements FileInfoChangeListener
 				mActivity.getDB().loadGenresList(fileOrDir, !mHideEmptyGenres, new ItemGroupsLoadingCallback(fileOrDir, itemToSelect));
 				return;
 			}
-			if (fileOrDir.isBooksByAuthorRoot()) {
+			if (fileOrDir.isBooksByAuthorRoot() || fileOrDir.isBooksByAuthorGroupDir()) {
 				// refresh authors list
 				log.d("Updating authors list");
 				mActivity.getDB().loadAuthorsList(fileOrDir, new ItemGroupsLoadingCallback(fileOrDir, itemToSelect));
 				return;
 			}
-			if (fileOrDir.isBooksBySeriesRoot()) {
+			if (fileOrDir.isBooksBySeriesRoot() || fileOrDir.isBooksBySeriesGroupDir()) {
 				// refresh authors list
 				log.d("Updating series list");
 				mActivity.getDB().loadSeriesList(fileOrDir, new ItemGroupsLoadingCallback(fileOrDir, itemToSelect));
@@ -880,7 +881,7 @@ public class FileBrowser extends LinearLayout implements FileInfoChangeListener
 				mActivity.getDB().loadBooksByState(FileInfo.STATE_TO_READ, new FileInfoLoadingCallback(fileOrDir, itemToSelect));
 				return;
 			}
-			if (fileOrDir.isBooksByTitleRoot()) {
+			if (fileOrDir.isBooksByTitleRoot() || fileOrDir.isBooksByTitleGroupDir()) {
 				// refresh authors list
 				log.d("Updating title list");
 				mActivity.getDB().loadTitleList(fileOrDir, new ItemGroupsLoadingCallback(fileOrDir, itemToSelect));
@@ -1147,6 +1148,10 @@ public class FileBrowser extends LinearLayout implements FileInfoChangeListener
 							bookCount = (Integer)item.tag;
 						setText(field1, "books: " + String.valueOf(bookCount));
 						setText(field2, "folders: 0");
+					} else if (item.isItemGroupDir() && !item.isListed && item.tag instanceof Integer) {
+						// group contents are not loaded yet
+						setText(field1, "books: 0");
+						setText(field2, "folders: " + item.tag);
 					} else  if (item.isOPDSDir()) {
 						setText(field1, item.title);
 						setText(field2, "");
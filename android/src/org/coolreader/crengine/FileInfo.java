@@ -510,6 +510,26 @@ public class FileInfo implements Parcelable {
 		return TITLE_TAG.equals(pathname);
 	}
 
+	public boolean isBooksByAuthorGroupDir()
+	{
+		return pathname!=null && pathname.startsWith(AUTHOR_GROUP_PREFIX);
+	}
+
+	public boolean isBooksBySeriesGroupDir()
+	{
+		return pathname!=null && pathname.startsWith(SERIES_GROUP_PREFIX);
+	}
+
+	public boolean isBooksByTitleGroupDir()
+	{
+		return pathname!=null && pathname.startsWith(TITLE_GROUP_PREFIX);
+	}
+
+	public boolean isItemGroupDir()
+	{
+		return isBooksByAuthorGroupDir() || isBooksBySeriesGroupDir() || isBooksByTitleGroupDir();
+	}
+
 	public boolean isBooksByGenreDir()
 	{
 		return pathname!=null && pathname.startsWith(GENRES_PREFIX);
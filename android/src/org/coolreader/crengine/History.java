@@ -35,9 +35,18 @@ public class History extends FileInfoChangeSource {
 	
 	public void getOrCreateBookInfo(final CRDBService.LocalBinder db, final FileInfo file, final BookInfoLoadedCallback callback)
 	{
-		BookInfo res = getBookInfo(file);
+		final BookInfo res = getBookInfo(file);
 		if (res != null) {
-			callback.onBookInfoLoaded(res);
+			if (res.isBookmarksLoaded()) {
+				callback.onBookInfoLoaded(res);
+				return;
+			}
+			// only last position is loaded with recent books list, load the rest of bookmarks now
+			db.loadBookInfo(res.getFileInfo(), bookInfo -> {
+				if (bookInfo != null && !res.isBookmarksLoaded())
+					res.setBookmarks(bookInfo.getAllBookmarks());
+				callback.onBookInfoLoaded(res);
+			});
 			return;
 		}
 		db.loadBookInfo(file, bookInfo -> {
@@ -167,7 +176,8 @@ public class History extends FileInfoChangeSource {
 	{
 		Log.v("cr3", "History.loadFromDB()");
 		mRecentBooksFolder = mScanner.getRecentDir();
-		db.loadRecentBooks(100, bookList -> {
+		// bookmarks except last positions are loaded on demand, in getOrCreateBookInfo()
+		db.loadRecentBooks(100, true, bookList -> {
 			if (bookList != null) {
 				mBooks = bookList;
 				updateRecentDir();
@@ -0,0 +1,296 @@
+package org.coolreader.crengine;
+
+import org.coolreader.crengine.OPDSUtil.AuthorInfo;
+import org.coolreader.crengine.OPDSUtil.DocInfo;
+import org.coolreader.crengine.OPDSUtil.EntryInfo;
+import org.coolreader.crengine.OPDSUtil.LinkInfo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent cache of parsed OPDS catalog pages.
+ *
+ * Each page is stored in separate file together with ETag and Last-Modified values of response,
+ * to be shown immediately and revalidated with conditional request.
+ * Total size of files is limited, least recently used pages are evicted first.
+ */
+public class OPDSFeedCache {
+
+	public static final Logger log = L.create("opds");
+
+	private static final int FORMAT_VERSION = 1;
+	private static final String FILE_EXT = ".feed";
+
+	public static class Page {
+		public final String etag;
+		public final String lastModified;
+		public final DocInfo docInfo;
+		public final List<EntryInfo> entries;
+
+		public Page(String etag, String lastModified, DocInfo docInfo, List<EntryInfo> entries) {
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.docInfo = docInfo;
+			this.entries = entries;
+		}
+	}
+
+	private final File dir;
+	private final long maxSize;
+	private long currentSize;
+	// access ordered: first entry is least recently used one; values are file sizes
+	private LinkedHashMap<String, Long> index;
+
+	public OPDSFeedCache(File dir, long maxSize) {
+		this.dir = dir;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Make cache key for catalog page.
+	 * @return key depending on both URL and credentials used to access it
+	 */
+	public static String makeKey(String url, String username, String password) {
+		String s = url + "\n" + (username != null ? username : "") + "\n" + (password != null ? password : "");
+		return Utils.calcSHA256(s.getBytes());
+	}
+
+	public synchronized Page get(String key) {
+		if (key == null || !checkIndex() || index.get(key) == null)
+			return null;
+		File file = new File(dir, key + FILE_EXT);
+		try (DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 8192))) {
+			if (is.readInt() != FORMAT_VERSION)
+				throw new IOException("unsupported cache format");
+			String etag = readString(is);
+			String lastModified = readString(is);
+			DocInfo docInfo = readDocInfo(is);
+			int count = is.readInt();
+			ArrayList<EntryInfo> entries = new ArrayList<EntryInfo>(count);
+			for (int i = 0; i < count; i++)
+				entries.add(readEntryInfo(is));
+			file.setLastModified(System.currentTimeMillis());
+			return new Page(etag, lastModified, docInfo, entries);
+		} catch (Exception e) {
+			log.w("Cannot read cached OPDS page: " + e.toString());
+			remove(key);
+			return null;
+		}
+	}
+
+	public synchronized void put(String key, Page page) {
+		if (key == null || !checkIndex())
+			return;
+		File file = new File(dir, key + FILE_EXT);
+		try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 8192))) {
+			os.writeInt(FORMAT_VERSION);
+			writeString(os, page.etag);
+			writeString(os, page.lastModified);
+			writeDocInfo(os, page.docInfo);
+			os.writeInt(page.entries.size());
+			for (EntryInfo entry : page.entries)
+				writeEntryInfo(os, entry);
+		} catch (Exception e) {
+			log.w("Cannot write cached OPDS page: " + e.toString());
+			remove(key);
+			return;
+		}
+		Long old = index.put(key, file.length());
+		if (old != null)
+			currentSize -= old;
+		currentSize += file.length();
+		checkSize();
+	}
+
+	/**
+	 * Mark page as recently used, e.g. after successful revalidation.
+	 */
+	public synchronized void touch(String key) {
+		if (key == null || !checkIndex() || index.get(key) == null)
+			return;
+		new File(dir, key + FILE_EXT).setLastModified(System.currentTimeMillis());
+	}
+
+	public synchronized void remove(String key) {
+		if (index != null) {
+			Long old = index.remove(key);
+			if (old != null)
+				currentSize -= old;
+		}
+		new File(dir, key + FILE_EXT).delete();
+	}
+
+	public synchronized void clear() {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				if (f.getName().endsWith(FILE_EXT))
+					f.delete();
+			}
+		}
+		if (index != null)
+			index.clear();
+		currentSize = 0;
+	}
+
+	/**
+	 * Build index of cached files on first access, ordered by last access time.
+	 */
+	private boolean checkIndex() {
+		if (index != null)
+			return true;
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			log.e("Cannot create OPDS cache directory " + dir);
+			return false;
+		}
+		index = new LinkedHashMap<String, Long>(16, 0.75f, true);
+		currentSize = 0;
+		File[] files = dir.listFiles();
+		if (files != null) {
+			Arrays.sort(files, (f1, f2) -> Long.compare(f1.lastModified(), f2.lastModified()));
+			for (File f : files) {
+				String name = f.getName();
+				if (!name.endsWith(FILE_EXT))
+					continue;
+				index.put(name.substring(0, name.length() - FILE_EXT.length()), f.length());
+				currentSize += f.length();
+			}
+		}
+		checkSize();
+		return true;
+	}
+
+	private void checkSize() {
+		Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+		while (currentSize > maxSize && it.hasNext()) {
+			Map.Entry<String, Long> e = it.next();
+			it.remove();
+			currentSize -= e.getValue();
+			new File(dir, e.getKey() + FILE_EXT).delete();
+		}
+	}
+
+	private static void writeString(DataOutputStream os, String s) throws IOException {
+		os.writeBoolean(s != null);
+		if (s != null)
+			os.writeUTF(s);
+	}
+
+	private static String readString(DataInputStream is) throws IOException {
+		return is.readBoolean() ? is.readUTF() : null;
+	}
+
+	private static void writeLinkInfo(DataOutputStream os, LinkInfo link) throws IOException {
+		os.writeBoolean(link != null);
+		if (link == null)
+			return;
+		writeString(os, link.href);
+		writeString(os, link.rel);
+		writeString(os, link.title);
+		writeString(os, link.type);
+	}
+
+	private static LinkInfo readLinkInfo(DataInputStream is) throws IOException {
+		if (!is.readBoolean())
+			return null;
+		LinkInfo link = new LinkInfo();
+		link.href = readString(is);
+		link.rel = readString(is);
+		link.title = readString(is);
+		link.type = readString(is);
+		return link;
+	}
+
+	private static void writeDocInfo(DataOutputStream os, DocInfo docInfo) throws IOException {
+		writeString(os, docInfo.id);
+		os.writeLong(docInfo.updated);
+		writeString(os, docInfo.title);
+		writeString(os, docInfo.subtitle);
+		writeString(os, docInfo.icon);
+		writeString(os, docInfo.language);
+		writeLinkInfo(os, docInfo.selfLink);
+		writeLinkInfo(os, docInfo.alternateLink);
+		writeLinkInfo(os, docInfo.nextLink);
+	}
+
+	private static DocInfo readDocInfo(DataInputStream is) throws IOException {
+		DocInfo docInfo = new DocInfo();
+		docInfo.id = readString(is);
+		docInfo.updated = is.readLong();
+		docInfo.title = readString(is);
+		docInfo.subtitle = readString(is);
+		docInfo.icon = readString(is);
+		docInfo.language = readString(is);
+		docInfo.selfLink = readLinkInfo(is);
+		docInfo.alternateLink = readLinkInfo(is);
+		docInfo.nextLink = readLinkInfo(is);
+		return docInfo;
+	}
+
+	private static void writeEntryInfo(DataOutputStream os, EntryInfo entry) throws IOException {
+		writeString(os, entry.id);
+		os.writeLong(entry.updated);
+		writeString(os, entry.title);
+		writeString(os, entry.content);
+		writeString(os, entry.summary);
+		writeString(os, entry.icon);
+		// main link is usually one of links: store its index to keep the reference
+		int linkIndex = entry.link != null ? entry.links.indexOf(entry.link) : -1;
+		os.writeInt(linkIndex);
+		if (linkIndex < 0)
+			writeLinkInfo(os, entry.link);
+		os.writeInt(entry.links.size());
+		for (LinkInfo link : entry.links)
+			writeLinkInfo(os, link);
+		os.writeInt(entry.categories.size());
+		for (String category : entry.categories)
+			writeString(os, category);
+		os.writeInt(entry.authors.size());
+		for (AuthorInfo author : entry.authors) {
+			writeString(os, author.name);
+			writeString(os, author.uri);
+		}
+	}
+
+	private static EntryInfo readEntryInfo(DataInputStream is) throws IOException {
+		EntryInfo entry = new EntryInfo();
+		entry.id = readString(is);
+		entry.updated = is.readLong();
+		entry.title = readString(is);
+		entry.content = readString(is);
+		entry.summary = readString(is);
+		entry.icon = readString(is);
+		int linkIndex = is.readInt();
+		LinkInfo link = linkIndex < 0 ? readLinkInfo(is) : null;
+		int count = is.readInt();
+		for (int i = 0; i < count; i++)
+			entry.links.add(readLinkInfo(is));
+		if (linkIndex >= 0 && linkIndex < entry.links.size())
+			link = entry.links.get(linkIndex);
+		entry.link = link;
+		count = is.readInt();
+		for (int i = 0; i < count; i++)
+			entry.categories.add(readString(is));
+		count = is.readInt();
+		for (int i = 0; i < count; i++) {
+			AuthorInfo author = new AuthorInfo();
+			author.name = readString(is);
+			author.uri = readString(is);
+			entry.authors.add(author);
+		}
+		return entry;
+	}
+}
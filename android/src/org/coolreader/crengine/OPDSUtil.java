@@ -8,11 +8,13 @@ import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
-import java.io.ByteArrayInputStream;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
 import java.net.Authenticator;
 import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
@@ -24,10 +26,18 @@ import java.security.cert.X509Certificate;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Stack;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipFile;
 
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
@@ -89,8 +99,9 @@ xml:base="http://lib.ololo.cc/opds/">
 		public File onDownloadStart( String type, String url );
 		/**
 		 * Download progress
+		 * @param totalBytes is size of file, -1 if unknown
 		 */
-		public void onDownloadProgress( String type, String url, int percent );
+		public void onDownloadProgress( String type, String url, long bytesDownloaded, long totalBytes );
 		/**
 		 * Book is downloaded.
 		 */
@@ -125,6 +136,8 @@ xml:base="http://lib.ololo.cc/opds/">
 		public String rel;
 		public String title;
 		public String type;
+		public LinkInfo() {
+		}
 		public LinkInfo( URL baseURL, Attributes attributes ) {
 			rel = attributes.getValue("rel");
 			type = attributes.getValue("type");
@@ -233,6 +246,20 @@ xml:base="http://lib.ololo.cc/opds/">
 		public void setUrl(URL url) {
 			this.url = url;
 		}
+		/**
+		 * Append page loaded from cache instead of parsing it.
+		 */
+		public void addCachedPage(OPDSFeedCache.Page page) {
+			docInfo = page.docInfo;
+			entries.addAll(page.entries);
+		}
+		/**
+		 * Drop entries starting from specified index, e.g. cached entries of page which is changed on server.
+		 */
+		public void truncateEntries(int count) {
+			while (entries.size() > count)
+				entries.remove(entries.size() - 1);
+		}
 		private long parseTimestamp( String ts ) {
 			if ( ts==null )
 				return 0;
@@ -426,6 +453,7 @@ xml:base="http://lib.ololo.cc/opds/">
 					throw new SAXException("unexpected element " + localName);
 				if ( entryInfo.link!=null || entryInfo.getBestAcquisitionLink()!=null ) {
 					entries.add(entryInfo);
+					onEntryAdded();
 				}
 				insideEntry = false;
 				entryInfo = null;
@@ -447,6 +475,12 @@ xml:base="http://lib.ololo.cc/opds/">
 			super.startDocument();
 		}
 
+		/**
+		 * Called in parser thread as soon as next entry is parsed, before the rest of document is received.
+		 */
+		protected void onEntryAdded() throws SAXException {
+		}
+
 	}
 	
 	public static class DownloadTask {
@@ -493,12 +527,48 @@ xml:base="http://lib.ololo.cc/opds/">
 				callback.onError(msg);
 			});
 		}
+		// entries are passed to callback in batches while feed is being parsed: first batch is small
+		// to show first rows early, next ones are larger to avoid too frequent list updates
+		private static final int ENTRIES_FIRST_BATCH = 10;
+		private static final int ENTRIES_MAX_BATCH = 100;
+		private int nextNotifyCount = ENTRIES_FIRST_BATCH;
+		private int notifiedCount = 0;
+		private void notifyEntries() {
+			final int count = handler.entries.size();
+			if (count == notifiedCount)
+				return;
+			notifiedCount = count;
+			nextNotifyCount = count + Math.min(Math.max(count, ENTRIES_FIRST_BATCH), ENTRIES_MAX_BATCH);
+			// entries are shown already: don't show progress over them
+			partialDownloadCompleted = true;
+			final ArrayList<EntryInfo> entries = new ArrayList<>(handler.entries);
+			final DocInfo docInfo = handler.docInfo;
+			BackgroundThread.instance().executeGUI(() -> {
+				if (cancelled)
+					return;
+				hideProgress();
+				L.d("Parsing is partially. " + count + " entries found -- updating view");
+				if (!callback.onEntries(docInfo, entries))
+					cancel();
+			});
+		}
+		private void createHandler() {
+			if (handler==null) {
+				handler = new OPDSHandler(url) {
+					@Override
+					protected void onEntryAdded() throws SAXException {
+						if (cancelled)
+							throw new SAXException("cancelled");
+						if (handler.entries.size() >= nextNotifyCount)
+							notifyEntries();
+					}
+				};
+			} else
+				handler.setUrl(url);
+		}
 		private void parseFeed( InputStream is ) throws Exception {
 			try {
-				if (handler==null)
-					handler = new OPDSHandler(url);
-				else
-					handler.setUrl(url); // download next part
+				createHandler(); // or download next part
 				String[] namespaces = new String[] { 
                         "access", "http://www.bloglines.com/about/specs/fac-1.0",
                         "admin", "http://webns.net/mvcb/",
@@ -612,7 +682,135 @@ xml:base="http://lib.ololo.cc/opds/">
 			}
 			return null;
 		}
-		private void downloadBook( final String type, final String url, InputStream is, int contentLength, final String fileName, final boolean isZip ) throws Exception {
+		private static final int DOWNLOAD_BUFFER_SIZE = 16384;
+		private static final int DOWNLOAD_MAX_RETRIES = 3;
+		private static final long PARALLEL_DOWNLOAD_MIN_SIZE = 2 * 1024 * 1024;
+		private static final int PARALLEL_DOWNLOAD_SEGMENTS = 3;
+		private static final int DOWNLOAD_PROGRESS_INTERVAL = 300;
+
+		/**
+		 * Part of downloaded file: [start, end), end is -1 if length is unknown.
+		 */
+		private static class Segment {
+			final long start;
+			final long end;
+			long pos;
+			Segment(long start, long end, long pos) {
+				this.start = start;
+				this.end = end;
+				this.pos = pos;
+			}
+		}
+
+		/**
+		 * Collects number of bytes received by all segments, reporting progress to callback not too often.
+		 */
+		private class DownloadProgress {
+			final String type;
+			final String url;
+			final long totalBytes;
+			long bytesDownloaded;
+			long lastUpdate;
+			DownloadProgress(String type, String url, long totalBytes, long bytesDownloaded) {
+				this.type = type;
+				this.url = url;
+				this.totalBytes = totalBytes;
+				this.bytesDownloaded = bytesDownloaded;
+			}
+			synchronized void add(int count) {
+				bytesDownloaded += count;
+				long ts = System.currentTimeMillis();
+				if (ts - lastUpdate < DOWNLOAD_PROGRESS_INTERVAL)
+					return;
+				lastUpdate = ts;
+				final long done = bytesDownloaded;
+				BackgroundThread.instance().executeGUI(() -> callback.onDownloadProgress(type, url, done, totalBytes));
+			}
+		}
+
+		private HttpURLConnection openRangeConnection( URL url, Segment segment, String validator ) throws Exception {
+			HttpURLConnection conn = openConnection(url);
+			if ( conn==null )
+				throw new IOException("Only HTTP supported");
+			// ranges are applied to encoded content, so compression is not allowed here
+			conn.setRequestProperty("Accept-Encoding", "identity");
+			conn.setRequestProperty("Range", "bytes=" + segment.pos + "-" + (segment.end - 1));
+			conn.setRequestProperty("If-Range", validator); // full content is returned if file is changed
+			int response = conn.getResponseCode();
+			if ( response != HttpURLConnection.HTTP_PARTIAL ) {
+				conn.disconnect();
+				throw new IOException("Range request failed, response " + response);
+			}
+			return conn;
+		}
+
+		/**
+		 * Write segment of file, resuming it with range request if connection is dropped.
+		 * @param is is stream positioned at segment.pos, or null to open range request
+		 * @param rangeUrl is URL for range requests, null if server doesn't support them
+		 */
+		private void downloadSegment( File file, Segment segment, InputStream is, URL rangeUrl, String validator, DownloadProgress progress, AtomicBoolean failed ) throws Exception {
+			byte[] buf = new byte[DOWNLOAD_BUFFER_SIZE];
+			int retries = 0;
+			try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+				while ( segment.end<0 || segment.pos<segment.end ) {
+					HttpURLConnection conn = null;
+					long attemptStart = segment.pos;
+					try {
+						if ( is==null ) {
+							conn = openRangeConnection(rangeUrl, segment, validator);
+							is = conn.getInputStream();
+						}
+						raf.seek(segment.pos);
+						while ( segment.end<0 || segment.pos<segment.end ) {
+							if ( cancelled || failed.get() )
+								throw new InterruptedIOException("Download is cancelled");
+							int len = segment.end<0 ? buf.length : (int)Math.min(buf.length, segment.end - segment.pos);
+							int bytesRead = is.read(buf, 0, len);
+							if ( bytesRead<=0 )
+								break;
+							raf.write(buf, 0, bytesRead);
+							segment.pos += bytesRead;
+							progress.add(bytesRead);
+						}
+						if ( segment.end<0 )
+							break; // unknown length: EOF is end of file
+						if ( segment.pos<segment.end )
+							throw new IOException("Unexpected end of stream at " + segment.pos);
+					} catch (InterruptedIOException e) {
+						throw e;
+					} catch (IOException e) {
+						if ( segment.pos>attemptStart )
+							retries = 0;
+						if ( rangeUrl==null || cancelled || failed.get() || ++retries>DOWNLOAD_MAX_RETRIES )
+							throw e;
+						L.w("Download is interrupted at " + segment.pos + ", resuming: " + e.getMessage());
+					} finally {
+						if ( is!=null ) {
+							try {
+								is.close();
+							} catch (IOException e) {
+								// ignore
+							}
+							is = null;
+						}
+						if ( conn!=null )
+							conn.disconnect();
+					}
+				}
+			}
+		}
+
+		/**
+		 * Download book to file.
+		 * When server supports range requests, file is written to partial file which is kept on failure
+		 * to be resumed later, and large files are downloaded in several parallel ranges.
+		 * @param is is stream of response content
+		 * @param contentLength is length of content, -1 if unknown
+		 * @param rangeUrl is URL to use for range requests, null if server doesn't support them or content has no validator
+		 * @param validator is ETag or Last-Modified value of content to check resumed ranges with
+		 */
+		private void downloadBook( final String type, final String url, InputStream is, long contentLength, final String fileName, final boolean isZip, URL rangeUrl, String validator ) throws Exception {
 			L.d("Download requested: " + type + " " + url + " " + contentLength);
 			DocumentFormat fmt = DocumentFormat.byMimeType(type);
 			if ( fmt==null ) {
@@ -639,32 +837,81 @@ xml:base="http://lib.ololo.cc/opds/">
 				L.d("Cannot create file " + outFile.getAbsolutePath());
 				throw new Exception("Cannot create file");
 			}
-			
-			L.d("Download started: " + outFile.getAbsolutePath());
-//			long lastTs = System.currentTimeMillis(); 
-//			int lastPercent = -1;
+			// partial file name depends on content, to resume only download of the same file
+			final File partFile = new File(outDir, "." + Utils.calcSHA256((url + "\n" + contentLength + "\n" + validator).getBytes()).substring(0, 16) + ".part");
+			long resumeFrom = 0;
+			if ( rangeUrl!=null && partFile.isFile() && partFile.length()<contentLength )
+				resumeFrom = partFile.length();
+			else
+				partFile.delete();
+			// progress is reported by callback from now
+			partialDownloadCompleted = true;
+			hideProgress();
+
+			L.d("Download started: " + outFile.getAbsolutePath() + (resumeFrom>0 ? ", resuming from " + resumeFrom : ""));
+			DownloadProgress progress = new DownloadProgress(type, url, contentLength, resumeFrom);
+			AtomicBoolean failed = new AtomicBoolean();
+			boolean resumable = rangeUrl!=null;
 			boolean success = false;
-			try (FileOutputStream os = new FileOutputStream(outFile)) {
-				byte[] buf = new byte[16384];
-				int totalWritten = 0;
-				while (totalWritten<contentLength || contentLength==-1) {
-					int bytesRead = is.read(buf);
-					if ( bytesRead<=0 )
-						break;
-					os.write(buf, 0, bytesRead);
-					totalWritten += bytesRead;
-//					final int percent = totalWritten * 100 / contentLength;
-//					long ts = System.currentTimeMillis(); 
-//					if ( percent!=lastPercent && ts - lastTs > 1500 ) {
-//						L.d("Download progress: " + percent + "%");
-//						BackgroundThread.instance().postGUI(new Runnable() {
-//							@Override
-//							public void run() {
-//								callback.onDownloadProgress(type, url, percent);
-//							}
-//						});
-//					}
+			try {
+				if ( resumeFrom>0 ) {
+					is.close();
+					downloadSegment(partFile, new Segment(0, contentLength, resumeFrom), null, rangeUrl, validator, progress, failed);
+				} else if ( rangeUrl!=null && contentLength>=PARALLEL_DOWNLOAD_MIN_SIZE ) {
+					// first range is read from already opened stream, others are requested in parallel
+					try (RandomAccessFile raf = new RandomAccessFile(partFile, "rw")) {
+						raf.setLength(contentLength);
+					}
+					long segmentSize = (contentLength + PARALLEL_DOWNLOAD_SEGMENTS - 1) / PARALLEL_DOWNLOAD_SEGMENTS;
+					ArrayList<Segment> segments = new ArrayList<>();
+					for ( long start = 0; start<contentLength; start += segmentSize )
+						segments.add(new Segment(start, Math.min(start + segmentSize, contentLength), start));
+					ExecutorService executor = Executors.newFixedThreadPool(segments.size() - 1);
+					try {
+						ArrayList<Future<Void>> futures = new ArrayList<>();
+						for ( int i = 1; i<segments.size(); i++ ) {
+							final Segment segment = segments.get(i);
+							futures.add(executor.submit(() -> {
+								try {
+									downloadSegment(partFile, segment, null, rangeUrl, validator, progress, failed);
+								} catch (Exception e) {
+									failed.set(true);
+									throw e;
+								}
+								return null;
+							}));
+						}
+						try {
+							downloadSegment(partFile, segments.get(0), is, rangeUrl, validator, progress, failed);
+						} catch (Exception e) {
+							failed.set(true);
+							throw e;
+						}
+						for ( Future<Void> future : futures ) {
+							try {
+								future.get();
+							} catch (ExecutionException e) {
+								throw e.getCause() instanceof Exception ? (Exception)e.getCause() : e;
+							}
+						}
+					} finally {
+						executor.shutdownNow();
+					}
+					// ranges can't be resumed individually
+					resumable = false;
+				} else {
+					downloadSegment(partFile, new Segment(0, contentLength, 0), is, rangeUrl, validator, progress, failed);
+				}
+				// verify result
+				if ( contentLength>=0 && partFile.length()!=contentLength )
+					throw new IOException("Wrong size of downloaded file: " + partFile.length() + " instead of " + contentLength);
+				if ( isZip || fmt.getMimeFormat().endsWith("zip") ) {
+					try (ZipFile zip = new ZipFile(partFile)) {
+						L.d("Downloaded archive contains " + zip.size() + " entries");
+					}
 				}
+				if ( !outFile.delete() || !partFile.renameTo(outFile) )
+					throw new IOException("Cannot rename " + partFile + " to " + outFile);
 				success = true;
 			} finally {
 				if ( !success ) {
@@ -672,6 +919,13 @@ xml:base="http://lib.ololo.cc/opds/">
 						L.w("deleting unsuccessully downloaded file " + outFile);
 						outFile.delete();
 					}
+					if ( partFile.exists() ) {
+						if ( resumable && !failed.get() && partFile.length()>0 && partFile.length()<contentLength ) {
+							L.i("keeping partially downloaded file " + partFile + " to resume download later");
+						} else {
+							partFile.delete();
+						}
+					}
 				}
 			}
 			L.d("Download finished");
@@ -695,6 +949,98 @@ xml:base="http://lib.ololo.cc/opds/">
 			return Base64.encodeToString((username + ":" + password).getBytes(), Base64.NO_WRAP);
 		}
 
+		private boolean nextPage(HashSet<String> visited) throws IOException {
+			if (handler.docInfo.nextLink!=null && handler.docInfo.nextLink.type!=null && handler.docInfo.nextLink.type.startsWith("application/atom+xml;profile=opds-catalog")) {
+				if (handler.entries.size() < MAX_OPDS_ITEMS) {
+					url = new URL(handler.docInfo.nextLink.href);
+					L.d("continue with next part: " + url);
+					return !visited.contains(url.toString());
+				} else {
+					L.d("max item count reached: " + handler.entries.size());
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Open connection with proxy, authentication and timeouts set up, but not connected yet.
+		 * @return connection, or null if URL protocol is not HTTP(S)
+		 */
+		private HttpURLConnection openConnection( URL url ) throws Exception {
+			URL newURL = url;
+			boolean useOrobotProxy = false;
+			String host = url.getHost();
+			if (host.endsWith(".onion"))
+				useOrobotProxy = true;
+			String oldAddress = url.toString();
+			if (oldAddress.startsWith("orobot://")) {
+				newURL = new URL("http://" + oldAddress.substring(9)); // skip orobot://
+				useOrobotProxy = true;
+				L.d("Converting url - " + oldAddress + " to " + newURL + " for using ORobot proxy");
+			} else if (oldAddress.startsWith("orobots://")) {
+				newURL = new URL("https://" + oldAddress.substring(10)); // skip orobots://
+				useOrobotProxy = true;
+				L.d("Converting url - " + oldAddress + " to " + newURL + " for using ORobot proxy");
+			}
+			Proxy proxy = null;
+			System.setProperty("http.keepAlive", "false");
+			if (useOrobotProxy) {
+				// Set-up proxy
+				//System.setProperty("http.proxyHost", "127.0.0.1");
+				//System.setProperty("http.proxyPort", "8118");
+				//L.d("Using ORobot proxy: " + proxy);
+				proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress("127.0.0.1", 8118)); // ORobot proxy running on this device
+				L.d("Using ORobot proxy: " + proxy);
+			} else {
+				//System.clearProperty("http.proxyHost");
+				//System.clearProperty("http.proxyPort");
+			}
+
+			URLConnection conn = proxy == null ? newURL.openConnection() : newURL.openConnection(proxy);
+			if ( conn instanceof HttpsURLConnection ) {
+				HttpsURLConnection https = (HttpsURLConnection)conn;
+
+				// Create a trust manager that does not validate certificate chains
+				TrustManager[] trustAllCerts = new TrustManager[] { new X509TrustManager() {
+					public java.security.cert.X509Certificate[] getAcceptedIssuers() {
+						return null;
+					}
+					public void checkClientTrusted(X509Certificate[] certs, String authType) {
+					}
+					public void checkServerTrusted(X509Certificate[] certs, String authType) {
+					}
+				} };
+				// Install the all-trusting trust manager
+				final SSLContext sc = SSLContext.getInstance("SSL");
+				sc.init(null, trustAllCerts, new java.security.SecureRandom());
+				HttpsURLConnection.setDefaultSSLSocketFactory(sc.getSocketFactory());
+
+				https.setHostnameVerifier((arg0, arg1) -> true);
+			}
+			if ( !(conn instanceof HttpURLConnection) )
+				return null;
+			HttpURLConnection connection = (HttpURLConnection)conn;
+			connection.setRequestProperty("User-Agent", "CoolReader/3(Android)");
+			if ( referer!=null )
+				connection.setRequestProperty("Referer", referer);
+			connection.setInstanceFollowRedirects(true);
+			connection.setUseCaches(false);
+
+			if (username != null && username.length() > 0 && password != null && password.length() > 0) {
+				connection.setRequestProperty("Authorization", encodePassword(username, password));
+				Authenticator.setDefault(new Authenticator() {
+					protected PasswordAuthentication getPasswordAuthentication() {
+						return new PasswordAuthentication(username, password.toCharArray());
+					}});
+			}
+
+			connection.setAllowUserInteraction(false);
+			connection.setConnectTimeout(CONNECT_TIMEOUT);
+			connection.setReadTimeout(READ_TIMEOUT);
+			connection.setDoInput(true);
+			return connection;
+		}
+
 		public void runInternal() {
 			connection = null;
 			
@@ -702,89 +1048,44 @@ xml:base="http://lib.ololo.cc/opds/">
 			boolean loadNext = false;
 			HashSet<String> visited = new HashSet<String>();
 
+			OPDSFeedCache feedCache = getFeedCache(coolReader);
 			do {
+				String cacheKey = null;
+				OPDSFeedCache.Page cachedPage = null;
+				int pageStart = handler != null ? handler.entries.size() : 0;
 				try {
 					setProgressMessage( url.toString(), -1 );
 					visited.add(url.toString());
+					if (expectedType == null || expectedType.startsWith("application/atom+xml")) {
+						cacheKey = OPDSFeedCache.makeKey(url.toString(), username, password);
+						cachedPage = feedCache.get(cacheKey);
+						if (cachedPage != null) {
+							// show cached page at once, then revalidate it
+							L.d("Using cached page for " + url + ", revalidating");
+							createHandler();
+							handler.addCachedPage(cachedPage);
+							notifyEntries();
+						}
+					}
 					long startTimeStamp = System.currentTimeMillis();
 					if (!partialDownloadCompleted) {
 						if (delayedProgress != null)
 							delayedProgress.cancel();
 						delayedProgress = Services.getEngine().showProgressDelayed(0, progressMessage, PROGRESS_DELAY_MILLIS);
 					}
-					URL newURL = url;
-					boolean useOrobotProxy = false;
-					String host = url.getHost();
-					if (host.endsWith(".onion"))
-					    useOrobotProxy = true;
-					String oldAddress = url.toString();
-					if (oldAddress.startsWith("orobot://")) {
-					    newURL = new URL("http://" + oldAddress.substring(9)); // skip orobot://
-					    useOrobotProxy = true;
-					    L.d("Converting url - " + oldAddress + " to " + newURL + " for using ORobot proxy");
-					} else if (oldAddress.startsWith("orobots://")) {
-					    newURL = new URL("https://" + oldAddress.substring(10)); // skip orobots://
-					    useOrobotProxy = true;
-					    L.d("Converting url - " + oldAddress + " to " + newURL + " for using ORobot proxy");
-					}
-					Proxy proxy = null;
-                    System.setProperty("http.keepAlive", "false");					
-					if (useOrobotProxy) {
-                        // Set-up proxy
-                        //System.setProperty("http.proxyHost", "127.0.0.1");
-                        //System.setProperty("http.proxyPort", "8118");
-					    //L.d("Using ORobot proxy: " + proxy);
-					    proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress("127.0.0.1", 8118)); // ORobot proxy running on this device
-					    L.d("Using ORobot proxy: " + proxy);
-					} else {
-                        //System.clearProperty("http.proxyHost");
-                        //System.clearProperty("http.proxyPort");
-					}
-				    
-					URLConnection conn = proxy == null ? newURL.openConnection() : newURL.openConnection(proxy);
-					if ( conn instanceof HttpsURLConnection ) {
-	                	HttpsURLConnection https = (HttpsURLConnection)conn;
-
-	                    // Create a trust manager that does not validate certificate chains
-	                    TrustManager[] trustAllCerts = new TrustManager[] { new X509TrustManager() {
-	                        public java.security.cert.X509Certificate[] getAcceptedIssuers() {
-	                            return null;
-	                        }
-	                        public void checkClientTrusted(X509Certificate[] certs, String authType) {
-	                        }
-	                        public void checkServerTrusted(X509Certificate[] certs, String authType) {
-	                        }
-	                    } };
-	                    // Install the all-trusting trust manager
-	                    final SSLContext sc = SSLContext.getInstance("SSL");
-	                    sc.init(null, trustAllCerts, new java.security.SecureRandom());
-	                    HttpsURLConnection.setDefaultSSLSocketFactory(sc.getSocketFactory());
-	                    
-	                	https.setHostnameVerifier((arg0, arg1) -> true);
-					}
-					if ( !(conn instanceof HttpURLConnection) ) {
+					connection = openConnection(url);
+					if ( connection==null ) {
 						onError("Only HTTP supported");
 						return;
 					}
-					connection = (HttpURLConnection)conn;
-		            connection.setRequestProperty("User-Agent", "CoolReader/3(Android)");
-		            if ( referer!=null )
-		            	connection.setRequestProperty("Referer", referer);
-		            connection.setInstanceFollowRedirects(true);
-	                connection.setUseCaches(false);
-		            
-	                if (username != null && username.length() > 0 && password != null && password.length() > 0) {
-	                	connection.setRequestProperty("Authorization", encodePassword(username, password));
-	                	Authenticator.setDefault(new Authenticator() {
-	                	    protected PasswordAuthentication getPasswordAuthentication() {
-	                	        return new PasswordAuthentication(username, password.toCharArray());
-	                	    }});	            	
+		            // decompressed below, while reading
+		            connection.setRequestProperty("Accept-Encoding", "gzip");
+	                if (cachedPage != null) {
+	                	if (cachedPage.etag != null)
+	                		connection.setRequestProperty("If-None-Match", cachedPage.etag);
+	                	if (cachedPage.lastModified != null)
+	                		connection.setRequestProperty("If-Modified-Since", cachedPage.lastModified);
 	                }
-		            
-		            connection.setAllowUserInteraction(false);
-		            connection.setConnectTimeout(CONNECT_TIMEOUT);
-		            connection.setReadTimeout(READ_TIMEOUT);
-		            connection.setDoInput(true);
 		            String fileName = null;
 		            String disp = connection.getHeaderField("Content-Disposition");
 		            if ( disp!=null ) {
@@ -813,10 +1114,22 @@ xml:base="http://lib.ololo.cc/opds/">
 							onError("Duplicate redirect " + url);
 							return;
 						}
+						if (cachedPage != null) {
+							// cached page is shown for original URL, entries are taken from redirect target
+							handler.truncateEntries(pageStart);
+							notifiedCount = -1;
+						}
 						loadNext = true;
 						L.d("Response " + response + ": redirect to " + url);
 						continue;
 					}
+					if ( response == HttpURLConnection.HTTP_NOT_MODIFIED && cachedPage != null ) {
+						L.d("Cached page is not modified: " + url);
+						feedCache.touch(cacheKey);
+						itemsLoadedPartially = true;
+						loadNext = nextPage(visited);
+						continue;
+					}
 					if ( response != 200 ) {
 						onError("Error " + response);
 						return;
@@ -837,49 +1150,90 @@ xml:base="http://lib.ololo.cc/opds/">
 					if (delayedProgress != null)
 						delayedProgress.cancel();
 					is = new ProgressInputStream(is, startTimeStamp, progressMessage, contentLen, 80);
-					final int MAX_CONTENT_LEN_TO_BUFFER = 256*1024;
+					int dataLen = contentLen;
+					if ( "gzip".equalsIgnoreCase(contentEncoding) ) {
+						is = new GZIPInputStream(is, 8192);
+						dataLen = -1; // content length is size of compressed data
+					}
+					is = new BufferedInputStream(is, 8192);
+					final int CONTENT_SIZE_TO_DETECT_TYPE = 4096;
 					boolean isZip = contentType!=null && contentType.equals("application/zip");
 					if ( expectedType!=null )
 						contentType = expectedType;
-					else if ( contentLen>0 && contentLen<MAX_CONTENT_LEN_TO_BUFFER) { // autodetect type
-						byte[] buf = new byte[contentLen];
-						if ( is.read(buf)!=contentLen ) {
-							onError("Wrong content length");
-							return;
+					else { // autodetect type by beginning of data, data is parsed from stream as it is received
+						is.mark(CONTENT_SIZE_TO_DETECT_TYPE);
+						byte[] buf = new byte[CONTENT_SIZE_TO_DETECT_TYPE];
+						int len = 0;
+						while (len < buf.length) {
+							int bytesRead = is.read(buf, len, buf.length - len);
+							if (bytesRead <= 0)
+								break;
+							len += bytesRead;
 						}
-						is.close();
-						is = null;
-						is = new ByteArrayInputStream(buf);
+						is.reset();
+						if (len < buf.length)
+							buf = Arrays.copyOf(buf, len);
 						if ( findSubstring(buf, "<?xml version=")>=0 && findSubstring(buf, "<feed")>=0  )
 							contentType = "application/atom+xml"; // override type
 					}
+					if ( contentType == null ) {
+						onError("Unknown content type");
+						return;
+					}
 					if ( contentType.startsWith("application/atom+xml") ) {
 						if (EXTENDED_LOG) L.d("Parsing feed");
+						if (cachedPage != null) {
+							// page is changed: replace cached entries, showing updated list when page is parsed
+							handler.truncateEntries(pageStart);
+							notifiedCount = -1;
+							nextNotifyCount = Integer.MAX_VALUE;
+							cachedPage = null;
+						}
+						String etag = connection.getHeaderField("ETag");
+						String lastModified = connection.getHeaderField("Last-Modified");
 						parseFeed( is );
 						itemsLoadedPartially = true;
-						if (handler.docInfo.nextLink!=null && handler.docInfo.nextLink.type.startsWith("application/atom+xml;profile=opds-catalog")) {
-							if (handler.entries.size() < MAX_OPDS_ITEMS) {
-								url = new URL(handler.docInfo.nextLink.href);
-								loadNext = !visited.contains(url.toString());
-								L.d("continue with next part: " + url);
-							} else {
-								L.d("max item count reached: " + handler.entries.size());
-								loadNext = false;
-							}
-						} else {
-							loadNext = false;
+						if (cacheKey != null && !cancelled) {
+							ArrayList<EntryInfo> pageEntries = new ArrayList<>(handler.entries.subList(pageStart, handler.entries.size()));
+							feedCache.put(cacheKey, new OPDSFeedCache.Page(etag, lastModified, handler.docInfo, pageEntries));
 						}
-							
+						loadNext = nextPage(visited);
 					} else {
 						if ( fileName==null )
 							fileName = defaultFileName;
 						L.d("Downloading book: " + contentEncoding);
-						downloadBook( contentType, url.toString(), is, contentLen, fileName, isZip );
+						// range requests are possible only for identity encoded content of known length
+						URL rangeUrl = null;
+						String validator = null;
+						if ( dataLen>0 && "bytes".equalsIgnoreCase(connection.getHeaderField("Accept-Ranges")) ) {
+							validator = connection.getHeaderField("ETag");
+							if ( validator==null || validator.startsWith("W/") )
+								validator = connection.getHeaderField("Last-Modified"); // weak ETag can't be used in If-Range
+							// without validator changed file of the same size could be spliced from different versions
+							if ( validator!=null )
+								rangeUrl = connection.getURL();
+						}
+						downloadBook( contentType, url.toString(), is, dataLen, fileName, isZip, rangeUrl, validator );
 						hideProgress();
 						loadNext = false;
 						itemsLoadedPartially = false;
 					}
 				} catch (Exception e) {
+					if (cancelled) {
+						L.d("Download task is cancelled: " + url);
+						break;
+					}
+					if (cachedPage != null) {
+						// cannot revalidate, e.g. offline: keep showing cached page
+						L.w("Cannot revalidate cached page " + url + ": " + e.toString());
+						itemsLoadedPartially = true;
+						try {
+							loadNext = nextPage(visited);
+						} catch (IOException ioe) {
+							loadNext = false;
+						}
+						continue;
+					}
 					L.e("Exception while trying to open URI " + url.toString(), e);
 					if ( progressShown )
 						Services.getEngine().hideProgress();
@@ -900,12 +1254,7 @@ xml:base="http://lib.ololo.cc/opds/">
 					// partially loaded
 					if ( progressShown )
 						Services.getEngine().hideProgress();
-					final ArrayList<EntryInfo> entries = new ArrayList<>(handler.entries);
-					BackgroundThread.instance().executeGUI(() -> {
-						L.d("Parsing is partially. " + handler.entries.size() + " entries found -- updating view");
-						if (!callback.onEntries(handler.docInfo, entries))
-							cancel();
-					});
+					notifyEntries();
 				}
 			} while (loadNext && !cancelled);
 			if (delayedProgress != null)
@@ -990,13 +1339,36 @@ xml:base="http://lib.ololo.cc/opds/">
 				return sourceStream.read();
 			}
 
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int count = sourceStream.read(b, off, len);
+				if (count > 0) {
+					bytesRead += count;
+					updateProgress();
+				}
+				return count;
+			}
+
+			@Override
+			public int available() throws IOException {
+				return sourceStream.available();
+			}
+
 			@Override
 			public void close() throws IOException {
-				super.close();
+				sourceStream.close();
 			}
 		}
 		
 	}
+	private static final long FEED_CACHE_MAX_SIZE = 8 * 1024 * 1024;
+	private static OPDSFeedCache feedCache;
+	private static synchronized OPDSFeedCache getFeedCache(CoolReader coolReader) {
+		if (feedCache == null)
+			feedCache = new OPDSFeedCache(new File(coolReader.getCacheDir(), "opds"), FEED_CACHE_MAX_SIZE);
+		return feedCache;
+	}
+
 	private static DownloadTask currentTask;
 	public static DownloadTask create(CoolReader coolReader, URL uri, String defaultFileName, String expectedType, String referer, DownloadCallback callback, String username, String password) {
 		if (currentTask != null)
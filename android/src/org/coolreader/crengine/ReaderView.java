@@ -39,6 +39,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
@@ -1421,6 +1422,7 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 
 	public void findText(final String pattern, final boolean reverse, final boolean caseInsensitive) {
 		BackgroundThread.ensureGUI();
+		cancelFindAllText();
 		final ReaderView view = this;
 		mEngine.execute(new Task() {
 			public void work() throws Exception {
@@ -1450,6 +1452,28 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 
 	public void findNext(final String pattern, final boolean reverse, final boolean caseInsensitive) {
 		BackgroundThread.ensureGUI();
+		if (null != mTextSearch && mTextSearch.matches(pattern, caseInsensitive) && mTextSearch.getCurrentIndex() >= 0) {
+			// step through list of matches instead of searching again
+			final TextSearch search = mTextSearch;
+			mEngine.execute(new Task() {
+				PositionProperties pos;
+
+				public void work() throws Exception {
+					BackgroundThread.ensureBackground();
+					pos = doc.getPositionProps(null, false);
+				}
+
+				public void done() {
+					BackgroundThread.ensureGUI();
+					if (search != mTextSearch || null == pos)
+						return;
+					SearchResult result = search.next(reverse, pos.pageNumber, pos.pageMode == 2 ? 2 : 1);
+					if (null != result)
+						goToSearchResult(result);
+				}
+			});
+			return;
+		}
 		mEngine.execute(new Task() {
 			public void work() throws Exception {
 				BackgroundThread.ensureBackground();
@@ -1470,6 +1494,59 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 		});
 	}
 
+	private TextSearch mTextSearch;
+
+	/**
+	 * Start search for all matches of pattern in background, cancelling previous one.
+	 * @return search started, or null if no document is opened
+	 */
+	public TextSearch findAllText(final String pattern, final boolean caseInsensitive, TextSearch.Listener listener) {
+		BackgroundThread.ensureGUI();
+		cancelFindAllText();
+		if (mBookInfo == null || !isBookLoaded())
+			return null;
+		mTextSearch = new TextSearch(doc, mBookInfo.getFileInfo().getPathName(), pattern, caseInsensitive);
+		mTextSearch.start(listener);
+		return mTextSearch;
+	}
+
+	public void cancelFindAllText() {
+		if (null != mTextSearch) {
+			mTextSearch.cancel();
+			mTextSearch = null;
+		}
+	}
+
+	/**
+	 * Select match found by findAllText() and move to it.
+	 * @param index is index of match in results list
+	 */
+	public void goToSearchResult(int index) {
+		BackgroundThread.ensureGUI();
+		if (null == mTextSearch)
+			return;
+		SearchResult result = mTextSearch.get(index);
+		if (null == result)
+			return;
+		goToSearchResult(result);
+		FindNextDlg.showDialog(mActivity, this, mTextSearch.getPattern(), mTextSearch.isCaseInsensitive());
+	}
+
+	private void goToSearchResult(final SearchResult result) {
+		mEngine.execute(new Task() {
+			public void work() throws Exception {
+				BackgroundThread.ensureBackground();
+				if (!doc.selectText(result.startPos, result.endPos))
+					throw new Exception("cannot select search result");
+			}
+
+			public void done() {
+				BackgroundThread.ensureGUI();
+				drawPage(true);
+			}
+		});
+	}
+
 	private boolean flgHighlightBookmarks = false;
 
 	public void clearSelection() {
@@ -2584,15 +2661,21 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 		post(new Task() {
 			boolean res;
 			boolean isMoveCommand;
+			boolean isPageTurnCommand;
 
 			public void work() {
 				BackgroundThread.ensureBackground();
 				res = doc.doCommand(cmd.nativeId, param);
 				switch (cmd) {
-					case DCMD_BEGIN:
-					case DCMD_LINEUP:
 					case DCMD_PAGEUP:
 					case DCMD_PAGEDOWN:
+					case DCMD_GO_PAGE:
+						// page content is not changed, cached page images are still valid
+						isPageTurnCommand = true;
+						isMoveCommand = true;
+						break;
+					case DCMD_BEGIN:
+					case DCMD_LINEUP:
 					case DCMD_LINEDOWN:
 					case DCMD_LINK_FORWARD:
 					case DCMD_LINK_BACK:
@@ -2601,7 +2684,6 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 					case DCMD_LINK_GO:
 					case DCMD_END:
 					case DCMD_GO_POS:
-					case DCMD_GO_PAGE:
 					case DCMD_MOVE_BY_CHAPTER:
 					case DCMD_GO_SCROLL_POS:
 					case DCMD_LINK_FIRST:
@@ -2618,7 +2700,8 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 
 			public void done() {
 				if (res) {
-					invalidImages = true;
+					if (!isPageTurnCommand)
+						invalidImages = true;
 					drawPage(doneHandler, false);
 				}
 				if (isMoveCommand && isBookLoaded())
@@ -2880,6 +2963,8 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 			mMultiSelectionAction = Utils.parseInt(value, SELECTION_ACTION_TOOLBAR);
 		} else if (PROP_APP_VIEW_ANIM_DURATION.equals(key)) {
 			mAvgDrawAnimationStats.fill(Utils.parseInt(value, 50));
+		} else if (PROP_APP_VIEW_PAGE_CACHE_SIZE.equals(key)) {
+			setPageCacheSize(Utils.parseInt(value, DEF_PAGE_CACHE_SIZE, 1, MAX_PAGE_CACHE_SIZE));
 		} else {
 			//mActivity.applyAppSetting(key, value);
 		}
@@ -3273,6 +3358,7 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 
 	private static class BitmapFactory {
 		public static final int MAX_FREE_LIST_SIZE = 2;
+		private int maxFreeListSize = MAX_FREE_LIST_SIZE;
 		ArrayList<Bitmap> freeList = new ArrayList<Bitmap>();
 		ArrayList<Bitmap> usedList = new ArrayList<Bitmap>();
 
@@ -3301,6 +3387,10 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 			return bmp;
 		}
 
+		public synchronized void setMaxFreeListSize(int size) {
+			maxFreeListSize = Math.max(size, MAX_FREE_LIST_SIZE);
+		}
+
 		public synchronized void compact() {
 			while (freeList.size() > 0) {
 				//freeList.get(0).recycle();//20110109
@@ -3314,7 +3404,7 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 				if (usedList.get(i) == bmp) {
 					freeList.add(bmp);
 					usedList.remove(i);
-					while (freeList.size() > MAX_FREE_LIST_SIZE) {
+					while (freeList.size() > maxFreeListSize) {
 						//freeList.get(0).recycle(); //20110109
 						Bitmap b = freeList.remove(0);
 						runtime.trackAlloc(b.getWidth() * b.getHeight() * 2);
@@ -3336,6 +3426,8 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 		Bitmap bitmap;
 		PositionProperties position;
 		ImageInfo imageInfo;
+		// time and battery state shown in page header when image was rendered
+		String headerStamp;
 
 		void recycle() {
 			factory.release(bitmap);
@@ -3355,15 +3447,128 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 
 	}
 
+	static private final int DEF_PAGE_CACHE_SIZE = 4;
+	static private final int MAX_PAGE_CACHE_SIZE = 16;
+
 	private BitmapInfo mCurrentPageInfo;
-	private BitmapInfo mNextPageInfo;
+	// pre-rendered pages other than current one, least recently used first
+	private final ArrayList<BitmapInfo> mPageCache = new ArrayList<>();
+	private int mPageCacheSize = DEF_PAGE_CACHE_SIZE;
+	// direction of last page turn: 1 forward, -1 backward
+	private int mLastPageTurnDirection = 1;
+	private BackgroundThread.CancelToken mPageCacheFillToken;
+
+	/**
+	 * Page header shows current time and battery state: images rendered with other values are outdated.
+	 */
+	private String getHeaderStamp() {
+		return (System.currentTimeMillis() / 60000) + ":" + mBatteryState + ":" + mBatteryChargingConn + ":" + mBatteryChargeLevel;
+	}
+
+	private BitmapInfo findCachedPage(PositionProperties pos) {
+		String stamp = getHeaderStamp();
+		for (int i = mPageCache.size() - 1; i >= 0; i--) {
+			BitmapInfo bi = mPageCache.get(i);
+			if (!stamp.equals(bi.headerStamp)) {
+				mPageCache.remove(i).recycle();
+				continue;
+			}
+			if (bi.position != null && bi.position.equals(pos) && bi.imageInfo == null) {
+				// move on top
+				mPageCache.remove(i);
+				mPageCache.add(bi);
+				return bi;
+			}
+		}
+		return null;
+	}
+
+	private void addCachedPage(BitmapInfo bi) {
+		if (bi.imageInfo != null) {
+			bi.recycle();
+			return;
+		}
+		mPageCache.add(bi);
+		trimPageCache();
+	}
+
+	private void trimPageCache() {
+		int limit = getPageCacheLimit();
+		while (mPageCache.size() > limit)
+			mPageCache.remove(0).recycle();
+	}
+
+	private void clearPageCache() {
+		for (BitmapInfo bi : mPageCache)
+			bi.recycle();
+		mPageCache.clear();
+	}
+
+	/**
+	 * Returns number of pages which may be kept in cache besides current one:
+	 * configured cache size, limited to 1/8 of heap.
+	 */
+	private int getPageCacheLimit() {
+		int limit = mPageCacheSize;
+		if (mCurrentPageInfo != null && mCurrentPageInfo.bitmap != null) {
+			long pageBytes = (long) mCurrentPageInfo.bitmap.getRowBytes() * mCurrentPageInfo.bitmap.getHeight();
+			if (pageBytes > 0)
+				limit = (int) Math.min(limit, Runtime.getRuntime().maxMemory() / 8 / pageBytes);
+		}
+		return Math.max(limit, 1);
+	}
+
+	private void setPageCacheSize(int size) {
+		mPageCacheSize = size;
+		factory.setMaxFreeListSize(size + 1);
+		BackgroundThread.instance().postBackground(this::trimPageCache);
+	}
+
+	/**
+	 * Speculatively render pages around current one, in background, one page per task.
+	 * Pages in the direction of last turn are prepared first.
+	 * Filling is abandoned as soon as another page is drawn or animation is started.
+	 */
+	private void schedulePageCacheFill() {
+		BackgroundThread.ensureBackground();
+		if (mPageCacheFillToken != null)
+			mPageCacheFillToken.cancel();
+		mPageCacheFillToken = null;
+		if (mCurrentPageInfo == null || mCurrentPageInfo.position == null || mCurrentPageInfo.position.pageMode == 0 || mCurrentPageInfo.imageInfo != null)
+			return;
+		int limit = getPageCacheLimit();
+		final int[] offsets = new int[limit];
+		int ahead = 0;
+		int behind = 0;
+		for (int i = 0; i < limit; i++) {
+			// keep one page behind, the rest ahead
+			if (i == 1 || (i > 1 && ahead >= limit - 1))
+				offsets[i] = -mLastPageTurnDirection * ++behind;
+			else
+				offsets[i] = mLastPageTurnDirection * ++ahead;
+		}
+		final BackgroundThread.CancelToken token = new BackgroundThread.CancelToken();
+		mPageCacheFillToken = token;
+		BackgroundThread.instance().postBackground(new Runnable() {
+			int index = 0;
+
+			@Override
+			public void run() {
+				if (!mOpened || invalidImages || currentAnimation != null || currentImageViewer != null)
+					return;
+				preparePageImage(offsets[index]);
+				if (++index < offsets.length)
+					BackgroundThread.instance().postBackground(this, 0, BackgroundThread.PRIORITY_PREFETCH, token);
+			}
+		}, 0, BackgroundThread.PRIORITY_PREFETCH, token);
+	}
 
 	/**
 	 * Prepare and cache page image.
-	 * Cache is represented by two slots: mCurrentPageInfo and mNextPageInfo.
+	 * Cache is represented by mCurrentPageInfo slot and mPageCache ring of up to mPageCacheSize
+	 * other pages (previously shown and speculatively pre-rendered ones).
 	 * If page already exists in cache, returns it (if current page requested,
-	 * ensures that it became stored as mCurrentPageInfo; if another page requested,
-	 * no mCurrentPageInfo/mNextPageInfo reordering made).
+	 * ensures that it became stored as mCurrentPageInfo, moving old current page to the ring).
 	 *
 	 * @param offset is kind of page: 0==current, -1=previous, 1=next page
 	 * @return page image and properties, null if requested page is unavailable (e.g. requested next/prev page is out of document range)
@@ -3385,9 +3590,7 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 			if (mCurrentPageInfo != null)
 				mCurrentPageInfo.recycle();
 			mCurrentPageInfo = null;
-			if (mNextPageInfo != null)
-				mNextPageInfo.recycle();
-			mNextPageInfo = null;
+			clearPageCache();
 			invalidImages = false;
 		}
 
@@ -3424,95 +3627,62 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 
 		boolean isPageView = currpos.pageMode != 0;
 
-		BitmapInfo currposBitmap = null;
-		if (mCurrentPageInfo != null && mCurrentPageInfo.position != null && mCurrentPageInfo.position.equals(currpos) && mCurrentPageInfo.imageInfo == null)
-			currposBitmap = mCurrentPageInfo;
-		else if (mNextPageInfo != null && mNextPageInfo.position != null && mNextPageInfo.position.equals(currpos) && mNextPageInfo.imageInfo == null)
-			currposBitmap = mNextPageInfo;
 		if (offset == 0) {
 			// Current page requested
-			if (currposBitmap != null) {
-				if (mNextPageInfo == currposBitmap) {
-					// reorder pages
-					BitmapInfo tmp = mNextPageInfo;
-					mNextPageInfo = mCurrentPageInfo;
-					mCurrentPageInfo = tmp;
-				}
+			if (mCurrentPageInfo != null && mCurrentPageInfo.position != null && mCurrentPageInfo.position.equals(currpos) && mCurrentPageInfo.imageInfo == null
+					&& getHeaderStamp().equals(mCurrentPageInfo.headerStamp)) {
 				// found ready page image
 				return mCurrentPageInfo;
 			}
+			BitmapInfo bi = findCachedPage(currpos);
+			if (bi != null)
+				mPageCache.remove(bi);
 			if (mCurrentPageInfo != null) {
-				mCurrentPageInfo.recycle();
+				if (isPageView && mCurrentPageInfo.position != null && mCurrentPageInfo.position.pageNumber != currpos.pageNumber)
+					mLastPageTurnDirection = currpos.pageNumber > mCurrentPageInfo.position.pageNumber ? 1 : -1;
+				// keep previous page for flipping back
+				addCachedPage(mCurrentPageInfo);
 				mCurrentPageInfo = null;
 			}
-			BitmapInfo bi = new BitmapInfo();
-			bi.position = currpos;
-			bi.bitmap = factory.get(internalDX > 0 ? internalDX : requestedWidth,
-					internalDY > 0 ? internalDY : requestedHeight);
-			doc.setBatteryState(mBatteryState, mBatteryChargingConn, mBatteryChargeLevel);
-			doc.getPageImage(bi.bitmap);
+			if (bi == null) {
+				bi = new BitmapInfo();
+				bi.position = currpos;
+				bi.bitmap = factory.get(internalDX > 0 ? internalDX : requestedWidth,
+						internalDY > 0 ? internalDY : requestedHeight);
+				bi.headerStamp = getHeaderStamp();
+				doc.setBatteryState(mBatteryState, mBatteryChargingConn, mBatteryChargeLevel);
+				doc.getPageImage(bi.bitmap);
+			}
 			mCurrentPageInfo = bi;
 			//log.v("Prepared new current page image " + mCurrentPageInfo);
 			return mCurrentPageInfo;
 		}
 		if (isPageView) {
 			// PAGES: one of next or prev pages requested, offset is specified as param
-			int cmd1 = offset > 0 ? ReaderCommand.DCMD_PAGEDOWN.nativeId : ReaderCommand.DCMD_PAGEUP.nativeId;
-			int cmd2 = offset > 0 ? ReaderCommand.DCMD_PAGEUP.nativeId : ReaderCommand.DCMD_PAGEDOWN.nativeId;
-			if (offset < 0)
-				offset = -offset;
-			if (doc.doCommand(cmd1, offset)) {
-				// can move to next page
-				PositionProperties nextpos = doc.getPositionProps(null, false);
-				BitmapInfo nextposBitmap = null;
-				if (mCurrentPageInfo != null && mCurrentPageInfo.position != null && mCurrentPageInfo.position.equals(nextpos))
-					nextposBitmap = mCurrentPageInfo;
-				else if (mNextPageInfo != null && mNextPageInfo.position != null && mNextPageInfo.position.equals(nextpos))
-					nextposBitmap = mNextPageInfo;
-				if (nextposBitmap == null) {
-					// existing image not found in cache, overriding mNextPageInfo
-					if (mNextPageInfo != null)
-						mNextPageInfo.recycle();
-					mNextPageInfo = null;
-					BitmapInfo bi = new BitmapInfo();
-					bi.position = nextpos;
-					bi.bitmap = factory.get(internalDX, internalDY);
-					doc.setBatteryState(mBatteryState, mBatteryChargingConn, mBatteryChargeLevel);
-					doc.getPageImage(bi.bitmap);
-					mNextPageInfo = bi;
-					nextposBitmap = bi;
-					//log.v("Prepared new current page image " + mNextPageInfo);
-				}
-				// return back to previous page
-				doc.doCommand(cmd2, offset);
-				return nextposBitmap;
-			} else {
-				// cannot move to page: out of document range
+			// page commands are clamped at document bounds, so go to exact page and back instead
+			int target = currpos.pageNumber + offset * (currpos.pageMode == 2 ? 2 : 1);
+			if (target < 0 || target >= currpos.pageCount)
+				return null; // out of document range
+			if (!doc.doCommand(ReaderCommand.DCMD_GO_PAGE_DONT_SAVE_HISTORY.nativeId, target))
 				return null;
+			PositionProperties nextpos = doc.getPositionProps(null, false);
+			BitmapInfo nextposBitmap = null;
+			if (null != nextpos && nextpos.pageNumber != currpos.pageNumber)
+				nextposBitmap = findOrRenderPage(nextpos);
+			// return back to current page
+			doc.doCommand(ReaderCommand.DCMD_GO_PAGE_DONT_SAVE_HISTORY.nativeId, currpos.pageNumber);
+			PositionProperties backpos = doc.getPositionProps(null, false);
+			if (null == backpos || backpos.pageNumber != currpos.pageNumber || backpos.y != currpos.y) {
+				log.w("preparePageImage: position is not restored, going to " + currpos.y);
+				doc.doCommand(ReaderCommand.DCMD_GO_POS.nativeId, currpos.y);
 			}
+			return nextposBitmap;
 		} else {
 			// SCROLL next or prev page requested, with pixel offset specified
 			int y = currpos.y + offset;
 			if (doc.doCommand(ReaderCommand.DCMD_GO_POS.nativeId, y)) {
 				PositionProperties nextpos = doc.getPositionProps(null, false);
-				BitmapInfo nextposBitmap = null;
-				if (mCurrentPageInfo != null && mCurrentPageInfo.position != null && mCurrentPageInfo.position.equals(nextpos))
-					nextposBitmap = mCurrentPageInfo;
-				else if (mNextPageInfo != null && mNextPageInfo.position != null && mNextPageInfo.position.equals(nextpos))
-					nextposBitmap = mNextPageInfo;
-				if (nextposBitmap == null) {
-					// existing image not found in cache, overriding mNextPageInfo
-					if (mNextPageInfo != null)
-						mNextPageInfo.recycle();
-					mNextPageInfo = null;
-					BitmapInfo bi = new BitmapInfo();
-					bi.position = nextpos;
-					bi.bitmap = factory.get(internalDX, internalDY);
-					doc.setBatteryState(mBatteryState, mBatteryChargingConn, mBatteryChargeLevel);
-					doc.getPageImage(bi.bitmap);
-					mNextPageInfo = bi;
-					nextposBitmap = bi;
-				}
+				BitmapInfo nextposBitmap = findOrRenderPage(nextpos);
 				// return back to prev position
 				doc.doCommand(ReaderCommand.DCMD_GO_POS.nativeId, currpos.y);
 				return nextposBitmap;
@@ -3523,6 +3693,28 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 
 	}
 
+	/**
+	 * Find non-current page image in cache, or render it and put into cache.
+	 * Document should be already positioned to requested page.
+	 */
+	private BitmapInfo findOrRenderPage(PositionProperties pos) {
+		if (mCurrentPageInfo != null && mCurrentPageInfo.position != null && mCurrentPageInfo.position.equals(pos)
+				&& getHeaderStamp().equals(mCurrentPageInfo.headerStamp))
+			return mCurrentPageInfo;
+		BitmapInfo bi = findCachedPage(pos);
+		if (bi == null) {
+			// existing image not found in cache, rendering new one
+			bi = new BitmapInfo();
+			bi.position = pos;
+			bi.bitmap = factory.get(internalDX, internalDY);
+			bi.headerStamp = getHeaderStamp();
+			doc.setBatteryState(mBatteryState, mBatteryChargingConn, mBatteryChargeLevel);
+			doc.getPageImage(bi.bitmap);
+			addCachedPage(bi);
+		}
+		return bi;
+	}
+
 	private int lastDrawTaskId = 0;
 
 	private class DrawPageTask extends Task {
@@ -3559,6 +3751,7 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 			bi = preparePageImage(0);
 			if (bi != null) {
 				bookView.draw(isPartially);
+				schedulePageCacheFill();
 			}
 		}
 
@@ -5043,7 +5236,7 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 		log.v("drawPage() : submitting DrawPageTask");
 		if (mOpened)
 			scheduleSaveCurrentPositionBookmark(DEF_SAVE_POSITION_INTERVAL);
-		post(new DrawPageTask(doneHandler, isPartially));
+		mEngine.post(new DrawPageTask(doneHandler, isPartially));
 	}
 
 	private int internalDX = 0;
@@ -5163,6 +5356,7 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 
 		LoadDocumentTask(BookInfo bookInfo, byte[] docBuffer, Runnable doneHandler, Runnable errorHandler) {
 			BackgroundThread.ensureGUI();
+			cancelFindAllText();
 			mBookInfo = bookInfo;
 			FileInfo fileInfo = bookInfo.getFileInfo();
 			log.v("LoadDocumentTask for " + fileInfo);
@@ -5759,8 +5953,8 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 			if (lastSavedBookmark == null || !lastSavedBookmark.getStartPos().equals(bmk.getStartPos())) {
 				if (!Services.isStopped()) {
 					Services.getHistory().updateRecentDir();
+					// only changed bookmarks are written, commit is left to scheduled DB flush
 					mActivity.getDB().saveBookInfo(mBookInfo);
-					mActivity.getDB().flush();
 					lastSavedBookmark = bmk;
 				}
 			}
@@ -5814,6 +6008,7 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 		log.i("ReaderView.close() is called");
 		if (!mOpened)
 			return;
+		cancelFindAllText();
 		cancelSwapTask();
 		stopImageViewer();
 		save();
@@ -5827,6 +6022,8 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 					log.i("ReaderView().close() : closing current document");
 					doc.doCommand(ReaderCommand.DCMD_CLOSE_BOOK.nativeId, 0);
 				}
+				if (currentAnimation == null)
+					clearPageCache();
 			}
 
 			public void done() {
@@ -5836,10 +6033,6 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 						mCurrentPageInfo.recycle();
 						mCurrentPageInfo = null;
 					}
-					if (mNextPageInfo != null) {
-						mNextPageInfo.recycle();
-						mNextPageInfo = null;
-					}
 				} else
 					invalidImages = true;
 				factory.compact();
@@ -6158,6 +6351,71 @@ public class ReaderView implements android.view.SurfaceHolder.Callback, Settings
 		});
 	}
 
+	/**
+	 * Select range of text, e.g. sentence got by getSentences(), moving to it if it's not visible.
+	 */
+	public void selectRange(final Selection range, final MoveSelectionCallback callback) {
+		post(new Task() {
+			private boolean res;
+
+			@Override
+			public void work() throws Exception {
+				res = doc.selectText(range.startPos, range.endPos);
+			}
+
+			@Override
+			public void done() {
+				clearImageCache();
+				surface.invalidate();
+				drawPage();
+				if (callback != null) {
+					if (res)
+						callback.onNewSelection(range);
+					else
+						callback.onFail();
+				}
+			}
+
+			@Override
+			public void fail(Exception e) {
+				if (callback != null)
+					callback.onFail();
+			}
+		});
+	}
+
+	public interface SentencesCallback {
+		// empty list at end of document
+		public void onSentences(List<Selection> sentences);
+	}
+
+	/**
+	 * Extract consecutive sentences in one engine task, leaving selection unchanged.
+	 * @param startPos is xpointer inside of first sentence, or null to start from current page
+	 * @param skip is number of sentences to skip, e.g. already extracted ones
+	 * @param count is max number of sentences to return
+	 */
+	public void getSentences(final String startPos, final int skip, final int count, final SentencesCallback callback) {
+		post(new Task() {
+			private Selection[] sentences;
+
+			@Override
+			public void work() throws Exception {
+				sentences = doc.getSentences(startPos, skip, count);
+			}
+
+			@Override
+			public void done() {
+				callback.onSentences(Arrays.asList(sentences));
+			}
+
+			@Override
+			public void fail(Exception e) {
+				callback.onSentences(new ArrayList<>());
+			}
+		});
+	}
+
 	private void showSwitchProfileDialog() {
 		SwitchProfileDialog dlg = new SwitchProfileDialog(mActivity, this);
 		dlg.show();
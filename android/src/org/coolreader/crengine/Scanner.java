@@ -13,6 +13,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.zip.ZipEntry;
 
 public class Scanner extends FileInfoChangeSource {
@@ -273,98 +275,174 @@ public class Scanner extends FileInfoChangeSource {
 				listDirectory(dir);
 		}
 
-		// load book infos for files
-		db.loadFileInfos(pathNames, control, progress, list -> {
-			log.v("onFileInfoListLoaded");
-			// GUI thread
-			final ArrayList<FileInfo> filesForParsing = new ArrayList<>();
-			final ArrayList<FileInfo> filesForCRC32Update = new ArrayList<>();
-			Map<String, FileInfo> mapOfFilesFoundInDb = new HashMap<>();
-			for (FileInfo f : list)
-				mapOfFilesFoundInDb.put(f.getPathName(), f);
+		final String folderName = baseDir.getPathName();
+		final DirectorySnapshot snapshot = DirectorySnapshot.of(baseDir);
+		// remember directory state after complete scan
+		final Runnable onScanFinished = () -> {
+			if (!control.isStopped())
+				db.saveFolderSnapshot(folderName, snapshot);
+			readyCallback.run();
+		};
+		db.loadFolderSnapshot(folderName, storedSnapshot -> {
+			// If directory is not changed since last complete scan, DB records are up to date,
+			// and files not found in DB have already failed to parse: don't check and parse them again.
+			final boolean unchanged = snapshot.equals(storedSnapshot);
+			if (unchanged)
+				log.v("Directory " + folderName + " is not changed since last scan");
+			// load book infos for files; nothing is moved into unchanged directory
+			db.loadFileInfos(pathNames, !unchanged, control, progress, list -> {
+				log.v("onFileInfoListLoaded");
+				// GUI thread
+				final ArrayList<FileInfo> filesForParsing = new ArrayList<>();
+				final ArrayList<FileInfo> filesForCRC32Update = new ArrayList<>();
+				Map<String, FileInfo> mapOfFilesFoundInDb = new HashMap<>();
+				for (FileInfo f : list)
+					mapOfFilesFoundInDb.put(f.getPathName(), f);
 
-			for (int i=0; i<baseDir.fileCount(); i++) {
-				FileInfo item = baseDir.getFile(i);
-				FileInfo fromDB = mapOfFilesFoundInDb.get(item.getPathName());
-				// check the relevance of data in the database
-				if (fromDB != null) {
-					if (fromDB.crc32 == 0 || fromDB.size != item.size || fromDB.arcsize != item.arcsize ) {
-						// to force rescan and update data in DB
-						log.v("The found entry in the database is outdated (crc32=0), need to rescan " + fromDB.toString());
-						fromDB = null;
+				for (int i=0; i<baseDir.fileCount(); i++) {
+					FileInfo item = baseDir.getFile(i);
+					FileInfo fromDB = mapOfFilesFoundInDb.get(item.getPathName());
+					boolean outdated = false;
+					// check the relevance of data in the database
+					if (fromDB != null) {
+						if (fromDB.crc32 == 0 || fromDB.size != item.size || fromDB.arcsize != item.arcsize ) {
+							// to force rescan and update data in DB
+							log.v("The found entry in the database is outdated (crc32=0), need to rescan " + fromDB.toString());
+							fromDB = null;
+							outdated = true;
+						}
+						if (null != fromDB && DocumentFormat.FB2 == fromDB.format && null == fromDB.genres) {
+							// to force rescan and update data in DB
+							log.v("The found entry in the database is outdated (genres=null), need to rescan " + fromDB.toString());
+							fromDB = null;
+							outdated = true;
+						}
+					} else {
+						// not found in DB
+						// for new files set latest DOM level and max block rendering flags
+						item.domVersion = Engine.DOM_VERSION_CURRENT;
+						item.blockRenderingFlags = Engine.BLOCK_RENDERING_FLAGS_WEB;
 					}
-					if (null != fromDB && DocumentFormat.FB2 == fromDB.format && null == fromDB.genres) {
-						// to force rescan and update data in DB
-						log.v("The found entry in the database is outdated (genres=null), need to rescan " + fromDB.toString());
-						fromDB = null;
+					if (fromDB != null) {
+						// use DB value
+						baseDir.setFile(i, fromDB);
+					} else if (outdated || !unchanged) {
+						if (item.format != null && item.format.canParseProperties()) {
+							filesForParsing.add(new FileInfo(item));
+						} else {
+							filesForCRC32Update.add(new FileInfo(item));
+						}
 					}
-				} else {
-					// not found in DB
-					// for new files set latest DOM level and max block rendering flags
-					item.domVersion = Engine.DOM_VERSION_CURRENT;
-					item.blockRenderingFlags = Engine.BLOCK_RENDERING_FLAGS_WEB;
 				}
-				if (fromDB != null) {
-					// use DB value
-					baseDir.setFile(i, fromDB);
-				} else {
-					if (item.format != null && item.format.canParseProperties()) {
-						filesForParsing.add(new FileInfo(item));
-					} else {
-						filesForCRC32Update.add(new FileInfo(item));
-					}
+				if ((filesForParsing.size() == 0 && filesForCRC32Update.size() == 0) || control.isStopped()) {
+					onScanFinished.run();
+					return;
 				}
-			}
-			if ((filesForParsing.size() == 0 && filesForCRC32Update.size() == 0) || control.isStopped()) {
-				readyCallback.run();
-				return;
-			}
-			// scan files in Background thread,
-			// update CRC32 in Background thread
-			BackgroundThread.instance().postBackground(() -> {
-				// Background thread
-				final ArrayList<FileInfo> filesForSave1 = new ArrayList<>();
+				// scan files in parallel worker threads,
+				// update CRC32 in worker threads
+				new ScanFilesJob(db, baseDir, control, progress, onScanFinished).start(filesForParsing, filesForCRC32Update);
+			});
+		});
+	}
+
+	private static final int MAX_SCAN_THREADS = 4;
+	private static final int SCAN_SAVE_BATCH_SIZE = 32;
+	private ExecutorService mScanExecutor;
+
+	private synchronized ExecutorService getScanExecutor() {
+		if (mScanExecutor == null) {
+			int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() - 1, MAX_SCAN_THREADS));
+			log.i("Creating scanner thread pool of " + threads + " threads");
+			mScanExecutor = Executors.newFixedThreadPool(threads, r -> {
+				Thread t = new Thread(r, "scanner");
+				t.setDaemon(true);
+				t.setPriority(Thread.MIN_PRIORITY);
+				return t;
+			});
+		}
+		return mScanExecutor;
+	}
+
+	/**
+	 * Parses properties of directory files in worker thread pool.
+	 * Parsed items are saved to DB and set to directory in batches (in GUI thread) as soon as they are ready.
+	 */
+	private class ScanFilesJob {
+		private final CRDBService.LocalBinder db;
+		private final FileInfo baseDir;
+		private final ScanControl control;
+		private final Engine.ProgressControl progress;
+		private final Runnable readyCallback;
+		private final ArrayList<FileInfo> pending = new ArrayList<>();
+		private int total;
+		private int remaining;
+
+		ScanFilesJob(CRDBService.LocalBinder db, FileInfo baseDir, ScanControl control, Engine.ProgressControl progress, Runnable readyCallback) {
+			this.db = db;
+			this.baseDir = baseDir;
+			this.control = control;
+			this.progress = progress;
+			this.readyCallback = readyCallback;
+		}
+
+		void start(ArrayList<FileInfo> filesForParsing, ArrayList<FileInfo> filesForCRC32Update) {
+			total = filesForParsing.size() + filesForCRC32Update.size();
+			remaining = total;
+			ExecutorService executor = getScanExecutor();
+			for (final FileInfo item : filesForParsing)
+				executor.execute(() -> process(item, true));
+			for (final FileInfo item : filesForCRC32Update)
+				executor.execute(() -> process(item, false));
+		}
+
+		private void process(FileInfo item, boolean parseProperties) {
+			// worker thread
+			boolean updated = false;
+			if (!control.isStopped()) {
 				try {
-					int count1 = filesForParsing.size();
-					int count2 = filesForCRC32Update.size();
-					int count = count1 + count2;
-					for ( int i=0; i<count1; i++ ) {
-						if (control.isStopped())
-							break;
-						progress.setProgress((i + count) * 10000 / (2*count));
-						FileInfo item = filesForParsing.get(i);
-						if (engine.scanBookProperties(item))
-							filesForSave1.add(item);
-					}
-					for ( int i=0; i<count2; i++ ) {
-						if (control.isStopped())
-							break;
-						progress.setProgress((i + count) * 10000 / (2*count));
-						FileInfo item = filesForCRC32Update.get(i);
-						if (Engine.updateFileCRC32(item))
-							filesForSave1.add(item);
-					}
+					if (parseProperties)
+						updated = Engine.scanBookPropertiesConcurrent(item);
+					else
+						updated = Engine.updateFileCRC32(item);
 				} catch (Exception e) {
 					L.e("Exception while scanning", e);
 				}
+			}
+			synchronized (pending) {
+				if (updated)
+					pending.add(item);
+				remaining--;
+				final boolean last = remaining == 0;
+				if (!last && !control.isStopped())
+					progress.setProgress((2 * total - remaining) * 10000 / (2 * total));
+				if (last || pending.size() >= SCAN_SAVE_BATCH_SIZE) {
+					// posted under lock to keep batches order
+					final ArrayList<FileInfo> batch = new ArrayList<>(pending);
+					pending.clear();
+					BackgroundThread.instance().postGUI(() -> onBatchReady(batch, last));
+				}
+			}
+		}
+
+		private void onBatchReady(ArrayList<FileInfo> batch, boolean last) {
+			// GUI thread
+			try {
+				if (batch.size() > 0) {
+					db.saveFileInfos(batch);
+					for (FileInfo file : batch)
+						baseDir.setFile(file);
+					if (!last)
+						onDirectoryContentChanged(baseDir);
+				}
+			} catch (Exception e) {
+				L.e("Exception while scanning", e);
+			}
+			if (last) {
 				progress.hide();
-				// jump to GUI thread
-				BackgroundThread.instance().postGUI(() -> {
-					// GUI thread
-					try {
-						if (filesForSave1.size() > 0) {
-							db.saveFileInfos(filesForSave1);
-						}
-						for (FileInfo file : filesForSave1)
-							baseDir.setFile(file);
-					} catch (Exception e ) {
-						L.e("Exception while scanning", e);
-					}
-					// call finish handler
-					readyCallback.run();
-				});
-			});
-		});
+				// call finish handler
+				readyCallback.run();
+			}
+		}
 	}
 	
 	/**
@@ -762,7 +840,32 @@ public class Scanner extends FileInfoChangeSource {
 					readyCallback.run();
 				}
 			});
-		});
+		}, BackgroundThread.PRIORITY_PREFETCH);
+	}
+
+	// directory modification times at last full rescan
+	private final HashMap<String, Long> mRescannedDirTimes = new HashMap<>();
+
+	/**
+	 * Directory modification time is not changed when file in it is rewritten in place,
+	 * so modification times and sizes of files are added to it.
+	 * @return stamp which is changed if directory content is changed, 0 if unknown
+	 */
+	private static long getListingStamp(File dir) {
+		long stamp = dir.lastModified();
+		if (stamp == 0)
+			return 0;
+		File[] items = Engine.listFiles(dir);
+		if (items != null) {
+			for (File f : items) {
+				if (f.isDirectory())
+					continue;
+				// order independent
+				long h = f.getName().hashCode() * 31L + f.lastModified();
+				stamp += h * 31 + f.length();
+			}
+		}
+		return stamp != 0 ? stamp : 1;
 	}
 
 	private boolean listSubtreeBg_impl(FileInfo dir, int maxDepth, ScanControl scanControl) {
@@ -770,8 +873,24 @@ public class Scanner extends FileInfoChangeSource {
 		boolean fullDepthScan = true;
 		if (maxDepth <= 0 || scanControl.isStopped())
 			return false;
-		// full rescan to scan zip-files
-		boolean res = listDirectory(dir, true, true, !dir.isSpecialDir() && !dir.isArchive);
+		// full rescan to scan zip-files, unless directory is not modified since last full rescan
+		boolean res;
+		String pathName = dir.getPathName();
+		long modificationTime = dir.isSpecialDir() || dir.isArchive ? 0 : getListingStamp(new File(pathName));
+		Long listedTime;
+		synchronized (mRescannedDirTimes) {
+			listedTime = mRescannedDirTimes.get(pathName);
+		}
+		if (dir.isListed && modificationTime != 0 && listedTime != null && listedTime == modificationTime) {
+			res = true;
+		} else {
+			res = listDirectory(dir, true, true, !dir.isSpecialDir() && !dir.isArchive);
+			if (res && modificationTime != 0) {
+				synchronized (mRescannedDirTimes) {
+					mRescannedDirTimes.put(pathName, modificationTime);
+				}
+			}
+		}
 		if (res) {
 			for (int i = dir.dirCount() - 1; i >= -0; i--) {
 				res = listSubtreeBg_impl(dir.getDir(i), maxDepth - 1, scanControl);
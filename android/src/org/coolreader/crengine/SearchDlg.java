@@ -25,6 +25,7 @@ public class SearchDlg extends BaseDialog {
 	EditText mEditView;
 	CheckBox mCaseSensitive;
 	CheckBox mReverse;
+	CheckBox mFindAll;
 	BookInfo mBookInfo;
 	ArrayList<String> mSearches;
 	private SearchList mList;
@@ -42,7 +43,10 @@ public class SearchDlg extends BaseDialog {
     	else {
 		    activity.getDB().saveSearchHistory(mBookInfo,
 				    mEditView.getText().toString());
-		    mReaderView.findText(mEditView.getText().toString(), mReverse.isChecked(), !mCaseSensitive.isChecked());
+		    if (mFindAll.isChecked())
+			    new SearchResultsDlg(mCoolReader, mReaderView, pattern, !mCaseSensitive.isChecked()).show();
+		    else
+			    mReaderView.findText(mEditView.getText().toString(), mReverse.isChecked(), !mCaseSensitive.isChecked());
 	    }
         cancel();
 	}
@@ -160,6 +164,7 @@ public class SearchDlg extends BaseDialog {
     		mEditView.setText(initialText);
     	mCaseSensitive = mDialogView.findViewById(R.id.search_case_sensitive);
     	mReverse = mDialogView.findViewById(R.id.search_reverse);
+    	mFindAll = mDialogView.findViewById(R.id.search_find_all);
 		activity.getDB().loadSearchHistory(this.mBookInfo, searches -> {
 			mSearches = searches;
 			ViewGroup body = mDialogView.findViewById(R.id.history_list);
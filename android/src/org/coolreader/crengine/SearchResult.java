@@ -0,0 +1,14 @@
+package org.coolreader.crengine;
+
+public class SearchResult {
+	// position of match
+	public String startPos;
+	public String endPos;
+	// page index, starting from 0
+	public int page;
+	public int percent;
+	// text around match, match is snippet[matchStart..matchEnd)
+	public String snippet;
+	public int matchStart;
+	public int matchEnd;
+}
@@ -0,0 +1,149 @@
+package org.coolreader.crengine;
+
+import org.coolreader.R;
+
+import android.content.Context;
+import android.graphics.Typeface;
+import android.os.Bundle;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.style.StyleSpan;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.LinearLayout;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import java.util.List;
+
+/**
+ * List of all matches of search pattern, filled while search is running.
+ */
+public class SearchResultsDlg extends BaseDialog implements TextSearch.Listener {
+	BaseActivity mCoolReader;
+	ReaderView mReaderView;
+	private LayoutInflater mInflater;
+	private LinearLayout mDialogView;
+	private TextView mStatusView;
+	private ResultsList mList;
+	private ResultsListAdapter mAdapter;
+	private TextSearch mSearch;
+	private boolean mResultSelected;
+
+	class ResultsListAdapter extends BaseAdapter {
+
+		public int getCount() {
+			return null != mSearch ? mSearch.getResults().size() : 0;
+		}
+
+		public Object getItem(int position) {
+			if (null == mSearch || position < 0 || position >= mSearch.getResults().size())
+				return null;
+			return mSearch.getResults().get(position);
+		}
+
+		public long getItemId(int position) {
+			return position;
+		}
+
+		public View getView(int position, View convertView, ViewGroup parent) {
+			View view = convertView != null ? convertView : mInflater.inflate(R.layout.dict_item, null);
+			TextView labelView = view.findViewById(R.id.dict_item_shortcut);
+			TextView titleTextView = view.findViewById(R.id.dict_item_title);
+			SearchResult item = (SearchResult)getItem(position);
+			if (labelView != null)
+				labelView.setText(item != null ? String.valueOf(item.page + 1) : "");
+			if (titleTextView != null) {
+				if (item != null && item.snippet != null) {
+					SpannableString text = new SpannableString(item.snippet.replace('\n', ' '));
+					if (item.matchStart >= 0 && item.matchEnd <= text.length() && item.matchStart < item.matchEnd)
+						text.setSpan(new StyleSpan(Typeface.BOLD), item.matchStart, item.matchEnd, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+					titleTextView.setText(text);
+				} else {
+					titleTextView.setText("");
+				}
+			}
+			return view;
+		}
+
+		public boolean hasStableIds() {
+			return true;
+		}
+	}
+
+	class ResultsList extends BaseListView {
+		public ResultsList(Context context) {
+			super(context, true);
+			setChoiceMode(ListView.CHOICE_MODE_SINGLE);
+			mAdapter = new ResultsListAdapter();
+			setAdapter(mAdapter);
+		}
+
+		@Override
+		public boolean performItemClick(View view, int position, long id) {
+			mResultSelected = true;
+			mReaderView.goToSearchResult(position);
+			dismiss();
+			return true;
+		}
+	}
+
+	public SearchResultsDlg(BaseActivity coolReader, ReaderView readerView, String pattern, boolean caseInsensitive)
+	{
+		super(coolReader, coolReader.getResources().getString(R.string.win_title_search) + ": " + pattern, false, false);
+		setCancelable(true);
+		this.mCoolReader = coolReader;
+		this.mReaderView = readerView;
+		mInflater = LayoutInflater.from(getContext());
+		mDialogView = new LinearLayout(getContext());
+		mDialogView.setOrientation(LinearLayout.VERTICAL);
+		mStatusView = new TextView(getContext());
+		mStatusView.setPadding(8, 4, 8, 4);
+		mDialogView.addView(mStatusView);
+		mList = new ResultsList(getContext());
+		mDialogView.addView(mList);
+		mSearch = mReaderView.findAllText(pattern, caseInsensitive, this);
+		updateStatus();
+	}
+
+	private void updateStatus() {
+		int count = mAdapter.getCount();
+		if (null == mSearch || mSearch.isFinished())
+			mStatusView.setText(mCoolReader.getString(R.string.search_results_found, count));
+		else
+			mStatusView.setText(mCoolReader.getString(R.string.search_results_searching, count));
+	}
+
+	@Override
+	public void onResults(TextSearch search, List<SearchResult> results) {
+		if (search != mSearch)
+			return;
+		mAdapter.notifyDataSetChanged();
+		updateStatus();
+	}
+
+	@Override
+	public void onFinished(TextSearch search, boolean complete) {
+		if (search != mSearch)
+			return;
+		updateStatus();
+		if (mAdapter.getCount() == 0)
+			mCoolReader.showToast(R.string.search_results_not_found);
+	}
+
+	@Override
+	protected void onClose() {
+		// no need to keep engine busy if results are not needed
+		if (!mResultSelected && null != mSearch && !mSearch.isFinished())
+			mSearch.cancel();
+		super.onClose();
+	}
+
+	@Override
+	protected void onCreate(Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+		setView(mDialogView);
+	}
+}
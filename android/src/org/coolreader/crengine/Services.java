@@ -91,6 +91,7 @@ public class Services {
 			return;
 		}
 		mCoverpageManager.clear();
+		// lowest priority: let all already queued tasks finish before engine is destroyed
 		BackgroundThread.instance().postBackground(() -> {
 			log.i("Stopping background thread");
 			if (mEngine == null)
@@ -98,7 +99,7 @@ public class Services {
 			mEngine.uninit();
 			BackgroundThread.instance().quit();
 			mEngine = null;
-		});
+		}, BackgroundThread.PRIORITY_PREFETCH);
 		mHistory = null;
 		mScanner = null;
 		mCoverpageManager = null;
@@ -194,6 +194,7 @@ public interface Settings {
     String PROP_APP_TTS_GOOGLE_END_OF_SENTENCE_ABBR = "app.tts.google.end-of-sentence-abbreviation.workaround";	// Use a workaround to disable processing of abbreviations at the end of a sentence when using "Google Speech Services"
 
     String PROP_APP_VIEW_ANIM_DURATION ="app.view.anim.duration";
+    String PROP_APP_VIEW_PAGE_CACHE_SIZE ="app.view.page.cache.size";	// number of pre-rendered pages kept besides current one
 
     // available options for PROP_APP_SELECTION_ACTION setting
     public static final int SELECTION_ACTION_TOOLBAR = 0;
@@ -31,6 +31,8 @@ import org.coolreader.tts.TTSControlBinder;
 import org.coolreader.tts.TTSControlService;
 import org.coolreader.tts.TTSControlServiceAccessor;
 
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
 
@@ -39,6 +41,9 @@ public class TTSToolbarDlg implements Settings {
 
 	public static final int MEDIA_COVER_WIDTH = 300;
 	public static final int MEDIA_COVER_HEIGHT = 400;
+	// number of sentences queued to TTS engine after the current one
+	private static final int TTS_LOOKAHEAD_SENTENCES = 4;
+	private static final String LOOKAHEAD_UTTERANCE_ID_PREFIX = "cr3la";
 
 	private final PopupWindow mWindow;
 	private final CoolReader mCoolReader;
@@ -67,6 +72,13 @@ public class TTSToolbarDlg implements Settings {
 	private String mCurrentVoiceName;
 	private boolean mGoogleTTSAbbreviationWorkaround;
 	private int mTTSSpeedPercent = 50;		// 50% (normal)
+	// sentences queued to TTS engine after the current one, in document order, by utterance id
+	private final LinkedHashMap<String, Selection> mQueuedSentences = new LinkedHashMap<>();
+	private int mLookAheadGeneration;
+	private boolean mLookAheadInProgress;
+	private int mLastUtteranceId;
+	// sentence spoken now, while highlight is moved to it
+	private Selection mLookAheadAnchor;
 
 
 	static public TTSToolbarDlg showDialog( CoolReader coolReader, ReaderView readerView, TTSControlServiceAccessor ttsacc) {
@@ -156,6 +168,92 @@ public class TTSToolbarDlg implements Settings {
 		});
 	}
 
+	/**
+	 * Forget queued sentences, e.g. when TTS engine queue is flushed or another sentence is selected.
+	 * Must be called in GUI thread.
+	 */
+	private void resetLookAhead() {
+		mQueuedSentences.clear();
+		mLookAheadGeneration++;
+		mLookAheadInProgress = false;
+		mLookAheadAnchor = null;
+	}
+
+	/**
+	 * Queue next sentences to TTS engine while current one is spoken, to avoid pauses between sentences.
+	 * Must be called in GUI thread.
+	 */
+	private void fillLookAhead() {
+		if (!isSpeaking || mClosed || mLookAheadInProgress)
+			return;
+		// no utterance start callback before API 15: queued sentence cannot be tracked, speak one by one
+		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1)
+			return;
+		final int queued = mQueuedSentences.size();
+		if (queued >= TTS_LOOKAHEAD_SENTENCES)
+			return;
+		// continue after last queued sentence
+		Selection anchor = null;
+		for (Selection sentence : mQueuedSentences.values())
+			anchor = sentence;
+		if (null == anchor)
+			anchor = null != mLookAheadAnchor ? mLookAheadAnchor : mCurrentSelection;
+		if (null == anchor || null == anchor.startPos)
+			return;
+		final int generation = mLookAheadGeneration;
+		mLookAheadInProgress = true;
+		mReaderView.getSentences(anchor.startPos, 1, TTS_LOOKAHEAD_SENTENCES - queued, sentences -> {
+			if (generation != mLookAheadGeneration)
+				return;
+			mLookAheadInProgress = false;
+			if (sentences.isEmpty())
+				return;
+			mTTSControl.bind(ttsbinder -> {
+				if (generation != mLookAheadGeneration)
+					return;
+				for (Selection sentence : sentences) {
+					String utteranceId = LOOKAHEAD_UTTERANCE_ID_PREFIX + (++mLastUtteranceId);
+					mQueuedSentences.put(utteranceId, sentence);
+					ttsbinder.queueUtterance(utteranceId, preprocessUtterance(sentence.text), null);
+				}
+			});
+		});
+	}
+
+	/**
+	 * Move highlight to queued sentence which TTS engine starts to speak.
+	 * Must be called in GUI thread.
+	 */
+	private void onQueuedSentenceStarted(String utteranceId) {
+		if (mQueuedSentences.containsKey(utteranceId)) {
+			// skip sentences queued before this one too, if any
+			Selection sentence = null;
+			Iterator<Map.Entry<String, Selection>> it = mQueuedSentences.entrySet().iterator();
+			while (it.hasNext()) {
+				Map.Entry<String, Selection> entry = it.next();
+				it.remove();
+				if (utteranceId.equals(entry.getKey())) {
+					sentence = entry.getValue();
+					break;
+				}
+			}
+			final Selection spoken = sentence;
+			mLookAheadAnchor = spoken;
+			mReaderView.selectRange(spoken, new ReaderView.MoveSelectionCallback() {
+				@Override
+				public void onNewSelection(Selection selection) {
+					mCurrentSelection = selection;
+				}
+
+				@Override
+				public void onFail() {
+					log.e("cannot highlight spoken sentence " + spoken.startPos);
+				}
+			});
+		}
+		fillLookAhead();
+	}
+
 	private String preprocessUtterance(String utterance) {
 		String newUtterance = utterance;
 		if (mGoogleTTSAbbreviationWorkaround) {
@@ -302,12 +400,13 @@ public class TTSToolbarDlg implements Settings {
 		mTTSControl.bind(ttsbinder -> {
 			ttsbinder.setStatusListener(new OnTTSStatusListener() {
 				@Override
-				public void onUtteranceStart() {
+				public void onUtteranceStart(String utteranceId) {
 					isSpeaking = true;
+					BackgroundThread.instance().executeGUI(() -> onQueuedSentenceStarted(utteranceId));
 				}
 
 				@Override
-				public void onUtteranceDone() {
+				public void onUtteranceDone(String utteranceId) {
 				}
 
 				@Override
@@ -326,6 +425,8 @@ public class TTSToolbarDlg implements Settings {
 						case PAUSED:
 						case STOPPED:
 							isSpeaking = false;
+							// queue of TTS engine is flushed
+							BackgroundThread.instance().executeGUI(() -> resetLookAhead());
 							BackgroundThread.instance().postGUI(() -> mPlayPauseButton.setImageResource(Utils.resolveResourceIdByAttr(mCoolReader, R.attr.ic_media_play_drawable, R.drawable.ic_media_play)));
 							if (mMotionWatchdog != null)
 								mMotionWatchdog.interrupt();
@@ -351,6 +452,7 @@ public class TTSToolbarDlg implements Settings {
 
 				@Override
 				public void onCurrentSentenceRequested(TTSControlBinder ttsbinder) {
+					BackgroundThread.instance().executeGUI(() -> resetLookAhead());
 					if (null != mCurrentSelection) {
 						ttsbinder.say(preprocessUtterance(mCurrentSelection.text), null);
 					}
@@ -358,6 +460,7 @@ public class TTSToolbarDlg implements Settings {
 
 				@Override
 				public void onNextSentenceRequested(TTSControlBinder ttsbinder) {
+					BackgroundThread.instance().executeGUI(() -> resetLookAhead());
 					if (isSpeaking) {
 						moveSelection(ReaderCommand.DCMD_SELECT_NEXT_SENTENCE, new ReaderView.MoveSelectionCallback() {
 							@Override
@@ -376,6 +479,7 @@ public class TTSToolbarDlg implements Settings {
 
 				@Override
 				public void onPreviousSentenceRequested(TTSControlBinder ttsbinder) {
+					BackgroundThread.instance().executeGUI(() -> resetLookAhead());
 					if (isSpeaking) {
 						moveSelection(ReaderCommand.DCMD_SELECT_PREV_SENTENCE, new ReaderView.MoveSelectionCallback() {
 							@Override
@@ -0,0 +1,234 @@
+package org.coolreader.crengine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Search for all matches of pattern in document, in background thread.
+ *
+ * Document is searched by fragments of few pages, each one in separate low priority task,
+ * so page rendering is not blocked by long search. Matches are passed to listener as they are found.
+ * Complete lists of matches are cached per document, pattern and layout.
+ */
+public class TextSearch {
+
+	public static final Logger log = L.create("ts");
+
+	public interface Listener {
+		// called in GUI thread with matches found since previous call
+		void onResults(TextSearch search, List<SearchResult> results);
+		// called in GUI thread once search is finished; complete is false if cancelled or layout changed
+		void onFinished(TextSearch search, boolean complete);
+	}
+
+	private static final int CHUNK_PAGES = 8;
+	private static final int MAX_RESULTS = 5000;
+	private static final int CACHE_SIZE = 8;
+
+	private static class CacheEntry {
+		final String layout;
+		final List<SearchResult> results;
+
+		CacheEntry(String layout, List<SearchResult> results) {
+			this.layout = layout;
+			this.results = results;
+		}
+	}
+
+	private static final LinkedHashMap<String, CacheEntry> cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	private final DocView doc;
+	private final String key;
+	private final String pattern;
+	private final boolean caseInsensitive;
+	// accessed in GUI thread only
+	private final ArrayList<SearchResult> results = new ArrayList<>();
+	private boolean finished;
+	private int currentIndex = -1;
+	private volatile boolean cancelled;
+	// cancels search steps not started yet
+	private final BackgroundThread.CancelToken token = new BackgroundThread.CancelToken();
+	// state of search, accessed in background thread only
+	private String layout;
+	private int chunkHeight;
+	private int fullHeight;
+	private int nextY;
+	private long startTime;
+	private final ArrayList<SearchResult> found = new ArrayList<>();
+	private HashSet<String> prevPositions = new HashSet<>();
+
+	/**
+	 * @param doc is document to search in
+	 * @param docId identifies opened document, e.g. its path
+	 */
+	public TextSearch(DocView doc, String docId, String pattern, boolean caseInsensitive) {
+		this.doc = doc;
+		this.key = docId + "\n" + (caseInsensitive ? "i" : "c") + "\n" + pattern;
+		this.pattern = pattern;
+		this.caseInsensitive = caseInsensitive;
+	}
+
+	public void start(final Listener listener) {
+		BackgroundThread.ensureGUI();
+		BackgroundThread.instance().postBackground(() -> begin(listener), 0, BackgroundThread.PRIORITY_PREFETCH, token);
+	}
+
+	public void cancel() {
+		cancelled = true;
+		token.cancel();
+	}
+
+	public boolean isFinished() {
+		return finished;
+	}
+
+	public boolean matches(String pattern, boolean caseInsensitive) {
+		return this.pattern.equals(pattern) && this.caseInsensitive == caseInsensitive;
+	}
+
+	public String getPattern() {
+		return pattern;
+	}
+
+	public boolean isCaseInsensitive() {
+		return caseInsensitive;
+	}
+
+	public List<SearchResult> getResults() {
+		return Collections.unmodifiableList(results);
+	}
+
+	public int getCurrentIndex() {
+		return currentIndex;
+	}
+
+	public SearchResult get(int index) {
+		if (index < 0 || index >= results.size())
+			return null;
+		currentIndex = index;
+		return results.get(index);
+	}
+
+	/**
+	 * Step to next or previous match, wrapping around document end.
+	 * If current match is not shown any more, start from match nearest to shown pages.
+	 * @param firstPage is index of first page shown
+	 * @param visiblePages is number of pages shown
+	 * @return match, or null if there is no current match
+	 */
+	public SearchResult next(boolean reverse, int firstPage, int visiblePages) {
+		if (currentIndex < 0 || results.isEmpty())
+			return null;
+		int size = results.size();
+		SearchResult current = currentIndex < size ? results.get(currentIndex) : null;
+		if (null != current && current.page >= firstPage && current.page < firstPage + visiblePages)
+			return get((currentIndex + (reverse ? size - 1 : 1)) % size);
+		if (reverse) {
+			for (int i = size - 1; i >= 0; i--) {
+				if (results.get(i).page < firstPage)
+					return get(i);
+			}
+			return get(size - 1);
+		}
+		for (int i = 0; i < size; i++) {
+			if (results.get(i).page >= firstPage)
+				return get(i);
+		}
+		return get(0);
+	}
+
+	private void begin(final Listener listener) {
+		BackgroundThread.ensureBackground();
+		PositionProperties props = doc.getPositionProps(null, false);
+		if (null == props || props.fullHeight <= 0 || props.pageHeight <= 0) {
+			postFinished(listener, false);
+			return;
+		}
+		layout = layoutOf(props);
+		CacheEntry cached;
+		synchronized (cache) {
+			cached = cache.get(key);
+		}
+		if (null != cached && cached.layout.equals(layout)) {
+			log.v("using cached matches for " + pattern + ": " + cached.results.size());
+			postResults(listener, cached.results);
+			postFinished(listener, true);
+			return;
+		}
+		startTime = Utils.timeStamp();
+		fullHeight = props.fullHeight;
+		chunkHeight = props.pageHeight * CHUNK_PAGES;
+		nextY = 0;
+		searchChunk(listener);
+	}
+
+	/**
+	 * Search in next fragment of document, then post search in the following one
+	 * as separate low priority task, so rendering and navigation can run in between.
+	 */
+	private void searchChunk(final Listener listener) {
+		BackgroundThread.ensureBackground();
+		if (cancelled) {
+			postFinished(listener, false);
+			return;
+		}
+		if (nextY < fullHeight && found.size() < MAX_RESULTS) {
+			int y = nextY;
+			nextY += chunkHeight;
+			SearchResult[] res = doc.findAllText(pattern, caseInsensitive, y, y + chunkHeight, MAX_RESULTS - found.size());
+			// fragments overlap by one line, skip matches found in previous fragment
+			HashSet<String> positions = new HashSet<>();
+			ArrayList<SearchResult> fresh = new ArrayList<>(res.length);
+			for (SearchResult r : res) {
+				positions.add(r.startPos);
+				if (!prevPositions.contains(r.startPos))
+					fresh.add(r);
+			}
+			prevPositions = positions;
+			found.addAll(fresh);
+			if (!fresh.isEmpty())
+				postResults(listener, fresh);
+			BackgroundThread.instance().postBackground(() -> searchChunk(listener), 0, BackgroundThread.PRIORITY_PREFETCH, token);
+			return;
+		}
+		// document could be re-rendered while searching, then positions are not reliable
+		PositionProperties props = doc.getPositionProps(null, false);
+		boolean done = null != props && layout.equals(layoutOf(props));
+		log.v("search for " + pattern + " finished in " + Utils.timeInterval(startTime) + " ms, " + found.size() + " matches, complete=" + done);
+		if (done) {
+			synchronized (cache) {
+				cache.put(key, new CacheEntry(layout, new ArrayList<>(found)));
+			}
+		}
+		postFinished(listener, done);
+	}
+
+	private static String layoutOf(PositionProperties props) {
+		return props.fullHeight + ":" + props.pageHeight + ":" + props.pageCount + ":" + props.pageMode;
+	}
+
+	private void postResults(final Listener listener, final List<SearchResult> list) {
+		BackgroundThread.instance().postGUI(() -> {
+			if (cancelled)
+				return;
+			results.addAll(list);
+			listener.onResults(this, list);
+		});
+	}
+
+	private void postFinished(final Listener listener, final boolean done) {
+		BackgroundThread.instance().postGUI(() -> {
+			finished = true;
+			listener.onFinished(this, done && !cancelled);
+		});
+	}
+}
@@ -29,6 +29,8 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
@@ -88,7 +90,28 @@ public class Utils {
 		}
 		return totalSize;
 	}
-	
+
+	/**
+	 * Calculate SHA-256 digest of data.
+	 * @return lowercase hex string of digest
+	 */
+	public static String calcSHA256(byte[] data) {
+		try {
+			return toHexString(MessageDigest.getInstance("SHA-256").digest(data));
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static String toHexString(byte[] hash) {
+		StringBuilder buf = new StringBuilder(hash.length * 2);
+		for (byte b : hash) {
+			buf.append(Character.forDigit((b >> 4) & 0x0F, 16));
+			buf.append(Character.forDigit(b & 0x0F, 16));
+		}
+		return buf.toString();
+	}
+
 	private static boolean moveFile(File oldPlace, File newPlace, boolean removeOld) {
 		boolean removeNewFile = true;
 		Log.i("cr3", "Moving file " + oldPlace.getAbsolutePath() + " to " + newPlace.getAbsolutePath());
@@ -330,6 +353,20 @@ public class Utils {
 		return ch;
 	}
 	
+	/**
+	 * Convert string to the same case-folded form as used by matchPattern().
+	 * @param text is string to convert
+	 * @return converted string, or null if text is null
+	 */
+	public static String convertCaseForSearch(String text) {
+		if (text == null)
+			return null;
+		char[] buf = new char[text.length()];
+		for (int i = 0; i < buf.length; i++)
+			buf[i] = convertCharCaseForSearch(text.charAt(i));
+		return new String(buf);
+	}
+
 	public static boolean matchPattern(String text, String pattern) {
 		if (pattern == null)
 			return true;
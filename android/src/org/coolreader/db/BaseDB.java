@@ -2,6 +2,7 @@ package org.coolreader.db;
 
 import java.io.File;
 
+import org.coolreader.crengine.DeviceInfo;
 import org.coolreader.crengine.L;
 import org.coolreader.crengine.Logger;
 import org.coolreader.crengine.Utils;
@@ -21,11 +22,21 @@ public abstract class BaseDB {
 	private File mFileName;
 	private boolean restoredFromBackup;
 	private boolean error = false;
+	// thread which opened DB: the only one allowed to start transactions and write
+	private volatile Thread mOwnerThread;
+	private volatile boolean mWalEnabled;
 
 	public File getFileName() {
 		return mFileName;
 	}
 
+	/**
+	 * Returns true if opened DB file is restored from backup, since previous one cannot be opened.
+	 */
+	protected boolean isRestoredFromBackup() {
+		return restoredFromBackup;
+	}
+
 	public boolean isOpened() {
 		if (mDB != null && !error)
 			return true;
@@ -33,11 +44,30 @@ public abstract class BaseDB {
 		return false;
 	}
 
+	/**
+	 * Returns true if DB is in write-ahead logging mode, and may be read
+	 * from other threads concurrently with writing in owner thread.
+	 */
+	public boolean isWalEnabled() {
+		return mWalEnabled && mDB != null;
+	}
+
+	/**
+	 * Returns true if called from thread which has opened DB.
+	 * Queries from other threads run outside of transactions, on separate read-only connections,
+	 * and see only committed changes.
+	 */
+	protected boolean isOwnerThread() {
+		return Thread.currentThread() == mOwnerThread;
+	}
+
 	public boolean open(File dir) {
 		error = false;
 		File dbFile = new File(dir, dbFileName());
 		log.i("opening DB " + dbFile);
 		mFileName = dbFile;
+		mOwnerThread = Thread.currentThread();
+		mWalEnabled = false;
 		mDB = openDB(dbFile);
 		if (mDB == null) {
 			return false;
@@ -47,25 +77,55 @@ public abstract class BaseDB {
 			log.e("Closing DB due error while upgrade of schema: " + dbFile.getAbsolutePath());
 			close();
 			Utils.moveCorruptedFileToBackup(dbFile);
-			if (!restoredFromBackup)
-				Utils.restoreFromBackup(dbFile);
+			boolean restored = restoredFromBackup || Utils.restoreFromBackup(dbFile);
 			mDB = openDB(dbFile);
+			restoredFromBackup = restoredFromBackup || restored;
 			res = checkSchema();
 			if (!res)
 				close();
 		}
 		if (mDB != null) {
+			enableWal();
 			return true;
 		}
 		return false;
 	}
 
+	private void enableWal() {
+		// before Jelly Bean, SQLiteDatabase has no pool of read connections
+		if (DeviceInfo.getSDKLevel() < 16)
+			return;
+		try {
+			if (mDB.inTransaction())
+				flush();
+			if (mDB.enableWriteAheadLogging()) {
+				// WAL needs shared memory file near DB, which may be not supported by some file systems
+				SQLiteStatement stmt = mDB.compileStatement("SELECT count(*) FROM sqlite_master");
+				try {
+					stmt.simpleQueryForLong();
+				} finally {
+					stmt.close();
+				}
+				mWalEnabled = true;
+			}
+			log.i("write-ahead logging for " + mFileName + ": " + mWalEnabled);
+		} catch (Exception e) {
+			log.e("cannot enable write-ahead logging for " + mFileName, e);
+			try {
+				mDB.disableWriteAheadLogging();
+			} catch (Exception ee) {
+				// ignore
+			}
+		}
+	}
+
 	public boolean close() {
 		if (mDB != null) {
 			try {
 				log.i("Closing database");
 				flush();
 				clearCaches();
+				mWalEnabled = false;
 				mDB.close();
 				mDB = null;
 				return true;
@@ -190,6 +250,8 @@ public abstract class BaseDB {
 	 * Begin transaction, if not yet started, for changes.
 	 */
 	public void beginChanges() {
+		if (!isOwnerThread())
+			throw new DBRuntimeException("DB changes are allowed only in owner thread");
 		if (!mDB.inTransaction()) {
 			vlog.v("starting writable transaction");
 			mDB.beginTransaction();
@@ -204,6 +266,8 @@ public abstract class BaseDB {
 	 * Begin transaction, if not yet started, for faster reading.
 	 */
 	public void beginReading() {
+		if (!isOwnerThread())
+			return;
 		if (!mDB.inTransaction()) {
 			vlog.v("starting readonly transaction");
 			mDB.beginTransaction();
@@ -214,6 +278,8 @@ public abstract class BaseDB {
 	 * Rolls back transaction, if writing is not started.
 	 */
 	public void endReading() {
+		if (!isOwnerThread())
+			return;
 		if (mDB.inTransaction() && !changed) {
 			vlog.v("ending readonly transaction");
 			mDB.endTransaction();
@@ -7,12 +7,20 @@ import android.util.Log;
 import org.coolreader.crengine.L;
 import org.coolreader.crengine.Logger;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 public abstract class BaseService extends Service {
 	public static final Logger vlog = L.create("bssvc", Log.ASSERT);
 
 	private ServiceThread mThread;
+	private ExecutorService mReaderPool;
+	private boolean mDestroyed;
 	private final String mName;
 
+	private static final int READER_THREAD_COUNT = 2;
+
 	public BaseService(String name) {
 		super();
 		mName = name;
@@ -26,7 +34,68 @@ public abstract class BaseService extends Service {
 
 	@Override
 	public void onDestroy() {
+		synchronized (this) {
+			mDestroyed = true;
+		}
 		mThread.stop(5000);
+		stopReaders(0);
+	}
+
+	/**
+	 * Stop reader threads, waiting for read tasks which are already started or posted.
+	 * Call in service thread before closing DB. Reader threads are started again by next execReadTask().
+	 * @param timeout is max time to wait for read tasks, in milliseconds
+	 */
+	protected void stopReaders(long timeout) {
+		ExecutorService pool;
+		synchronized (this) {
+			pool = mReaderPool;
+			mReaderPool = null;
+		}
+		if (pool == null)
+			return;
+		pool.shutdown();
+		try {
+			if (!pool.awaitTermination(timeout, TimeUnit.MILLISECONDS))
+				vlog.w("Read tasks are not finished in " + timeout + " ms");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Override to allow execution of query-only tasks concurrently with service thread.
+	 * @return true if tasks posted by execReadTask() may be executed in reader threads
+	 */
+	protected boolean isConcurrentReadingEnabled() {
+		return false;
+	}
+
+	/**
+	 * Execute query-only task in one of reader threads, if concurrent reading is enabled,
+	 * otherwise in service background thread, like execTask().
+	 * Exceptions will be ignored, just dumped into log.
+	 * @param task is Runnable to execute, must not modify DB
+	 */
+	protected void execReadTask(final Task task) {
+		if (isConcurrentReadingEnabled()) {
+			synchronized (this) {
+				// don't start reader threads again while service is being destroyed
+				if (!mDestroyed) {
+					if (mReaderPool == null) {
+						mReaderPool = Executors.newFixedThreadPool(READER_THREAD_COUNT, r -> {
+							Thread t = new Thread(r, mName + "-reader");
+							t.setDaemon(true);
+							return t;
+						});
+					}
+					vlog.v("Posting read task " + task);
+					mReaderPool.execute(task);
+					return;
+				}
+			}
+		}
+		execTask(task);
 	}
 
 	/**
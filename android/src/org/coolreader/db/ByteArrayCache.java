@@ -1,98 +1,98 @@
 package org.coolreader.db;
 
-import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 
 
+/**
+ * LRU cache of byte arrays, limited by total size of stored data in bytes.
+ * Thread safe: may be accessed from DB reader threads.
+ */
 public class ByteArrayCache {
 
 	public ByteArrayCache(int maxSize) {
 		this.maxSize = maxSize;
 	}
-	
-	public void put(String id, byte[] data) {
-		int index = find(id);
-		if (index >= 0) {
-			ByteArrayItem item = list.get(index);
-			if (item.data != null)
-				currentSize -= item.data.length;
-			item.data = data;
-			if (item.data != null)
-				currentSize += item.data.length;
-			moveOnTop(index);
-		} else {
-			ByteArrayItem item = new ByteArrayItem(id, data);
-			list.add(item);
-			if (item.data != null)
-				currentSize += item.data.length;
-		}
+
+	public synchronized void put(String id, byte[] data) {
+		byte[] old = map.put(id, data);
+		if (old != null)
+			currentSize -= old.length;
+		if (data != null)
+			currentSize += data.length;
 		checkSize();
 	}
-	
-	public byte[] get(String id) {
-		int index = find(id);
-		if (index < 0)
-			return null;
-		ByteArrayItem item = list.get(index);
-		moveOnTop(index);
-		return item.data;
+
+	public synchronized byte[] get(String id) {
+		byte[] data = map.get(id);
+		if (data == null)
+			missCount++;
+		else
+			hitCount++;
+		return data;
 	}
-	
-	public void remove(String id) {
-		int index = find(id);
-		if (index < 0)
-			return;
-		list.remove(index);
+
+	public synchronized void remove(String id) {
+		byte[] old = map.remove(id);
+		if (old != null)
+			currentSize -= old.length;
 	}
-	
-	public void clear() {
-		list.clear();
+
+	public synchronized void clear() {
+		map.clear();
+		currentSize = 0;
 	}
 
-	private static class ByteArrayItem {
-		public String id;
-		public byte[] data;
-		public ByteArrayItem(String id, byte[] data) {
-			this.id = id;
-			this.data = data;
-		}
+	/**
+	 * Change max total size of cached data, evicting least recently used items if necessary.
+	 * @param maxSize is new size limit, in bytes
+	 */
+	public synchronized void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+		checkSize();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public int getCurrentSize() {
+		return currentSize;
 	}
-	
-	private int maxSize;
-	private int currentSize;
-	private ArrayList<ByteArrayItem> list = new ArrayList<ByteArrayItem>();
 
-	private int find(String id) {
-		for (int i=0; i<list.size(); i++)
-			if (list.get(i).id.equals(id))
-				return i;
-		return -1;
+	public int getHitCount() {
+		return hitCount;
 	}
 
-	private void moveOnTop(int index) {
-		if (index >= list.size() - 1)
-			return; // already on top
-		ByteArrayItem item = list.remove(index);
-		list.add(item);
+	public int getMissCount() {
+		return missCount;
 	}
 
+	public int getEvictionCount() {
+		return evictionCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ByteArrayCache[items=" + map.size() + ", size=" + currentSize + "/" + maxSize + ", hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount + "]";
+	}
+
+	private int maxSize;
+	private int currentSize;
+	private int hitCount;
+	private int missCount;
+	private int evictionCount;
+	// access ordered: first entry is least recently used one
+	private final LinkedHashMap<String, byte[]> map = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+
 	private void checkSize() {
-		int extraSize = currentSize - maxSize;
-		if (extraSize < maxSize / 10)
-			return;
-		ArrayList<Integer> itemsToRemove = new ArrayList<Integer>(list.size() / 2);
-		for (int i=0; i<list.size() - 1; i++) {
-			ByteArrayItem item = list.get(i);
-			if (item.data == null || item.data.length == 0)
-				continue;
-			extraSize -= item.data.length;
-			itemsToRemove.add(i);
-			if (extraSize < 0)
-				break;
-		}
-		for (int i = itemsToRemove.size() - 1; i >= 0; i--) {
-			ByteArrayItem item = list.get(itemsToRemove.get(i));
-			list.remove(itemsToRemove.get(i));
-			item.data = null; // faster GC
+		Iterator<byte[]> it = map.values().iterator();
+		while (currentSize > maxSize && it.hasNext()) {
+			byte[] data = it.next();
+			it.remove();
+			if (data != null)
+				currentSize -= data.length;
+			evictionCount++;
 		}
 	}
 }
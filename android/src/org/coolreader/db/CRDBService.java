@@ -1,5 +1,6 @@
 package org.coolreader.db;
 
+import android.app.ActivityManager;
 import android.content.Intent;
 import android.os.Binder;
 import android.os.Environment;
@@ -10,6 +11,7 @@ import android.util.Log;
 import org.coolreader.crengine.BookInfo;
 import org.coolreader.crengine.Bookmark;
 import org.coolreader.crengine.DeviceInfo;
+import org.coolreader.crengine.DirectorySnapshot;
 import org.coolreader.crengine.Engine;
 import org.coolreader.crengine.FileInfo;
 import org.coolreader.crengine.L;
@@ -21,6 +23,7 @@ import org.coolreader.crengine.Utils;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 
 public class CRDBService extends BaseService {
 	public static final Logger log = L.create("db");
@@ -37,6 +40,16 @@ public class CRDBService extends BaseService {
     public void onCreate() {
     	log.i("onCreate()");
     	super.onCreate();
+    	ActivityManager am = (ActivityManager)getSystemService(ACTIVITY_SERVICE);
+    	if (am != null) {
+    		final int memoryClass = am.getMemoryClass();
+    		execTask(new Task("setMemoryClass") {
+    			@Override
+    			public void work() {
+    				coverDB.setMemoryClass(memoryClass);
+    			}
+    		});
+    	}
     	execTask(new OpenDatabaseTask());
     }
 
@@ -108,6 +121,8 @@ public class CRDBService extends BaseService {
 		}
 
 		private void close() {
+			// running read tasks must not see DB closed under them
+			stopReaders(READERS_STOP_TIMEOUT);
 			clearCaches();
     		mainDB.close();
     		coverDB.close();
@@ -137,12 +152,15 @@ public class CRDBService extends BaseService {
 		}
 
 		private void close() {
+			stopReaders(READERS_STOP_TIMEOUT);
 			clearCaches();
 			mainDB.close();
 			coverDB.close();
 		}
 	}
 
+	private static final long READERS_STOP_TIMEOUT = 5000; // 5 seconds
+
 	private FlushDatabaseTask lastFlushTask;
     private class FlushDatabaseTask extends Task {
     	private boolean force;
@@ -154,7 +172,7 @@ public class CRDBService extends BaseService {
 		@Override
 		public void work() {
 			long elapsed = Utils.timeInterval(lastFlushTime);
-			if (force || (lastFlushTask == this && elapsed > MIN_FLUSH_INTERVAL)) {
+			if (force || (lastFlushTask == this && elapsed > getFlushInterval())) {
 		    	mainDB.flush();
 		    	coverDB.flush();
 		    	if (!force)
@@ -169,13 +187,24 @@ public class CRDBService extends BaseService {
     }
 
     private static final long MIN_FLUSH_INTERVAL = 30000; // 30 seconds
+    // reader threads see only committed changes, so commit more often in WAL mode
+    private static final long WAL_FLUSH_INTERVAL = 3000; // 3 seconds
     private long lastFlushTime;
-    
+
+    private long getFlushInterval() {
+    	return isConcurrentReadingEnabled() ? WAL_FLUSH_INTERVAL : MIN_FLUSH_INTERVAL;
+    }
+
+    @Override
+    protected boolean isConcurrentReadingEnabled() {
+    	return mainDB.isWalEnabled() && coverDB.isWalEnabled();
+    }
+
     /**
      * Schedule flush.
      */
     private void flush() {
-   		execTask(new FlushDatabaseTask(false), MIN_FLUSH_INTERVAL);
+   		execTask(new FlushDatabaseTask(false), getFlushInterval());
     }
 
     /**
@@ -185,6 +214,202 @@ public class CRDBService extends BaseService {
    		execTask(new FlushDatabaseTask(true));
     }
 
+	//=======================================================================================
+	// Write-behind buffer: mutations are merged by key and written in batches
+	//=======================================================================================
+	private static final long WRITE_BEHIND_DELAY = 2000; // 2 seconds
+
+	private abstract static class PendingWrite {
+		/**
+		 * Called when this write replaces not yet done write with the same key.
+		 */
+		void replace(PendingWrite older) {
+		}
+		abstract void write();
+	}
+
+	private class FileInfoWrite extends PendingWrite {
+		final FileInfo fileInfo;
+		FileInfoWrite(FileInfo fileInfo) {
+			this.fileInfo = fileInfo;
+		}
+		@Override
+		void write() {
+			ArrayList<FileInfo> list = new ArrayList<>(1);
+			list.add(fileInfo);
+			mainDB.saveFileInfos(list);
+		}
+	}
+
+	private class BookInfoWrite extends PendingWrite {
+		final BookInfo bookInfo;
+		BookInfoWrite(BookInfo bookInfo) {
+			this.bookInfo = bookInfo;
+		}
+		@Override
+		void replace(PendingWrite older) {
+			// older copy has bookmark changes which are not tracked by newer one
+			bookInfo.addBookmarkChanges(((BookInfoWrite)older).bookInfo);
+		}
+		@Override
+		void write() {
+			mainDB.saveBookInfo(bookInfo);
+		}
+	}
+
+	private class CoverpageWrite extends PendingWrite {
+		final String pathName;
+		final byte[] data;
+		CoverpageWrite(String pathName, byte[] data) {
+			this.pathName = pathName;
+			this.data = data;
+		}
+		@Override
+		void write() {
+			coverDB.saveBookCoverpage(pathName, data);
+		}
+	}
+
+	private class ThumbnailWrite extends PendingWrite {
+		final String pathName;
+		final int width;
+		final int height;
+		final String fontFace;
+		final String stamp;
+		final byte[] data;
+		ThumbnailWrite(String pathName, int width, int height, String fontFace, String stamp, byte[] data) {
+			this.pathName = pathName;
+			this.width = width;
+			this.height = height;
+			this.fontFace = fontFace;
+			this.stamp = stamp;
+			this.data = data;
+		}
+		@Override
+		void write() {
+			coverDB.saveCoverThumbnail(pathName, width, height, fontFace, stamp, data);
+		}
+	}
+
+	private class WritePendingChangesTask extends Task {
+		public WritePendingChangesTask() {
+			super("WritePendingChangesTask");
+		}
+		@Override
+		public void work() {
+			writePendingChanges();
+		}
+	}
+
+	// insertion ordered: latest write of each key is moved to the end
+	private final LinkedHashMap<String, PendingWrite> pendingWrites = new LinkedHashMap<>();
+	private boolean pendingWritesScheduled;
+
+	private void addPendingWrite(String key, PendingWrite write) {
+		synchronized (pendingWrites) {
+			PendingWrite older = pendingWrites.remove(key);
+			if (older != null)
+				write.replace(older);
+			pendingWrites.put(key, write);
+			if (pendingWritesScheduled)
+				return;
+			pendingWritesScheduled = true;
+		}
+		super.execTask(new WritePendingChangesTask(), WRITE_BEHIND_DELAY);
+	}
+
+	private static String thumbnailKey(String pathName, int width, int height, String fontFace) {
+		return "thumb:" + pathName + ":" + width + "x" + height + ":" + fontFace;
+	}
+
+	private byte[] getPendingThumbnail(String pathName, int width, int height, String fontFace, String stamp) {
+		synchronized (pendingWrites) {
+			ThumbnailWrite write = (ThumbnailWrite)pendingWrites.get(thumbnailKey(pathName, width, height, fontFace));
+			return write != null && write.stamp.equals(stamp) ? write.data : null;
+		}
+	}
+
+	private byte[] getPendingCoverpage(String pathName) {
+		synchronized (pendingWrites) {
+			PendingWrite write = pendingWrites.get("cover:" + pathName);
+			return write != null ? ((CoverpageWrite)write).data : null;
+		}
+	}
+
+	/**
+	 * Write all pending changes in one transaction. Called in service thread only.
+	 */
+	private void writePendingChanges() {
+		ArrayList<PendingWrite> writes;
+		synchronized (pendingWrites) {
+			pendingWritesScheduled = false;
+			if (pendingWrites.isEmpty())
+				return;
+			writes = new ArrayList<>(pendingWrites.values());
+			pendingWrites.clear();
+		}
+		long ts = Utils.timeStamp();
+		// consecutive file items are saved by single saveFileInfos() call
+		ArrayList<FileInfo> files = new ArrayList<>();
+		for (PendingWrite write : writes) {
+			if (write instanceof FileInfoWrite) {
+				files.add(((FileInfoWrite)write).fileInfo);
+				continue;
+			}
+			try {
+				if (files.size() > 0) {
+					mainDB.saveFileInfos(files);
+					files = new ArrayList<>();
+				}
+				write.write();
+			} catch (Exception e) {
+				log.e("Exception while writing pending changes", e);
+			}
+		}
+		if (files.size() > 0)
+			mainDB.saveFileInfos(files);
+		vlog.v("writePendingChanges: " + writes.size() + " writes done in " + Utils.timeInterval(ts) + " ms");
+		flush();
+	}
+
+	private boolean hasPendingWrites() {
+		synchronized (pendingWrites) {
+			return !pendingWrites.isEmpty();
+		}
+	}
+
+	/**
+	 * Pending writes are done before any other task, so that task will see all changes made before it's posted.
+	 */
+	@Override
+	protected void execTask(final Task task) {
+		if (hasPendingWrites()) {
+			super.execTask(new WritePendingChangesTask());
+		}
+		super.execTask(task);
+	}
+
+	/**
+	 * Reader threads see only committed changes, so pending writes are written and committed
+	 * in service thread before read task is started.
+	 */
+	@Override
+	protected void execReadTask(final Task task) {
+		if (!isConcurrentReadingEnabled() || !hasPendingWrites()) {
+			super.execReadTask(task);
+			return;
+		}
+		super.execTask(new Task("writePendingChangesBeforeRead") {
+			@Override
+			public void work() {
+				writePendingChanges();
+				mainDB.flush();
+				coverDB.flush();
+				CRDBService.super.execReadTask(task);
+			}
+		});
+	}
+
     public static class FileInfoCache {
     	private ArrayList<FileInfo> list = new ArrayList<>();
     	public void add(FileInfo item) {
@@ -224,9 +449,9 @@ public class CRDBService extends BaseService {
 	}
 	
 	public void updateOPDSCatalogLastUsage(final String url) {
-		execTask(new Task("saveOPDSCatalog") {
+		addPendingWrite("opds:" + url, new PendingWrite() {
 			@Override
-			public void work() {
+			void write() {
 				mainDB.updateOPDSCatalogLastUsage(url);
 			}
 		});
@@ -272,26 +497,62 @@ public class CRDBService extends BaseService {
 	public void saveBookCoverpage(final FileInfo fileInfo, final byte[] data) {
 		if (data == null)
 			return;
-		execTask(new Task("saveBookCoverpage") {
+		addPendingWrite("cover:" + fileInfo.getPathName(), new CoverpageWrite(fileInfo.getPathName(), data));
+	}
+	
+	public void loadBookCoverpage(final FileInfo fileInfo, final CoverpageLoadingCallback callback, final Handler handler) 
+	{
+		// not yet written coverpage is taken from write-behind buffer, no need to wait for pending writes
+		super.execReadTask(new Task("loadBookCoverpage") {
 			@Override
 			public void work() {
-				coverDB.saveBookCoverpage(fileInfo.getPathName(), data);
+				byte[] pending = getPendingCoverpage(fileInfo.getPathName());
+				final byte[] data = pending != null || !coverDB.isOpened() ? pending : coverDB.loadBookCoverpage(fileInfo.getPathName());
+				sendTask(handler, () -> callback.onCoverpageLoaded(fileInfo, data));
 			}
 		});
-		flush();
 	}
 	
-	public void loadBookCoverpage(final FileInfo fileInfo, final CoverpageLoadingCallback callback, final Handler handler) 
+	/**
+	 * Identifies book properties drawn on coverpage thumbnail, so stored thumbnail is not used after they are changed.
+	 */
+	private static String thumbnailStamp(FileInfo fileInfo) {
+		String props = fileInfo.getTitleOrFileName() + "|" + fileInfo.authors + "|" + fileInfo.series + "|" + fileInfo.seriesNumber
+				+ "|" + fileInfo.size + "|" + fileInfo.crc32;
+		return Integer.toHexString(props.hashCode()) + ":" + props.length();
+	}
+
+	public void saveCoverThumbnail(final FileInfo fileInfo, final int width, final int height, final String fontFace, final byte[] data) {
+		if (data == null)
+			return;
+		addPendingWrite(thumbnailKey(fileInfo.getPathName(), width, height, fontFace),
+				new ThumbnailWrite(fileInfo.getPathName(), width, height, fontFace, thumbnailStamp(fileInfo), data));
+	}
+
+	public void loadCoverThumbnail(final FileInfo fileInfo, final int width, final int height, final String fontFace, final CoverpageLoadingCallback callback, final Handler handler)
 	{
-		execTask(new Task("loadBookCoverpage") {
+		final String stamp = thumbnailStamp(fileInfo);
+		// not yet written thumbnail is taken from write-behind buffer, no need to wait for pending writes
+		super.execReadTask(new Task("loadCoverThumbnail") {
 			@Override
 			public void work() {
-				final byte[] data = coverDB.loadBookCoverpage(fileInfo.getPathName());
+				byte[] pending = getPendingThumbnail(fileInfo.getPathName(), width, height, fontFace, stamp);
+				final byte[] data = pending != null || !coverDB.isOpened() ? pending : coverDB.loadCoverThumbnail(fileInfo.getPathName(), width, height, fontFace, stamp);
 				sendTask(handler, () -> callback.onCoverpageLoaded(fileInfo, data));
 			}
 		});
 	}
-	
+
+	public void deleteCoverThumbnails(final FileInfo fileInfo) {
+		execTask(new Task("deleteCoverThumbnails") {
+			@Override
+			public void work() {
+				coverDB.deleteCoverThumbnails(fileInfo.getPathName());
+			}
+		});
+		flush();
+	}
+
 	public void deleteCoverpage(final String bookId) {
 		execTask(new Task("deleteCoverpage") {
 			@Override
@@ -312,6 +573,10 @@ public class CRDBService extends BaseService {
     public interface FileInfoLoadingCallback {
     	void onFileInfoListLoaded(ArrayList<FileInfo> list);
     }
+
+    public interface FolderSnapshotLoadingCallback {
+    	void onFolderSnapshotLoaded(DirectorySnapshot snapshot);
+    }
     
     public interface RecentBooksLoadingCallback {
     	void onRecentBooksListLoaded(ArrayList<BookInfo> bookList);
@@ -327,10 +592,11 @@ public class CRDBService extends BaseService {
 
 	public void loadGenresList(FileInfo parent, boolean showEmptyGenres, final ItemGroupsLoadingCallback callback, final Handler handler) {
 		final FileInfo p = new FileInfo(parent);
-		execTask(new Task("loadGenresList") {
+		execReadTask(new Task("loadGenresList") {
 			@Override
 			public void work() {
-				mainDB.loadGenresList(p, showEmptyGenres);
+				if (mainDB.isOpened())
+					mainDB.loadGenresList(p, showEmptyGenres);
 				sendTask(handler, () -> callback.onItemGroupsLoaded(p));
 			}
 		});
@@ -338,10 +604,11 @@ public class CRDBService extends BaseService {
 
 	public void loadAuthorsList(FileInfo parent, final ItemGroupsLoadingCallback callback, final Handler handler) {
 		final FileInfo p = new FileInfo(parent); 
-		execTask(new Task("loadAuthorsList") {
+		execReadTask(new Task("loadAuthorsList") {
 			@Override
 			public void work() {
-				mainDB.loadAuthorsList(p);
+				if (mainDB.isOpened())
+					mainDB.loadAuthorsList(p);
 				sendTask(handler, () -> callback.onItemGroupsLoaded(p));
 			}
 		});
@@ -349,10 +616,11 @@ public class CRDBService extends BaseService {
 
 	public void loadSeriesList(FileInfo parent, final ItemGroupsLoadingCallback callback, final Handler handler) {
 		final FileInfo p = new FileInfo(parent); 
-		execTask(new Task("loadSeriesList") {
+		execReadTask(new Task("loadSeriesList") {
 			@Override
 			public void work() {
-				mainDB.loadSeriesList(p);
+				if (mainDB.isOpened())
+					mainDB.loadSeriesList(p);
 				sendTask(handler, () -> callback.onItemGroupsLoaded(p));
 			}
 		});
@@ -360,80 +628,90 @@ public class CRDBService extends BaseService {
 	
 	public void loadTitleList(FileInfo parent, final ItemGroupsLoadingCallback callback, final Handler handler) {
 		final FileInfo p = new FileInfo(parent); 
-		execTask(new Task("loadTitleList") {
+		execReadTask(new Task("loadTitleList") {
 			@Override
 			public void work() {
-				mainDB.loadTitleList(p);
+				if (mainDB.isOpened())
+					mainDB.loadTitleList(p);
 				sendTask(handler, () -> callback.onItemGroupsLoaded(p));
 			}
 		});
 	}
 
 	public void findGenresBooks(final String genreCode, boolean showEmptyGenres, final FileInfoLoadingCallback callback, final Handler handler) {
-		execTask(new Task("findGenresBooks") {
+		execReadTask(new Task("findGenresBooks") {
 			@Override
 			public void work() {
-				final ArrayList<FileInfo> list = mainDB.findByGenre(genreCode, showEmptyGenres);
+				final ArrayList<FileInfo> list = mainDB.isOpened() ? mainDB.findByGenre(genreCode, showEmptyGenres) : new ArrayList<>();
 				sendTask(handler, () -> callback.onFileInfoListLoaded(list));
 			}
 		});
 	}
 
 	public void findAuthorBooks(final long authorId, final FileInfoLoadingCallback callback, final Handler handler) {
-		execTask(new Task("findAuthorBooks") {
+		execReadTask(new Task("findAuthorBooks") {
 			@Override
 			public void work() {
 				final ArrayList<FileInfo> list = new ArrayList<>();
-				mainDB.findAuthorBooks(list, authorId);
+				if (mainDB.isOpened())
+					mainDB.findAuthorBooks(list, authorId);
 				sendTask(handler, () -> callback.onFileInfoListLoaded(list));
 			}
 		});
 	}
 	
 	public void findSeriesBooks(final long seriesId, final FileInfoLoadingCallback callback, final Handler handler) {
-		execTask(new Task("findSeriesBooks") {
+		execReadTask(new Task("findSeriesBooks") {
 			@Override
 			public void work() {
 				final ArrayList<FileInfo> list = new ArrayList<>();
-				mainDB.findSeriesBooks(list, seriesId);
+				if (mainDB.isOpened())
+					mainDB.findSeriesBooks(list, seriesId);
 				sendTask(handler, () -> callback.onFileInfoListLoaded(list));
 			}
 		});
 	}
 
 	public void findBooksByRating(final int minRate, final int maxRate, final FileInfoLoadingCallback callback, final Handler handler) {
-		execTask(new Task("findBooksByRating") {
+		execReadTask(new Task("findBooksByRating") {
 			@Override
 			public void work() {
 				final ArrayList<FileInfo> list = new ArrayList<>();
-				mainDB.findBooksByRating(list, minRate, maxRate);
+				if (mainDB.isOpened())
+					mainDB.findBooksByRating(list, minRate, maxRate);
 				sendTask(handler, () -> callback.onFileInfoListLoaded(list));
 			}
 		});
 	}
 
 	public void findBooksByState(final int state, final FileInfoLoadingCallback callback, final Handler handler) {
-		execTask(new Task("findBooksByState") {
+		execReadTask(new Task("findBooksByState") {
 			@Override
 			public void work() {
 				final ArrayList<FileInfo> list = new ArrayList<>();
-				mainDB.findBooksByState(list, state);
+				if (mainDB.isOpened())
+					mainDB.findBooksByState(list, state);
 				sendTask(handler, () -> callback.onFileInfoListLoaded(list));
 			}
 		});
 	}
 
 	public void loadRecentBooks(final int maxCount, final RecentBooksLoadingCallback callback, final Handler handler) {
+		loadRecentBooks(maxCount, false, callback, handler);
+	}
+
+	public void loadRecentBooks(final int maxCount, final boolean lastPositionOnly, final RecentBooksLoadingCallback callback, final Handler handler) {
 		execTask(new Task("loadRecentBooks") {
 			@Override
 			public void work() {
-				final ArrayList<BookInfo> list = mainDB.loadRecentBooks(maxCount);
+				final ArrayList<BookInfo> list = mainDB.loadRecentBooks(maxCount, lastPositionOnly);
 				sendTask(handler, () -> callback.onRecentBooksListLoaded(list));
 			}
 		});
 	}
 	
 	public void sync(final Runnable callback, final Handler handler) {
+		// pending writes are done before this task, see execTask()
 		execTask(new Task("sync") {
 			@Override
 			public void work() {
@@ -470,13 +748,8 @@ public class CRDBService extends BaseService {
 	}
 	
 	public void saveFileInfos(final Collection<FileInfo> list) {
-		execTask(new Task("saveFileInfos") {
-			@Override
-			public void work() {
-				mainDB.saveFileInfos(list);
-			}
-		});
-		flush();
+		for (FileInfo fileInfo : list)
+			addPendingWrite("file:" + fileInfo.getPathName(), new FileInfoWrite(fileInfo));
 	}
 
 	public void loadBookInfo(final FileInfo fileInfo, final BookInfoLoadingCallback callback, final Handler handler) {
@@ -489,25 +762,39 @@ public class CRDBService extends BaseService {
 		});
 	}
 
-	public void loadFileInfos(final ArrayList<String> pathNames, final Scanner.ScanControl control, final Engine.ProgressControl progress, final FileInfoLoadingCallback callback, final Handler handler) {
+	public void loadFileInfos(final ArrayList<String> pathNames, final boolean detectMoved, final Scanner.ScanControl control, final Engine.ProgressControl progress, final FileInfoLoadingCallback callback, final Handler handler) {
 		execTask(new Task("loadFileInfos") {
 			@Override
 			public void work() {
-				final ArrayList<FileInfo> list = mainDB.loadFileInfos(pathNames, control, progress);
+				final ArrayList<FileInfo> list = mainDB.loadFileInfos(pathNames, detectMoved, control, progress);
 				sendTask(handler, () -> callback.onFileInfoListLoaded(list));
 			}
 		});
 	}
 	
-	public void saveBookInfo(final BookInfo bookInfo) {
-		execTask(new Task("saveBookInfo") {
+	public void loadFolderSnapshot(final String folderName, final FolderSnapshotLoadingCallback callback, final Handler handler) {
+		execTask(new Task("loadFolderSnapshot") {
 			@Override
 			public void work() {
-				mainDB.saveBookInfo(bookInfo);
+				final DirectorySnapshot snapshot = mainDB.loadFolderSnapshot(folderName);
+				sendTask(handler, () -> callback.onFolderSnapshotLoaded(snapshot));
+			}
+		});
+	}
+
+	public void saveFolderSnapshot(final String folderName, final DirectorySnapshot snapshot) {
+		execTask(new Task("saveFolderSnapshot") {
+			@Override
+			public void work() {
+				mainDB.saveFolderSnapshot(folderName, snapshot);
 			}
 		});
 		flush();
 	}
+
+	public void saveBookInfo(final BookInfo bookInfo) {
+		addPendingWrite("book:" + bookInfo.getFileInfo().getPathName(), new BookInfoWrite(bookInfo));
+	}
 	
 	public void deleteBook(final FileInfo fileInfo)	{
 		execTask(new Task("deleteBook") {
@@ -611,6 +898,18 @@ public class CRDBService extends BaseService {
     		getService().loadBookCoverpage(new FileInfo(fileInfo), callback, new Handler());
     	}
     	
+    	public void saveCoverThumbnail(final FileInfo fileInfo, int width, int height, String fontFace, byte[] data) {
+    		getService().saveCoverThumbnail(new FileInfo(fileInfo), width, height, fontFace, data);
+    	}
+
+    	public void loadCoverThumbnail(final FileInfo fileInfo, int width, int height, String fontFace, final CoverpageLoadingCallback callback) {
+    		getService().loadCoverThumbnail(new FileInfo(fileInfo), width, height, fontFace, callback, new Handler());
+    	}
+
+    	public void deleteCoverThumbnails(final FileInfo fileInfo) {
+    		getService().deleteCoverThumbnails(new FileInfo(fileInfo));
+    	}
+
     	public void loadOPDSCatalogs(final OPDSCatalogsLoadingCallback callback) {
     		getService().loadOPDSCatalogs(callback, new Handler());
     	}
@@ -671,6 +970,10 @@ public class CRDBService extends BaseService {
     		getService().loadRecentBooks(maxCount, callback, new Handler());
     	}
 
+    	public void loadRecentBooks(final int maxCount, final boolean lastPositionOnly, final RecentBooksLoadingCallback callback) {
+    		getService().loadRecentBooks(maxCount, lastPositionOnly, callback, new Handler());
+    	}
+
     	public void sync(final Runnable callback) {
     		getService().sync(callback, new Handler());
     	}
@@ -687,16 +990,30 @@ public class CRDBService extends BaseService {
 			getService().findByPatterns(maxCount, authors, title, series, filename, callback, new Handler());
 		}
 
-		public void loadFileInfos(final ArrayList<String> pathNames, final Scanner.ScanControl control, final Engine.ProgressControl progress, final FileInfoLoadingCallback callback) {
-    		getService().loadFileInfos(pathNames, control, progress, callback, new Handler());
+		public void loadFileInfos(final ArrayList<String> pathNames, final boolean detectMoved, final Scanner.ScanControl control, final Engine.ProgressControl progress, final FileInfoLoadingCallback callback) {
+    		getService().loadFileInfos(pathNames, detectMoved, control, progress, callback, new Handler());
     	}
 
+		public void loadFolderSnapshot(final String folderName, final FolderSnapshotLoadingCallback callback) {
+			getService().loadFolderSnapshot(folderName, callback, new Handler());
+		}
+
+		public void saveFolderSnapshot(final String folderName, final DirectorySnapshot snapshot) {
+			getService().saveFolderSnapshot(folderName, snapshot);
+		}
+
     	public void deleteBook(final FileInfo fileInfo)	{
     		getService().deleteBook(new FileInfo(fileInfo));
     	}
 
     	public void saveBookInfo(final BookInfo bookInfo) {
-    		getService().saveBookInfo(new BookInfo(bookInfo));
+    		BookInfo copy;
+    		synchronized (bookInfo) {
+    			copy = new BookInfo(bookInfo);
+    			// copy carries changes to save, next save will have only newer ones
+    			bookInfo.clearBookmarkChanges();
+    		}
+    		getService().saveBookInfo(copy);
     	}
 
 		public void saveSearchHistory(final BookInfo book, String sHist) {
@@ -11,13 +11,22 @@ public class CoverDB extends BaseDB {
 
 	public static final Logger log = L.create("cdb");
 	
-	public final int DB_VERSION = 9;
+	public final int DB_VERSION = 10;
 	private final static boolean CLEAR_ON_START = false;
 
 	private final static String[] COVERPAGE_SCHEMA = new String[] {
 		"CREATE TABLE IF NOT EXISTS coverpages (" +
 		"book_path VARCHAR NOT NULL PRIMARY KEY," +
 		"imagedata BLOB NULL" +
+		")",
+		"CREATE TABLE IF NOT EXISTS thumbnails (" +
+		"book_path VARCHAR NOT NULL," +
+		"width INTEGER NOT NULL," +
+		"height INTEGER NOT NULL," +
+		"font_face VARCHAR NOT NULL," +
+		"stamp VARCHAR NULL," +
+		"imagedata BLOB NOT NULL," +
+		"PRIMARY KEY (book_path, width, height, font_face)" +
 		")"
 	};
 	
@@ -53,15 +62,31 @@ public class CoverDB extends BaseDB {
 	}
 
 	private void dumpStatistics() {
-		log.i("coverDB: " + longQuery("SELECT count(*) FROM coverpages") + " coverpages");
+		log.i("coverDB: " + longQuery("SELECT count(*) FROM coverpages") + " coverpages, "
+				+ longQuery("SELECT count(*) FROM thumbnails") + " thumbnails");
 	}
 
 	public void clearCaches() {
+		log.i("clearCaches: " + coverpageCache);
 		coverpageCache.clear();
 	}
 	
     private static final int COVERPAGE_CACHE_SIZE = 512 * 1024;
+    private static final int MIN_COVERPAGE_CACHE_SIZE = 256 * 1024;
+    private static final int MAX_COVERPAGE_CACHE_SIZE = 8 * 1024 * 1024;
     private ByteArrayCache coverpageCache = new ByteArrayCache(COVERPAGE_CACHE_SIZE);
+
+	/**
+	 * Set size of coverpage data cache according to heap limit of application.
+	 * @param memoryClass is application memory class (heap limit) in megabytes
+	 */
+	public void setMemoryClass(int memoryClass) {
+		// 1/64 of heap limit: 256K for 16M heap, 4M for 256M heap
+		int size = memoryClass * 1024 * 1024 / 64;
+		size = Math.max(MIN_COVERPAGE_CACHE_SIZE, Math.min(size, MAX_COVERPAGE_CACHE_SIZE));
+		log.i("coverpage cache size: " + size + " bytes for memory class " + memoryClass);
+		coverpageCache.setMaxSize(size);
+	}
     
 	public void saveBookCoverpage(String bookId, byte[] data)
 	{
@@ -122,5 +147,63 @@ public class CoverDB extends BaseDB {
 		if (!isOpened())
 			return;
 		execSQLIgnoreErrors("DELETE FROM coverpages WHERE book_path=" + quoteSqlString(bookId));
+		deleteCoverThumbnails(bookId);
+	}
+
+	//=======================================================================================
+	// Pre-scaled coverpage images
+	//=======================================================================================
+
+	private static final int MAX_THUMBNAILS_COUNT = 5000;
+	private static final int THUMBNAILS_TRIM_INTERVAL = 100;
+	private int thumbnailsSavedSinceTrim;
+
+	/**
+	 * Save coverpage image already drawn for specified size.
+	 * Oldest images are removed when count of stored images exceeds MAX_THUMBNAILS_COUNT.
+	 * @param stamp identifies book properties drawn on image, image is not used when they are changed
+	 */
+	public void saveCoverThumbnail(String bookId, int width, int height, String fontFace, String stamp, byte[] data) {
+		if (!isOpened() || data == null || data.length == 0)
+			return;
+		try (SQLiteStatement stmt = mDB.compileStatement("INSERT OR REPLACE INTO thumbnails (book_path, width, height, font_face, stamp, imagedata) VALUES (?, ?, ?, ?, ?, ?)")) {
+			beginChanges();
+			stmt.bindString(1, bookId);
+			stmt.bindLong(2, width);
+			stmt.bindLong(3, height);
+			stmt.bindString(4, fontFace);
+			stmt.bindString(5, stamp);
+			stmt.bindBlob(6, data);
+			stmt.execute();
+		} catch ( Exception e ) {
+			Log.e("cr3", "Exception while trying to save cover thumbnail to DB: " + e.getMessage() );
+			return;
+		}
+		if (++thumbnailsSavedSinceTrim >= THUMBNAILS_TRIM_INTERVAL) {
+			thumbnailsSavedSinceTrim = 0;
+			// INSERT OR REPLACE assigns new rowid, so lowest rowids are least recently saved
+			execSQLIgnoreErrors("DELETE FROM thumbnails WHERE rowid IN (SELECT rowid FROM thumbnails ORDER BY rowid LIMIT " +
+					"max(0, (SELECT count(*) FROM thumbnails) - " + MAX_THUMBNAILS_COUNT + "))");
+		}
+	}
+
+	public byte[] loadCoverThumbnail(String bookId, int width, int height, String fontFace, String stamp) {
+		if (!isOpened())
+			return null;
+		try (Cursor rs = mDB.rawQuery("SELECT imagedata FROM thumbnails WHERE book_path=? AND width=? AND height=? AND font_face=? AND stamp=?",
+				new String[] { bookId, String.valueOf(width), String.valueOf(height), fontFace, stamp })) {
+			if (rs.moveToFirst())
+				return rs.getBlob(0);
+			return null;
+		} catch ( Exception e ) {
+			Log.e("cr3", "error while reading cover thumbnail for book " + bookId + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	public void deleteCoverThumbnails(String bookId) {
+		if (!isOpened())
+			return;
+		execSQLIgnoreErrors("DELETE FROM thumbnails WHERE book_path=" + quoteSqlString(bookId));
 	}
 }
@@ -1,106 +1,148 @@
 package org.coolreader.db;
 
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.coolreader.crengine.FileInfo;
 
+/**
+ * LRU cache of FileInfo items, indexed both by pathname and by DB id.
+ *
+ * Lookup, insertion and promotion are O(1); least recently used items are
+ * evicted as soon as item count exceeds maxSize.
+ */
 public class FileInfoCache {
 
 	private final int maxSize;
-	private int currentSize;
 
-	private ArrayList<FileInfo> list = new ArrayList<FileInfo>(); 
-	
+	private final HashMap<String, Entry> byPath = new HashMap<String, Entry>();
+	private final HashMap<Long, Entry> byId = new HashMap<Long, Entry>();
+	// access ordered: eldest entry is least recently used one
+	private final LinkedHashMap<Entry, Entry> lru = new LinkedHashMap<Entry, Entry>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Entry, Entry> eldest) {
+			if (size() <= maxSize)
+				return false;
+			unindex(eldest.getKey());
+			evictionCount++;
+			return true;
+		}
+	};
+
+	private int hitCount;
+	private int missCount;
+	private int evictionCount;
+
+	private static class Entry {
+		// keys are stored separately, since FileInfo fields may be changed after caching
+		final String path;
+		final Long id;
+		final FileInfo item;
+		Entry(FileInfo item) {
+			this.path = item.getPathName();
+			this.id = item.id;
+			this.item = item;
+		}
+	}
+
 	public FileInfoCache(int maxSize) {
 		this.maxSize = maxSize;
 	}
-	
+
 	public FileInfo remove(FileInfo entry) {
-		int index = findByPath(entry.getPathName());
-		if (index == -1)
-			index = findById(entry.id);
-		if (index == -1)
+		Entry e = find(entry.getPathName(), entry.id);
+		if (e == null)
 			return null;
-		FileInfo removed = list.get(index);
-		list.remove(index);
-		currentSize--;
-		return removed;
+		lru.remove(e);
+		unindex(e);
+		return e.item;
 	}
-	
+
 	public void put(FileInfo entry) {
-		int index = findByPath(entry.getPathName());
-		if (index == -1)
-			index = findById(entry.id);
-		if (index == -1) {
-			list.add(entry);
-			currentSize++;
-			checkSize();
-			return;
+		Entry old = find(entry.getPathName(), entry.id);
+		if (old != null) {
+			lru.remove(old);
+			unindex(old);
 		}
-		list.set(index, entry);
-		moveOnTop(index);
+		// item with the same id but another path may still be cached: replace it too
+		if (entry.id != null) {
+			Entry sameId = byId.get(entry.id);
+			if (sameId != null) {
+				lru.remove(sameId);
+				unindex(sameId);
+			}
+		}
+		Entry e = new Entry(entry);
+		if (e.path != null)
+			byPath.put(e.path, e);
+		if (e.id != null)
+			byId.put(e.id, e);
+		lru.put(e, e);
 	}
-	
+
 	public FileInfo get(String path) {
-		int index = findByPath(path);
-		if (index == -1)
+		if (path == null)
 			return null;
-		FileInfo item = list.get(index);
-		moveOnTop(index);
-		return item;
+		return touch(byPath.get(path));
 	}
-	
+
 	public FileInfo get(Long id) {
 		if (id == null)
 			return null;
-		int index = findById(id);
-		if (index == -1)
-			return null;
-		FileInfo item = list.get(index);
-		moveOnTop(index);
-		return item;
+		return touch(byId.get(id));
 	}
-	
+
 	public void clear() {
-		list.clear();
-		currentSize = 0;
+		lru.clear();
+		byPath.clear();
+		byId.clear();
 	}
-	
-	private void moveOnTop(int index) {
-		if (index >= list.size() - 1)
-			return;
-		FileInfo item = list.get(index);
-		list.remove(index);
-		list.add(item);
+
+	public int size() {
+		return lru.size();
 	}
-	
-	private int findByPath(String path) {
-		if (path == null)
-			return -1;
-		for (int i=0; i<list.size(); i++) {
-			if (path.equals(list.get(i).getPathName()))
-				return i;
-		}
-		return -1;
+
+	public int getHitCount() {
+		return hitCount;
 	}
 
-	private int findById(Long id) {
-		if (id == null)
-			return -1;
-		for (int i=0; i<list.size(); i++) {
-			if (id.equals(list.get(i).id))
-				return i;
-		}
-		return -1;
+	public int getMissCount() {
+		return missCount;
+	}
+
+	public int getEvictionCount() {
+		return evictionCount;
 	}
 
-	private void checkSize() {
-		int itemsToRemove = currentSize - maxSize;
-		if (itemsToRemove < maxSize / 10)
-			return;
-		for (int i=itemsToRemove; i>=0; i--) {
-			list.remove(i);
+	@Override
+	public String toString() {
+		return "FileInfoCache[size=" + lru.size() + "/" + maxSize + ", hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount + "]";
+	}
+
+	private FileInfo touch(Entry e) {
+		if (e == null) {
+			missCount++;
+			return null;
 		}
-		currentSize -= itemsToRemove;
+		hitCount++;
+		lru.get(e); // move on top
+		return e.item;
+	}
+
+	private Entry find(String path, Long id) {
+		Entry e = null;
+		if (path != null)
+			e = byPath.get(path);
+		if (e == null && id != null)
+			e = byId.get(id);
+		return e;
+	}
+
+	private void unindex(Entry e) {
+		if (e.path != null && byPath.get(e.path) == e)
+			byPath.remove(e.path);
+		if (e.id != null && byId.get(e.id) == e)
+			byId.remove(e.id);
 	}
 }
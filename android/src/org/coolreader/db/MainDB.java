@@ -9,6 +9,7 @@ import android.util.Log;
 
 import org.coolreader.crengine.BookInfo;
 import org.coolreader.crengine.Bookmark;
+import org.coolreader.crengine.DirectorySnapshot;
 import org.coolreader.crengine.DocumentFormat;
 import org.coolreader.crengine.Engine;
 import org.coolreader.crengine.FileInfo;
@@ -21,11 +22,14 @@ import org.coolreader.crengine.Services;
 import org.coolreader.crengine.Utils;
 import org.coolreader.genrescollection.GenresCollection;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 public class MainDB extends BaseDB {
@@ -33,7 +37,7 @@ public class MainDB extends BaseDB {
 	public static final Logger vlog = L.create("mdb", Log.VERBOSE);
 	
 	private boolean pathCorrectionRequired = false;
-	public final int DB_VERSION = 34;
+	public final int DB_VERSION = 39;
 	@Override
 	protected boolean upgradeSchema() {
 		// When the database is just created, its version is 0.
@@ -294,6 +298,66 @@ public class MainDB extends BaseDB {
 				if (pragma_foreign_keys != 0L)
 					execSQLIgnoreErrors("PRAGMA foreign_keys=ON");
 			}
+			if (currentVersion < 35) {
+				execSQLIgnoreErrors("CREATE VIRTUAL TABLE IF NOT EXISTS book_fts USING fts3 (" +
+						"title, authors, series, filename, description)");
+				if (isFtsTableExists())
+					rebuildFtsIndex();
+			}
+			if (currentVersion < 36) {
+				// snapshot of directory state at last successful scan
+				execSQLIgnoreErrors("ALTER TABLE folder ADD COLUMN mtime INTEGER DEFAULT NULL");
+				execSQLIgnoreErrors("ALTER TABLE folder ADD COLUMN file_count INTEGER DEFAULT NULL");
+				execSQLIgnoreErrors("ALTER TABLE folder ADD COLUMN size_digest INTEGER DEFAULT NULL");
+			}
+			if (currentVersion < 37) {
+				// precomputed collation keys for catalogs, grouped by first letters in SQL
+				execSQLIgnoreErrors("ALTER TABLE author ADD COLUMN sort_key VARCHAR DEFAULT NULL");
+				execSQLIgnoreErrors("ALTER TABLE series ADD COLUMN sort_key VARCHAR DEFAULT NULL");
+				execSQLIgnoreErrors("ALTER TABLE book ADD COLUMN title_key VARCHAR DEFAULT NULL");
+				fillSortKeys("author", "name", "sort_key", true);
+				fillSortKeys("series", "name", "sort_key", false);
+				fillSortKeys("book", "title", "title_key", false);
+				execSQLIgnoreErrors("CREATE INDEX IF NOT EXISTS author_sort_key_index ON author (sort_key) ");
+				execSQLIgnoreErrors("CREATE INDEX IF NOT EXISTS series_sort_key_index ON series (sort_key) ");
+				execSQLIgnoreErrors("CREATE INDEX IF NOT EXISTS book_title_key_index ON book (title_key) ");
+			}
+			if (currentVersion < 38) {
+				// book counts for catalog roots, maintained by triggers in the same transaction as links changes
+				execSQLIgnoreErrors("CREATE TABLE IF NOT EXISTS author_book_count (" +
+						"author_fk INTEGER NOT NULL PRIMARY KEY REFERENCES author (id), " +
+						"book_count INTEGER NOT NULL DEFAULT 0)");
+				execSQLIgnoreErrors("CREATE TABLE IF NOT EXISTS genre_group_book_count (" +
+						"group_fk INTEGER NOT NULL PRIMARY KEY REFERENCES genre_group (id), " +
+						"book_count INTEGER NOT NULL DEFAULT 0)");
+				execSQLIgnoreErrors("CREATE TRIGGER IF NOT EXISTS book_author_insert_trigger AFTER INSERT ON book_author BEGIN " +
+						"INSERT OR IGNORE INTO author_book_count (author_fk, book_count) VALUES (NEW.author_fk, 0); " +
+						"UPDATE author_book_count SET book_count = book_count + 1 WHERE author_fk = NEW.author_fk; " +
+						"END");
+				execSQLIgnoreErrors("CREATE TRIGGER IF NOT EXISTS book_author_delete_trigger AFTER DELETE ON book_author BEGIN " +
+						"UPDATE author_book_count SET book_count = book_count - 1 WHERE author_fk = OLD.author_fk; " +
+						"END");
+				// book is counted once per genre group, even if it has several genres of the same group
+				execSQLIgnoreErrors("CREATE TRIGGER IF NOT EXISTS book_genre_insert_trigger AFTER INSERT ON book_genre BEGIN " +
+						"INSERT OR IGNORE INTO genre_group_book_count (group_fk, book_count) SELECT group_fk, 0 FROM genre_hier WHERE genre_fk = NEW.genre_fk; " +
+						"UPDATE genre_group_book_count SET book_count = book_count + 1 WHERE group_fk IN (" +
+						"SELECT gh.group_fk FROM genre_hier gh WHERE gh.genre_fk = NEW.genre_fk AND NOT EXISTS (" +
+						"SELECT 1 FROM book_genre bg JOIN genre_hier gh2 ON gh2.genre_fk = bg.genre_fk " +
+						"WHERE bg.book_fk = NEW.book_fk AND bg.genre_fk <> NEW.genre_fk AND gh2.group_fk = gh.group_fk)); " +
+						"END");
+				execSQLIgnoreErrors("CREATE TRIGGER IF NOT EXISTS book_genre_delete_trigger AFTER DELETE ON book_genre BEGIN " +
+						"UPDATE genre_group_book_count SET book_count = book_count - 1 WHERE group_fk IN (" +
+						"SELECT gh.group_fk FROM genre_hier gh WHERE gh.genre_fk = OLD.genre_fk AND NOT EXISTS (" +
+						"SELECT 1 FROM book_genre bg JOIN genre_hier gh2 ON gh2.genre_fk = bg.genre_fk " +
+						"WHERE bg.book_fk = OLD.book_fk AND gh2.group_fk = gh.group_fk)); " +
+						"END");
+				rebuildAuthorBookCounts();
+				rebuildGenreGroupBookCounts();
+			}
+			if (currentVersion < 39) {
+				// books are looked up by crc32 fingerprints when syncing
+				execSQLIgnoreErrors("CREATE INDEX IF NOT EXISTS book_crc32_index ON book (crc32) ");
+			}
 
 			//==============================================================
 			// add more updates above this line
@@ -304,11 +368,33 @@ public class MainDB extends BaseDB {
 
 		checkOrUpgradeGenresHandbook();
 
+		if (isRestoredFromBackup()) {
+			// book records may be older than saved directory states
+			log.w("DB is restored from backup, all directories will be scanned again");
+			execSQLIgnoreErrors("UPDATE folder SET mtime=NULL");
+		}
+
+		ftsAvailable = isFtsTableExists();
+		if (!ftsAvailable)
+			log.w("Full text search index is not available, book search will scan all records");
+
 		dumpStatistics();
 		
 		return true;
 	}
 
+	private void rebuildAuthorBookCounts() {
+		execSQLIgnoreErrors("DELETE FROM author_book_count");
+		execSQLIgnoreErrors("INSERT INTO author_book_count (author_fk, book_count) " +
+				"SELECT author_fk, COUNT(*) FROM book_author GROUP BY author_fk");
+	}
+
+	private void rebuildGenreGroupBookCounts() {
+		execSQLIgnoreErrors("DELETE FROM genre_group_book_count");
+		execSQLIgnoreErrors("INSERT INTO genre_group_book_count (group_fk, book_count) " +
+				"SELECT gh.group_fk, COUNT(DISTINCT bg.book_fk) FROM book_genre bg JOIN genre_hier gh ON gh.genre_fk = bg.genre_fk GROUP BY gh.group_fk");
+	}
+
 	private void dumpStatistics() {
 		log.i("mainDB: " + longQuery("SELECT count(*) FROM author") + " authors, "
 				 + longQuery("SELECT count(*) FROM series") + " series, "
@@ -362,6 +448,8 @@ public class MainDB extends BaseDB {
 						}
 					}
 				}
+				// genres hierarchy may be changed
+				rebuildGenreGroupBookCounts();
 				// Update genres data version in metadata
 				stmt = mDB.compileStatement("INSERT OR REPLACE INTO metadata (param, value) VALUES ('genre_version', ?)");
 				stmt.bindLong(1, Services.getGenresCollection().getVersion());
@@ -382,6 +470,7 @@ public class MainDB extends BaseDB {
 	}
 	
 	public void clearCaches() {
+		log.i("clearCaches: " + fileInfoCache);
 		seriesCache.clear();
 		authorCache.clear();
 		folderCache.clear();
@@ -414,6 +503,25 @@ public class MainDB extends BaseDB {
             authorSelectStmt.close();
             authorSelectStmt = null;
         }
+        if (bookAuthorStmt != null) {
+            bookAuthorStmt.close();
+            bookAuthorStmt = null;
+        }
+        if (bookGenreStmt != null) {
+            bookGenreStmt.close();
+            bookGenreStmt = null;
+        }
+        if (ftsInsertStmt != null) {
+            ftsInsertStmt.close();
+            ftsInsertStmt = null;
+        }
+        if (ftsDeleteStmt != null) {
+            ftsDeleteStmt.close();
+            ftsDeleteStmt = null;
+        }
+        for (SQLiteStatement stmt : insertStmtCache.values())
+            stmt.close();
+        insertStmtCache.clear();
 	}
 	
 	//=======================================================================================
@@ -659,7 +767,7 @@ public class MainDB extends BaseDB {
 	private static final String READ_BOOKMARK_SQL = 
 		"SELECT " +
 		"id, type, percent, shortcut, time_stamp, " + 
-		"start_pos, end_pos, title_text, pos_text, comment_text, time_elapsed " +
+		"start_pos, end_pos, title_text, pos_text, comment_text, time_elapsed, book_fk " +
 		"FROM bookmark b ";
 	private void readBookmarkFromCursor(Bookmark v, Cursor rs )
 	{
@@ -711,11 +819,114 @@ public class MainDB extends BaseDB {
 		if (load( bookmarks, "book_fk=" + book.getFileInfo().id + " ORDER BY type" ) ) {
 			book.setBookmarks(bookmarks);
 		}
+		book.clearBookmarkChanges();
+	}
+
+	/**
+	 * Load bookmarks for several books, using one query per chunk of books instead of query per book.
+	 * @param books is books to load bookmarks for
+	 * @param lastPositionOnly if true, only last position bookmarks are loaded, books are marked as partially loaded
+	 */
+	public void loadBookmarks(Collection<BookInfo> books, boolean lastPositionOnly) {
+		HashMap<Long, BookInfo> byId = new HashMap<>();
+		for (BookInfo book : books) {
+			if (book.getFileInfo().id != null)
+				byId.put(book.getFileInfo().id, book);
+		}
+		HashMap<Long, ArrayList<Bookmark>> found = new HashMap<>();
+		ArrayList<Long> chunk = new ArrayList<>(MAX_QUERY_PARAMS);
+		Iterator<Long> it = byId.keySet().iterator();
+		while (it.hasNext()) {
+			chunk.add(it.next());
+			if (chunk.size() >= MAX_QUERY_PARAMS || !it.hasNext()) {
+				StringBuilder sql = new StringBuilder(READ_BOOKMARK_SQL).append(" WHERE book_fk IN (");
+				for (int i = 0; i < chunk.size(); i++) {
+					if (i > 0)
+						sql.append(",");
+					sql.append(chunk.get(i));
+				}
+				sql.append(")");
+				if (lastPositionOnly)
+					sql.append(" AND type=").append(Bookmark.TYPE_LAST_POSITION);
+				sql.append(" ORDER BY book_fk, type");
+				try (Cursor rs = mDB.rawQuery(sql.toString(), null)) {
+					if (rs.moveToFirst()) {
+						int bookIdColumn = rs.getColumnIndex("book_fk");
+						do {
+							Bookmark v = new Bookmark();
+							readBookmarkFromCursor(v, rs);
+							Long bookId = rs.getLong(bookIdColumn);
+							ArrayList<Bookmark> list = found.get(bookId);
+							if (list == null) {
+								list = new ArrayList<>();
+								found.put(bookId, list);
+							}
+							list.add(v);
+						} while (rs.moveToNext());
+					}
+				}
+				chunk.clear();
+			}
+		}
+		for (Map.Entry<Long, ArrayList<Bookmark>> entry : found.entrySet())
+			byId.get(entry.getKey()).setBookmarks(entry.getValue());
+		for (BookInfo book : byId.values()) {
+			if (lastPositionOnly)
+				book.setBookmarksLoaded(false);
+			book.clearBookmarkChanges();
+		}
 	}
 	
 	//=======================================================================================
     // Item groups access code
     //=======================================================================================
+
+	/**
+	 * Collation key of catalog item, used for sorting and grouping by first letters.
+	 * @param name is author name, series name or book title
+	 * @param isAuthor is true for author names, which are sorted by last name
+	 * @return key to store in DB
+	 */
+	private static String sortKey(String name, boolean isAuthor) {
+		if (name == null || name.length() == 0)
+			return null;
+		if (isAuthor)
+			name = Utils.authorNameFileAs(name);
+		return name.toUpperCase();
+	}
+
+	private void fillSortKeys(String table, String column, String keyColumn, boolean isAuthor) {
+		log.i("Filling " + table + "." + keyColumn + "...");
+		HashMap<Long, String> keys = new HashMap<>();
+		try (Cursor rs = mDB.rawQuery("SELECT id, " + column + " FROM " + table + " WHERE " + column + " IS NOT NULL", null)) {
+			if (rs.moveToFirst()) {
+				do {
+					keys.put(rs.getLong(0), sortKey(rs.getString(1), isAuthor));
+				} while (rs.moveToNext());
+			}
+		} catch (Exception e) {
+			Log.e("cr3", "exception while reading " + table, e);
+		}
+		if (keys.isEmpty())
+			return;
+		mDB.beginTransaction();
+		try (SQLiteStatement stmt = mDB.compileStatement("UPDATE " + table + " SET " + keyColumn + "=? WHERE id=?")) {
+			for (Map.Entry<Long, String> record : keys.entrySet()) {
+				stmt.clearBindings();
+				if (record.getValue() != null)
+					stmt.bindString(1, record.getValue());
+				else
+					stmt.bindNull(1);
+				stmt.bindLong(2, record.getKey());
+				stmt.execute();
+			}
+			mDB.setTransactionSuccessful();
+		} catch (Exception e) {
+			Log.e("cr3", "exception while updating " + table, e);
+		} finally {
+			mDB.endTransaction();
+		}
+	}
 	
 	/// add items range to parent dir
 	private static void addItems(FileInfo parent, ArrayList<FileInfo> items, int start, int end) {
@@ -725,92 +936,154 @@ public class MainDB extends BaseDB {
 		}
 	}
 	
-	private static abstract class ItemGroupExtractor {
-		public abstract String getComparisionField(FileInfo item);
-		public String getItemFirstLetters(FileInfo item, int level) {
-			String name = getComparisionField(item); //.filename;
-			int l = name == null ? 0 : Math.min(name.length(), level);
-			return l > 0 ? name.substring(0, l).toUpperCase() : "_";
+	/**
+	 * Catalog of items grouped by first letters of their collation keys.
+	 */
+	private abstract class ItemCatalog {
+		final String groupPrefixTag;
+		final String keyColumn;
+		// FROM clause with joins, and expression counting distinct items
+		final String fromSql;
+		final String countExpr;
+
+		ItemCatalog(String groupPrefixTag, String keyColumn, String fromSql, String countExpr) {
+			this.groupPrefixTag = groupPrefixTag;
+			this.keyColumn = keyColumn;
+			this.fromSql = fromSql;
+			this.countExpr = countExpr;
 		}
+
+		/**
+		 * Load items matching condition, ordered by collation key.
+		 */
+		abstract void loadItems(ArrayList<FileInfo> list, String condition);
 	}
 
-	private static class ItemGroupFilenameExtractor extends ItemGroupExtractor {
+	private final ItemCatalog authorCatalog = new ItemCatalog(FileInfo.AUTHOR_GROUP_PREFIX, "a.sort_key",
+			" FROM author a INNER JOIN author_book_count c ON c.author_fk = a.id AND c.book_count > 0", "COUNT(*)") {
 		@Override
-		public String getComparisionField(FileInfo item) {
-			return item.filename;
+		void loadItems(ArrayList<FileInfo> list, String condition) {
+			loadItemList(list, "SELECT a.id, a.name, c.book_count" + fromSql + " WHERE " + condition +
+					" ORDER BY a.sort_key", FileInfo.AUTHOR_PREFIX);
 		}
-	}
+	};
 
-	private static class ItemGroupTitleExtractor extends ItemGroupExtractor {
+	private final ItemCatalog seriesCatalog = new ItemCatalog(FileInfo.SERIES_GROUP_PREFIX, "s.sort_key",
+			" FROM series s INNER JOIN book b ON b.series_fk = s.id", "COUNT(DISTINCT s.id)") {
 		@Override
-		public String getComparisionField(FileInfo item) {
-			return item.title;
+		void loadItems(ArrayList<FileInfo> list, String condition) {
+			loadItemList(list, "SELECT s.id, s.name, count(*) as book_count" + fromSql + " WHERE " + condition +
+					" GROUP BY s.id ORDER BY s.sort_key", FileInfo.SERIES_PREFIX);
 		}
-	}
-	
-	private FileInfo createItemGroup(String groupPrefix, String groupPrefixTag) {
+	};
+
+	private final ItemCatalog titleCatalog = new ItemCatalog(FileInfo.TITLE_GROUP_PREFIX, "b.title_key",
+			" FROM book b", "COUNT(DISTINCT b.title)") {
+		@Override
+		void loadItems(ArrayList<FileInfo> list, String condition) {
+			findBooks(READ_FILEINFO_SQL + " WHERE " + condition + " ORDER BY b.title_key, b.title", list);
+			// remove duplicate titles
+			for (int i = list.size() - 1; i > 0; i--) {
+				String title = list.get(i).title;
+				if (title == null || title.equals(list.get(i - 1).title))
+					list.remove(i);
+			}
+		}
+	};
+
+	private FileInfo createItemGroup(String groupPrefix, String groupPrefixTag, int itemCount) {
 		FileInfo groupDir = new FileInfo();
 		groupDir.isDirectory = true;
 		groupDir.pathname = groupPrefixTag + groupPrefix;
 		groupDir.filename = groupPrefix + "...";
-		groupDir.isListed = true;
-		groupDir.isScanned = true;
+		// contents are loaded when group is opened
+		groupDir.isListed = false;
+		groupDir.isScanned = false;
 		groupDir.id = 0l;
+		groupDir.tag = itemCount;
 		return groupDir;
 	}
-	
-	private void sortItems(ArrayList<FileInfo> items, final ItemGroupExtractor extractor) {
-		Collections.sort(items, (lhs, rhs) -> {
-			String l = extractor.getComparisionField(lhs) != null ? extractor.getComparisionField(lhs).toUpperCase() : "";
-			String r = extractor.getComparisionField(rhs) != null ? extractor.getComparisionField(rhs).toUpperCase() : "";
-			return l.compareTo(r);
-		});
+
+	/**
+	 * SQL condition for keys starting with prefix, suitable for index range scan.
+	 */
+	private static String prefixCondition(String keyColumn, String prefix) {
+		if (prefix.length() == 0)
+			return keyColumn + " IS NOT NULL";
+		char last = prefix.charAt(prefix.length() - 1);
+		String upperBound = prefix.substring(0, prefix.length() - 1) + (char)(last + 1);
+		return keyColumn + ">=" + quoteSqlString(prefix) + " AND " + keyColumn + "<" + quoteSqlString(upperBound);
 	}
-	
-	private void addGroupedItems(FileInfo parent, ArrayList<FileInfo> items, int start, int end, String groupPrefixTag, int level, final ItemGroupExtractor extractor) {
-		int itemCount = end - start;
-		if (itemCount < 1)
-			return;
-		// for nested level (>1), create base subgroup, otherwise use parent 
-		if (level > 1 && itemCount > 1) {
-			String baseFirstLetter = extractor.getItemFirstLetters(items.get(start), level - 1);
-			FileInfo newGroup = createItemGroup(baseFirstLetter, groupPrefixTag);
-			newGroup.parent = parent;
-			parent.addDir(newGroup);
-			parent = newGroup;
-		}
-		
-		// check group count
-		int topLevelGroupsCount = 0;
-		String lastFirstLetter = "";
-		for (int i=start; i<end; i++) {
-			String firstLetter = extractor.getItemFirstLetters(items.get(i), level);
-			if (!firstLetter.equals(lastFirstLetter)) {
-				topLevelGroupsCount++;
-				lastFirstLetter = firstLetter;
+
+	/**
+	 * Read number of items for each distinct first letters of key.
+	 * @return total number of items
+	 */
+	private int loadLetterGroups(ItemCatalog catalog, String prefix, int level, ArrayList<String> letters, ArrayList<Integer> counts) {
+		String sql = "SELECT substr(" + catalog.keyColumn + ", 1, " + level + ") AS letters, " + catalog.countExpr + catalog.fromSql +
+				" WHERE " + prefixCondition(catalog.keyColumn, prefix) + " GROUP BY letters ORDER BY letters";
+		int total = 0;
+		try (Cursor rs = mDB.rawQuery(sql, null)) {
+			if (rs.moveToFirst()) {
+				do {
+					letters.add(rs.getString(0));
+					counts.add(rs.getInt(1));
+					total += rs.getInt(1);
+				} while (rs.moveToNext());
 			}
+		} catch (Exception e) {
+			Log.e("cr3", "exception while loading catalog groups", e);
 		}
-		if (itemCount <= topLevelGroupsCount * 11 / 10 || itemCount < 8) {
-			// small number of items: add as is
-			addItems(parent, items, start, end); 
-			return;
-		}
+		return total;
+	}
 
-		// divide items into groups
-		for (int i=start; i<end; ) {
-			String firstLetter = extractor.getItemFirstLetters(items.get(i), level);
-			int groupEnd = i + 1;
-			for (; groupEnd < end; groupEnd++) {
-				String firstLetter2 = groupEnd < end ? extractor.getItemFirstLetters(items.get(groupEnd), level) : "";
-				if (!firstLetter.equals(firstLetter2))
-					break;
+	/**
+	 * Fill catalog root or letter group with items, or with next level letter groups if there are too many items.
+	 * Only item counts are read for letter groups, their items are loaded when group is opened.
+	 * @param parent is catalog root or letter group
+	 * @param catalog is catalog to read
+	 * @return true if any item is found
+	 */
+	private boolean loadCatalogGroup(FileInfo parent, ItemCatalog catalog) {
+		String pathname = parent.getPathName();
+		String prefix = pathname != null && pathname.startsWith(catalog.groupPrefixTag) ? pathname.substring(catalog.groupPrefixTag.length()) : "";
+		ArrayList<FileInfo> list = new ArrayList<>();
+		for (;;) {
+			int level = prefix.length() + 1;
+			ArrayList<String> letters = new ArrayList<>();
+			ArrayList<Integer> counts = new ArrayList<>();
+			int itemCount = loadLetterGroups(catalog, prefix, level, letters, counts);
+			if (itemCount == 0)
+				break;
+			if (itemCount <= letters.size() * 11 / 10 || itemCount < 8) {
+				// small number of items: add as is
+				catalog.loadItems(list, prefixCondition(catalog.keyColumn, prefix));
+				break;
+			}
+			if (letters.size() == 1 && letters.get(0).length() == level) {
+				// all items have the same first letters: go deeper instead of adding single subgroup
+				prefix = letters.get(0);
+				continue;
 			}
-			// group is i..groupEnd
-			addGroupedItems(parent, items, i, groupEnd, groupPrefixTag, level + 1, extractor);
-			i = groupEnd;
+			for (int i = 0; i < letters.size(); i++) {
+				String groupLetters = letters.get(i);
+				if (groupLetters.length() < level) {
+					// key is shorter than group prefix: the whole key matches
+					catalog.loadItems(list, catalog.keyColumn + "=" + quoteSqlString(groupLetters));
+				} else if (counts.get(i) == 1) {
+					catalog.loadItems(list, prefixCondition(catalog.keyColumn, groupLetters));
+				} else {
+					list.add(createItemGroup(groupLetters, catalog.groupPrefixTag, counts.get(i)));
+				}
+			}
+			break;
 		}
+		addItems(parent, list, 0, list.size());
+		parent.isListed = true;
+		parent.isScanned = true;
+		return list.size() > 0;
 	}
-	
+
 	private boolean loadItemList(ArrayList<FileInfo> list, String sql, String groupPrefixTag) {
 		boolean found = false;
 		try (Cursor rs = mDB.rawQuery(sql, null)) {
@@ -839,7 +1112,6 @@ public class MainDB extends BaseDB {
 		} catch (Exception e) {
 			Log.e("cr3", "exception while loading list of authors", e);
 		}
-		sortItems(list, new ItemGroupFilenameExtractor());
 		return found;
 	}
 
@@ -848,7 +1120,7 @@ public class MainDB extends BaseDB {
 		beginReading();
 		parent.clear();
 		ArrayList<FileInfo> list = new ArrayList<FileInfo>();
-		String sql = "SELECT code, (SELECT COUNT(DISTINCT book_fk) FROM book_genre bg JOIN genre g ON g.id=bg.genre_fk JOIN genre_hier gh ON gh.genre_fk = g.id WHERE gh.group_fk=gg.id) as book_count FROM genre_group gg";
+		String sql = "SELECT code, IFNULL(c.book_count, 0) as book_count FROM genre_group gg LEFT JOIN genre_group_book_count c ON c.group_fk = gg.id";
 		try (Cursor rs = mDB.rawQuery(sql, null)) {
 			if (rs.moveToFirst()) {
 				// read DB
@@ -877,50 +1149,44 @@ public class MainDB extends BaseDB {
 	}
 
 
+	/**
+	 * Load authors catalog root or letter group.
+	 * @param parent is authors root or authors group directory
+	 * @return true if any item is found
+	 */
 	public boolean loadAuthorsList(FileInfo parent) {
 		Log.i("cr3", "loadAuthorsList()");
 		beginReading();
 		parent.clear();
-		ArrayList<FileInfo> list = new ArrayList<FileInfo>();
-		String sql = "SELECT author.id, author.name, count(*) as book_count FROM author INNER JOIN book_author ON  book_author.author_fk = author.id GROUP BY author.name, author.id ORDER BY author.name";
-		boolean found = loadItemList(list, sql, FileInfo.AUTHOR_PREFIX);
-		addGroupedItems(parent, list, 0, list.size(), FileInfo.AUTHOR_GROUP_PREFIX, 1, new ItemGroupFilenameExtractor());
+		boolean found = loadCatalogGroup(parent, authorCatalog);
 		endReading();
 		return found;
 	}
 
+	/**
+	 * Load series catalog root or letter group.
+	 * @param parent is series root or series group directory
+	 * @return true if any item is found
+	 */
 	public boolean loadSeriesList(FileInfo parent) {
 		Log.i("cr3", "loadSeriesList()");
 		beginReading();
 		parent.clear();
-		ArrayList<FileInfo> list = new ArrayList<FileInfo>();
-		String sql = "SELECT series.id, series.name, count(*) as book_count FROM series INNER JOIN book ON book.series_fk = series.id GROUP BY series.name, series.id ORDER BY series.name";
-		boolean found = loadItemList(list, sql, FileInfo.SERIES_PREFIX);
-		addGroupedItems(parent, list, 0, list.size(), FileInfo.SERIES_GROUP_PREFIX, 1, new ItemGroupFilenameExtractor());
+		boolean found = loadCatalogGroup(parent, seriesCatalog);
 		endReading();
 		return found;
 	}
 	
+	/**
+	 * Load titles catalog root or letter group.
+	 * @param parent is titles root or titles group directory
+	 * @return true if any item is found
+	 */
 	public boolean loadTitleList(FileInfo parent) {
 		Log.i("cr3", "loadTitleList()");
 		beginReading();
 		parent.clear();
-		ArrayList<FileInfo> list = new ArrayList<FileInfo>();
-		String sql = READ_FILEINFO_SQL + " WHERE b.title IS NOT NULL AND b.title != '' ORDER BY b.title";
-		boolean found = findBooks(sql, list);
-		sortItems(list, new ItemGroupTitleExtractor());
-		// remove duplicate titles
-		for (int i=list.size() - 1; i>0; i--) {
-			String title = list.get(i).title; 
-			if (title == null) {
-				list.remove(i);
-				continue;
-			}
-			String prevTitle = list.get(i - 1).title;
-			if (title.equals(prevTitle))
-				list.remove(i);
-		}
-		addGroupedItems(parent, list, 0, list.size(), FileInfo.TITLE_GROUP_PREFIX, 1, new ItemGroupTitleExtractor());
+		boolean found = loadCatalogGroup(parent, titleCatalog);
 		endReading();
 		return found;
 	}
@@ -1004,8 +1270,9 @@ public class MainDB extends BaseDB {
 			// not found
 		}
 		if (seriesStmt == null)
-			seriesStmt = mDB.compileStatement("INSERT INTO series (id, name) VALUES (NULL,?)");
+			seriesStmt = mDB.compileStatement("INSERT INTO series (id, name, sort_key) VALUES (NULL,?,?)");
 		seriesStmt.bindString(1, seriesName);
+		seriesStmt.bindString(2, sortKey(seriesName, false));
 		id = seriesStmt.executeInsert();
 		seriesCache.put( seriesName, id );
 		return id;
@@ -1040,6 +1307,51 @@ public class MainDB extends BaseDB {
 		folderCache.put( folderName, id );
 		return id;
 	}
+
+	/**
+	 * Load directory state saved after last successful scan.
+	 * @param folderName is directory path
+	 * @return snapshot, or null if directory has never been scanned completely
+	 */
+	public DirectorySnapshot loadFolderSnapshot(String folderName) {
+		if (!isOpened() || folderName == null)
+			return null;
+		try (Cursor rs = mDB.rawQuery("SELECT mtime, file_count, size_digest FROM folder WHERE name=? AND mtime IS NOT NULL", new String[] { folderName })) {
+			if (rs.moveToFirst())
+				return new DirectorySnapshot(rs.getLong(0), rs.getInt(1), rs.getLong(2));
+		} catch (Exception e) {
+			log.e("error while loading folder snapshot for " + folderName, e);
+		}
+		return null;
+	}
+
+	/**
+	 * Forget saved directory state, so directory is checked and scanned again by next scan.
+	 */
+	private void invalidateFolderSnapshot(String folderName) {
+		try (SQLiteStatement stmt = mDB.compileStatement("UPDATE folder SET mtime=NULL WHERE name=?")) {
+			stmt.bindString(1, folderName);
+			stmt.execute();
+		} catch (Exception e) {
+			log.e("error while invalidating folder snapshot for " + folderName, e);
+		}
+	}
+
+	public void saveFolderSnapshot(String folderName, DirectorySnapshot snapshot) {
+		if (!isOpened())
+			return;
+		beginChanges();
+		Long id = getFolderId(folderName);
+		if (id == null)
+			return;
+		try (SQLiteStatement stmt = mDB.compileStatement("UPDATE folder SET mtime=?, file_count=?, size_digest=? WHERE id=?")) {
+			stmt.bindLong(1, snapshot.modificationTime);
+			stmt.bindLong(2, snapshot.fileCount);
+			stmt.bindLong(3, snapshot.sizeDigest);
+			stmt.bindLong(4, id);
+			stmt.execute();
+		}
+	}
 	
 	//=======================================================================================
     // Author access code
@@ -1063,8 +1375,9 @@ public class MainDB extends BaseDB {
 			// not found
 		}
 		if ( authorStmt==null )
-			authorStmt = mDB.compileStatement("INSERT INTO author (id, name) VALUES (NULL,?)");
+			authorStmt = mDB.compileStatement("INSERT INTO author (id, name, sort_key) VALUES (NULL,?,?)");
 		authorStmt.bindString(1, authorName);
+		authorStmt.bindString(2, sortKey(authorName, true));
 		id = authorStmt.executeInsert();
 		authorCache.put( authorName, id );
 		return id;
@@ -1087,17 +1400,92 @@ public class MainDB extends BaseDB {
 		return null;
 	}
 	
+	private SQLiteStatement bookAuthorStmt;
 	public void saveBookAuthors( Long bookId, Long[] authors) {
 		if ( authors==null || authors.length==0 )
 			return;
-		String insertQuery = "INSERT OR IGNORE INTO book_author (book_fk,author_fk) VALUES ";
+		if ( bookAuthorStmt==null )
+			bookAuthorStmt = mDB.compileStatement("INSERT OR IGNORE INTO book_author (book_fk,author_fk) VALUES (?,?)");
 		for ( Long id : authors ) {
-			String sql = insertQuery + "(" + bookId + "," + id + ")"; 
-			//Log.v("cr3", "executing: " + sql);
-			mDB.execSQL(sql);
+			bookAuthorStmt.bindLong(1, bookId);
+			bookAuthorStmt.bindLong(2, id);
+			bookAuthorStmt.execute();
 		}
 	}
 
+	// max number of host parameters in single SQLite query is 999
+	private static final int MAX_QUERY_PARAMS = 500;
+
+	/**
+	 * Resolve ids of names not yet cached in one query per chunk of names.
+	 * Names not found in table are left for lazy insertion.
+	 * @param table is table with id and name columns (author, series, folder)
+	 * @param names is set of names to resolve
+	 * @param cache is name to id cache to fill
+	 */
+	private void prefetchIds(String table, Collection<String> names, HashMap<String,Long> cache) {
+		ArrayList<String> chunk = new ArrayList<>(MAX_QUERY_PARAMS);
+		Iterator<String> it = names.iterator();
+		while (it.hasNext()) {
+			String name = it.next();
+			if (name != null && name.trim().length() > 0 && !cache.containsKey(name))
+				chunk.add(name);
+			if (chunk.size() >= MAX_QUERY_PARAMS || (!it.hasNext() && chunk.size() > 0)) {
+				StringBuilder sql = new StringBuilder("SELECT id, name FROM ").append(table).append(" WHERE name IN (");
+				for (int i = 0; i < chunk.size(); i++)
+					sql.append(i > 0 ? ",?" : "?");
+				sql.append(")");
+				try (Cursor rs = mDB.rawQuery(sql.toString(), chunk.toArray(new String[0]))) {
+					if (rs.moveToFirst()) {
+						do {
+							cache.put(rs.getString(1), rs.getLong(0));
+						} while (rs.moveToNext());
+					}
+				}
+				chunk.clear();
+			}
+		}
+	}
+
+	/**
+	 * Read existing book records for the given pathnames into fileInfoCache, one query per chunk.
+	 * @param pathNames is pathnames to look up
+	 * @return map of found records by pathname
+	 */
+	private HashMap<String, FileInfo> prefetchFileInfos(Collection<String> pathNames) {
+		HashMap<String, FileInfo> found = new HashMap<>();
+		ArrayList<String> chunk = new ArrayList<>(MAX_QUERY_PARAMS);
+		Iterator<String> it = pathNames.iterator();
+		while (it.hasNext()) {
+			String path = it.next();
+			if (path != null) {
+				FileInfo cached = fileInfoCache.get(path);
+				if (cached != null)
+					found.put(path, cached);
+				else
+					chunk.add(path);
+			}
+			if (chunk.size() >= MAX_QUERY_PARAMS || (!it.hasNext() && chunk.size() > 0)) {
+				StringBuilder sql = new StringBuilder(READ_FILEINFO_SQL).append(" WHERE pathname IN (");
+				for (int i = 0; i < chunk.size(); i++)
+					sql.append(i > 0 ? ",?" : "?");
+				sql.append(")");
+				try (Cursor rs = mDB.rawQuery(sql.toString(), chunk.toArray(new String[0]))) {
+					if (rs.moveToFirst()) {
+						do {
+							FileInfo fileInfo = new FileInfo();
+							readFileInfoFromCursor(fileInfo, rs);
+							fileInfoCache.put(fileInfo);
+							found.put(fileInfo.getPathName(), fileInfo);
+						} while (rs.moveToNext());
+					}
+				}
+				chunk.clear();
+			}
+		}
+		return found;
+	}
+
 	private Integer[] getGenresIds( String keywords ) {
 		if ( keywords==null || keywords.trim().length()==0 )
 			return null;
@@ -1118,14 +1506,16 @@ public class MainDB extends BaseDB {
 		return null;
 	}
 
+	private SQLiteStatement bookGenreStmt;
 	public void saveBookGenres( Long bookId, Integer[] genres) {
 		if ( genres==null || genres.length==0 )
 			return;
-		String insertQuery = "INSERT OR IGNORE INTO book_genre (book_fk,genre_fk) VALUES ";
+		if ( bookGenreStmt==null )
+			bookGenreStmt = mDB.compileStatement("INSERT OR IGNORE INTO book_genre (book_fk,genre_fk) VALUES (?,?)");
 		for ( Integer id : genres ) {
-			String sql = insertQuery + "(" + bookId + "," + id + ")";
-			//Log.v("cr3", "executing: " + sql);
-			mDB.execSQL(sql);
+			bookGenreStmt.bindLong(1, bookId);
+			bookGenreStmt.bindLong(2, id);
+			bookGenreStmt.execute();
 		}
 	}
 
@@ -1298,10 +1688,16 @@ public class MainDB extends BaseDB {
 		if (bookInfo == null || bookInfo.getFileInfo() == null)
 			return;
 		
+		// book row and bookmarks are saved in the same transaction
+		beginChanges();
+
 		// save main data
 		save(bookInfo.getFileInfo());
 		fileInfoCache.put(bookInfo.getFileInfo());
-		
+
+		if (bookInfo.isBookmarkChangesTracked() && saveBookmarkChanges(bookInfo))
+			return;
+
 		// save bookmarks
 		HashMap<String, Bookmark> existingBookmarks = loadBookmarks(bookInfo.getFileInfo());
 		int changed = 0;
@@ -1322,8 +1718,9 @@ public class MainDB extends BaseDB {
 			 	 added++;
 			 }
 		}
-		if (existingBookmarks.size() > 0) {
+		if (existingBookmarks.size() > 0 && bookInfo.isBookmarksLoaded()) {
 			// remove bookmarks not found in new object
+			// (if only last position is loaded, other bookmarks are kept)
 			for (Bookmark bmk : existingBookmarks.values()) {
 				deleteBookmark(bmk);
 				removed++;
@@ -1333,13 +1730,61 @@ public class MainDB extends BaseDB {
 			vlog.i("bookmarks added:" + added + ", updated: " + changed + ", removed:" + removed);
 	}
 
+	/**
+	 * Save only bookmarks changed since last save, without reading all bookmarks of book.
+	 * @param bookInfo is book with tracked bookmark changes
+	 * @return false if changes cannot be applied without full comparison
+	 */
+	private boolean saveBookmarkChanges(BookInfo bookInfo) {
+		Long bookId = bookInfo.getFileInfo().id;
+		if (bookId == null)
+			return false;
+		ArrayList<Bookmark> removedBookmarks = bookInfo.getRemovedBookmarks();
+		for (Bookmark bmk : removedBookmarks) {
+			if (bmk.getId() == null)
+				return false; // DB record is not known
+		}
+		int changed = 0;
+		for (Bookmark bmk : removedBookmarks)
+			deleteBookmark(bmk);
+		for (Bookmark bmk : bookInfo.getChangedBookmarks()) {
+			if (bmk.getId() == null) {
+				// look for existing record with the same key among bookmarks of the same type only
+				ArrayList<Bookmark> sameType = new ArrayList<>();
+				load(sameType, "book_fk=" + bookId + " AND type=" + bmk.getType());
+				for (Bookmark existing : sameType) {
+					if (existing.getUniqueKey().equals(bmk.getUniqueKey())) {
+						bmk.setId(existing.getId());
+						break;
+					}
+				}
+			}
+			save(bmk, bookId);
+			changed++;
+		}
+		if (changed + removedBookmarks.size() > 0)
+			vlog.i("bookmarks saved:" + changed + ", removed:" + removedBookmarks.size());
+		return true;
+	}
+
 	private boolean save(FileInfo fileInfo)	{
-		boolean authorsChanged = true;
-		boolean genresChanged = true;
+		FileInfo oldValue;
 		try {
-			FileInfo oldValue = findFileInfoByPathname(fileInfo.getPathName(), false);
+			oldValue = findFileInfoByPathname(fileInfo.getPathName(), false);
 			if (oldValue == null && fileInfo.id != null)
 				oldValue = findFileInfoById(fileInfo.id);
+		} catch (SQLiteException e) {
+			log.e("error while reading from DB", e);
+			return false;
+		}
+		return save(fileInfo, oldValue);
+	}
+
+	private boolean save(FileInfo fileInfo, FileInfo oldValue) {
+		boolean authorsChanged = true;
+		boolean genresChanged = true;
+		boolean searchFieldsChanged = true;
+		try {
 			if (oldValue != null && fileInfo.id == null && oldValue.id != null)
 				fileInfo.id = oldValue.id;
 			if (oldValue != null) {
@@ -1352,6 +1797,9 @@ public class MainDB extends BaseDB {
 				}
 				authorsChanged = !eq(fileInfo.authors, oldValue.authors);
 				genresChanged = !eq(fileInfo.genres, oldValue.genres);
+				searchFieldsChanged = authorsChanged || !eq(fileInfo.title, oldValue.title)
+						|| !eq(fileInfo.series, oldValue.series) || !eq(fileInfo.filename, oldValue.filename)
+						|| !eq(fileInfo.description, oldValue.description);
 			} else {
 				// inserting
 				vlog.d("inserting new file " + fileInfo.getPathName());
@@ -1376,6 +1824,10 @@ public class MainDB extends BaseDB {
 					Integer[] genresIds = getGenresIds(fileInfo.genres);
 					saveBookGenres(fileInfo.id, genresIds);
 				}
+				if (searchFieldsChanged) {
+					beginChanges();
+					updateFtsIndex(fileInfo.id, fileInfo.title, fileInfo.authors, fileInfo.series, fileInfo.filename, fileInfo.description);
+				}
 				return true;
 			}
 			return false;
@@ -1392,9 +1844,41 @@ public class MainDB extends BaseDB {
 			Log.e("cr3db", "cannot save book info : DB is closed");
 			return;
 		}
-		for (FileInfo fileInfo : list) {
-			save(fileInfo);
+		if (list.size() == 1) {
+			save(list.iterator().next());
+			return;
+		}
+		long ts = Utils.timeStamp();
+		try {
+			beginChanges();
+			// resolve existing records, authors, series and folders using few queries instead of per-item lookups
+			ArrayList<String> pathNames = new ArrayList<>(list.size());
+			HashSet<String> authors = new HashSet<>();
+			HashSet<String> series = new HashSet<>();
+			HashSet<String> folders = new HashSet<>();
+			for (FileInfo fileInfo : list) {
+				pathNames.add(fileInfo.getPathName());
+				if (fileInfo.authors != null)
+					Collections.addAll(authors, fileInfo.authors.split("\\|"));
+				series.add(fileInfo.series);
+				folders.add(fileInfo.path);
+			}
+			HashMap<String, FileInfo> existing = prefetchFileInfos(pathNames);
+			prefetchIds("author", authors, authorCache);
+			prefetchIds("series", series, seriesCache);
+			prefetchIds("folder", folders, folderCache);
+			for (FileInfo fileInfo : list) {
+				FileInfo oldValue = existing.get(fileInfo.getPathName());
+				if (oldValue == null && fileInfo.id != null)
+					oldValue = findFileInfoById(fileInfo.id);
+				save(fileInfo, oldValue);
+			}
+		} catch (SQLiteException e) {
+			log.e("error while saving file infos", e);
 		}
+		// commit whole batch at once
+		flush();
+		vlog.i("saveFileInfos: " + list.size() + " items saved in " + Utils.timeInterval(ts) + " ms");
 	}
 	
 	/**
@@ -1403,6 +1887,17 @@ public class MainDB extends BaseDB {
 	 * @return list of loaded books
 	 */
 	public ArrayList<BookInfo> loadRecentBooks(int maxCount)
+	{
+		return loadRecentBooks(maxCount, false);
+	}
+
+	/**
+	 * Load recent books list, with bookmarks
+	 * @param maxCount is max number of recent books to get
+	 * @param lastPositionOnly if true, only last positions are loaded, other bookmarks are deferred
+	 * @return list of loaded books
+	 */
+	public ArrayList<BookInfo> loadRecentBooks(int maxCount, boolean lastPositionOnly)
 	{
 		ArrayList<FileInfo> list = new ArrayList<FileInfo>();
 		if (!isOpened())
@@ -1416,10 +1911,9 @@ public class MainDB extends BaseDB {
 				file = f;
 				fileInfoCache.put(file);
 			}
-			BookInfo item = new BookInfo(new FileInfo(file));
-			loadBookmarks(item);
-			res.add(item);
+			res.add(new BookInfo(new FileInfo(file)));
 		}
+		loadBookmarks(res, lastPositionOnly);
 		endReading();
 		return res;
 	}
@@ -1451,6 +1945,9 @@ public class MainDB extends BaseDB {
     // File info access code
     //=======================================================================================
 	
+	// compiled insert statements, reused until flush()
+	private final HashMap<String, SQLiteStatement> insertStmtCache = new HashMap<>();
+
 	public class QueryHelper {
 		String tableName;
 		QueryHelper(String tableName)
@@ -1515,23 +2012,28 @@ public class MainDB extends BaseDB {
 				String sql = buf.toString();
 				Log.d("cr3db", "going to execute " + sql);
 				long id;
-				try (SQLiteStatement stmt = mDB.compileStatement(sql)) {
-					for (int i = 1; i <= values.size(); i++) {
-						Object v = values.get(i - 1);
-						valueBuf.append(v != null ? v.toString() : "null");
-						valueBuf.append(",");
-						if (v == null)
-							stmt.bindNull(i);
-						else if (v instanceof String)
-							stmt.bindString(i, (String) v);
-						else if (v instanceof Long)
-							stmt.bindLong(i, (Long) v);
-						else if (v instanceof Double)
-							stmt.bindDouble(i, (Double) v);
-					}
-					id = stmt.executeInsert();
-					Log.d("cr3db", "added book, id=" + id + ", query=" + sql);
+				SQLiteStatement stmt = insertStmtCache.get(sql);
+				if (stmt == null) {
+					stmt = mDB.compileStatement(sql);
+					insertStmtCache.put(sql, stmt);
+				} else {
+					stmt.clearBindings();
+				}
+				for (int i = 1; i <= values.size(); i++) {
+					Object v = values.get(i - 1);
+					valueBuf.append(v != null ? v.toString() : "null");
+					valueBuf.append(",");
+					if (v == null)
+						stmt.bindNull(i);
+					else if (v instanceof String)
+						stmt.bindString(i, (String) v);
+					else if (v instanceof Long)
+						stmt.bindLong(i, (Long) v);
+					else if (v instanceof Double)
+						stmt.bindDouble(i, (Double) v);
 				}
+				id = stmt.executeInsert();
+				Log.d("cr3db", "added book, id=" + id + ", query=" + sql);
 				return id;
 			} catch ( Exception e ) {
 				Log.e("cr3db", "insert failed: " + e.getMessage());
@@ -1574,6 +2076,7 @@ public class MainDB extends BaseDB {
 			add("filename", newValue.filename, oldValue.filename);
 			add("arcname", newValue.arcname, oldValue.arcname);
 			add("title", newValue.title, oldValue.title);
+			add("title_key", sortKey(newValue.title, false), sortKey(oldValue.title, false));
 			add("series_fk", getSeriesId(newValue.series), getSeriesId(oldValue.series));
 			add("series_number", (long)newValue.seriesNumber, (long)oldValue.seriesNumber);
 			add("format", fromFormat(newValue.format), fromFormat(oldValue.format));
@@ -1662,7 +2165,9 @@ public class MainDB extends BaseDB {
 					readFileInfoFromCursor(fileInfo, rs);
 					if (!fileInfo.fileExists())
 						continue;
-					fileInfoCache.put(fileInfo);
+					// reader threads may see not yet committed state: don't let it into cache
+					if (isOwnerThread())
+						fileInfoCache.put(fileInfo);
 					list.add(new FileInfo(fileInfo));
 					found = true;
 				} while (rs.moveToNext());
@@ -1694,7 +2199,195 @@ public class MainDB extends BaseDB {
 		return buf.toString();
 	}
 	
+	//=======================================================================================
+	// Full text search index code
+	//=======================================================================================
+
+	private boolean ftsAvailable = false;
+	private SQLiteStatement ftsInsertStmt;
+	private SQLiteStatement ftsDeleteStmt;
+
+	private boolean isFtsTableExists() {
+		Long count = longQuery("SELECT count(*) FROM sqlite_master WHERE type='table' AND name='book_fts'");
+		return count != null && count > 0;
+	}
+
+	/**
+	 * Update search index record for book.
+	 * Indexed text is case-folded the same way as Utils.matchPattern() does, to allow prefix matching by FTS.
+	 */
+	private void updateFtsIndex(long bookId, String title, String authors, String series, String filename, String description) {
+		if (!ftsAvailable)
+			return;
+		if (ftsDeleteStmt == null)
+			ftsDeleteStmt = mDB.compileStatement("DELETE FROM book_fts WHERE docid=?");
+		if (ftsInsertStmt == null)
+			ftsInsertStmt = mDB.compileStatement("INSERT INTO book_fts (docid, title, authors, series, filename, description) VALUES (?,?,?,?,?,?)");
+		ftsDeleteStmt.bindLong(1, bookId);
+		ftsDeleteStmt.execute();
+		ftsInsertStmt.clearBindings();
+		ftsInsertStmt.bindLong(1, bookId);
+		String[] values = { title, authors, series, filename, description };
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null)
+				ftsInsertStmt.bindString(i + 2, Utils.convertCaseForSearch(values[i]));
+		}
+		ftsInsertStmt.execute();
+	}
+
+	private void rebuildFtsIndex() {
+		log.i("Building full text search index...");
+		long ts = Utils.timeStamp();
+		int count = 0;
+		String sql = "SELECT b.id, b.title, " +
+				"(SELECT GROUP_CONCAT(a.name,'|') FROM author a JOIN book_author ba ON a.id=ba.author_fk WHERE ba.book_fk=b.id) as authors, " +
+				"s.name, b.filename, b.description FROM book b LEFT JOIN series s ON s.id=b.series_fk";
+		mDB.beginTransaction();
+		try (Cursor rs = mDB.rawQuery(sql, null)) {
+			ftsAvailable = true;
+			execSQL("DELETE FROM book_fts");
+			if (rs.moveToFirst()) {
+				do {
+					updateFtsIndex(rs.getLong(0), rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5));
+					count++;
+				} while (rs.moveToNext());
+			}
+			mDB.setTransactionSuccessful();
+		} catch (Exception e) {
+			log.e("exception while building full text search index", e);
+		} finally {
+			mDB.endTransaction();
+			if (ftsDeleteStmt != null) {
+				ftsDeleteStmt.close();
+				ftsDeleteStmt = null;
+			}
+			if (ftsInsertStmt != null) {
+				ftsInsertStmt.close();
+				ftsInsertStmt = null;
+			}
+		}
+		log.i("Full text search index is built for " + count + " books in " + Utils.timeInterval(ts) + " ms");
+	}
+
+	/**
+	 * Make FTS query term which matches at least the same text as Utils.matchPattern(text, pattern) does:
+	 * phrase of words, the last word is treated as prefix.
+	 * FTS3 simple tokenizer splits text by any ASCII character except letters and digits,
+	 * while matchPattern() matches pattern from beginning of space delimited word only,
+	 * so phrase may select more books (e.g. "paul" for "Jean-Paul"), they are filtered out by matchPattern().
+	 * @return term, or null if pattern has no characters indexed by tokenizer, so it cannot be searched using FTS
+	 */
+	private static String ftsPhrase(String column, String pattern) {
+		String words = Utils.convertCaseForSearch(pattern).replace('"', ' ').trim();
+		boolean hasToken = false;
+		for (int i = 0; i < words.length() && !hasToken; i++) {
+			char ch = words.charAt(i);
+			hasToken = ch >= 0x80 || Character.isLetterOrDigit(ch);
+		}
+		if (!hasToken)
+			return null;
+		return column + ":\"" + words + "*\"";
+	}
+
+	private static boolean matchAnyAuthor(String bookAuthors, String[] patterns) {
+		if (bookAuthors == null)
+			return false;
+		for (String name : bookAuthors.split("\\|")) {
+			for (String pattern : patterns) {
+				if (Utils.matchPattern(name, pattern))
+					return true;
+			}
+		}
+		return false;
+	}
+
 	public ArrayList<FileInfo> findByPatterns(int maxCount, String authors, String title, String series, String filename)
+	{
+		if (!ftsAvailable)
+			return findByPatternsNoIndex(maxCount, authors, title, series, filename);
+		ArrayList<FileInfo> list = new ArrayList<>();
+		// FTS query selects candidates, exact matching is checked using Utils.matchPattern()
+		// pattern without indexed characters (e.g. punctuation only) is checked by full scan
+		StringBuilder query = new StringBuilder();
+		String[] authorsArray = null;
+		if (authors != null && authors.length() > 0) {
+			// When synchronizing from the cloud, the 'authors' variable can contain multiple authors separated by '|'.
+			// See MainDB.READ_FILEINFO_FIELDS
+			authorsArray = authors.split("\\|");
+			StringBuilder authorsQuery = new StringBuilder();
+			for (String author : authorsArray) {
+				if (author.length() == 0)
+					continue;
+				String term = ftsPhrase("authors", author);
+				if (term == null)
+					return findByPatternsNoIndex(maxCount, authors, title, series, filename);
+				if (authorsQuery.length() > 0)
+					authorsQuery.append(" OR ");
+				authorsQuery.append(term);
+			}
+			if (authorsQuery.length() > 0)
+				query.append(authorsQuery);
+			else
+				authorsArray = null;
+		}
+		String[] patterns = { series, title, filename };
+		String[] columns = { "series", "title", "filename" };
+		for (int i = 0; i < patterns.length; i++) {
+			if (patterns[i] == null || patterns[i].length() == 0)
+				continue;
+			String term = ftsPhrase(columns[i], patterns[i]);
+			if (term == null)
+				return findByPatternsNoIndex(maxCount, authors, title, series, filename);
+			if (query.length() > 0)
+				query.append(" ");
+			query.append(term);
+		}
+		if (query.length() == 0)
+			return list;
+		beginReading();
+		// books with title starting with pattern go first
+		String titlePrefix = title != null ? Utils.convertCaseForSearch(title.trim()) : "";
+		String sql = READ_FILEINFO_SQL + " JOIN book_fts ON book_fts.docid=b.id WHERE book_fts MATCH ? " +
+				"ORDER BY (book_fts.title LIKE ? ESCAPE '\\') DESC, b.last_access_time DESC, b.title, b.id " +
+				"LIMIT ? OFFSET ?";
+		String likePattern = titlePrefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+		Log.d("cr3", "sql: " + sql + ", match: " + query);
+		// candidates rejected by matchPattern() don't count, so read next pages until enough books are found
+		int pageSize = maxCount * 2;
+		int offset = 0;
+		boolean hasMore = true;
+		while (hasMore && list.size() < maxCount) {
+			int rows = 0;
+			try (Cursor rs = mDB.rawQuery(sql, new String[] { query.toString(), likePattern, String.valueOf(pageSize), String.valueOf(offset) })) {
+				if (rs.moveToFirst()) {
+					do {
+						rows++;
+						FileInfo fi = new FileInfo();
+						readFileInfoFromCursor(fi, rs);
+						if (authorsArray != null && !matchAnyAuthor(fi.authors, authorsArray))
+							continue;
+						if (series != null && series.length() > 0 && !Utils.matchPattern(fi.series, series))
+							continue;
+						if (title != null && title.length() > 0 && !Utils.matchPattern(fi.title, title))
+							continue;
+						if (filename != null && filename.length() > 0 && !Utils.matchPattern(fi.filename, filename))
+							continue;
+						list.add(fi);
+						fileInfoCache.put(fi);
+					} while (list.size() < maxCount && rs.moveToNext());
+				}
+			} catch (SQLiteException e) {
+				log.e("exception while searching books", e);
+				break;
+			}
+			hasMore = rows == pageSize;
+			offset += rows;
+		}
+		endReading();
+		return list;
+	}
+
+	private ArrayList<FileInfo> findByPatternsNoIndex(int maxCount, String authors, String title, String series, String filename)
 	{
 		beginReading();
 		ArrayList<FileInfo> list = new ArrayList<>();
@@ -1854,7 +2547,8 @@ public class MainDB extends BaseDB {
 						FileInfo fi = new FileInfo();
 						readFileInfoFromCursor(fi, rs);
 						list.add(fi);
-						fileInfoCache.put(fi);
+						if (isOwnerThread())
+							fileInfoCache.put(fi);
 					} while (rs.moveToNext());
 				}
 			}
@@ -1863,56 +2557,109 @@ public class MainDB extends BaseDB {
 		return list;
 	}
 
+	/**
+	 * Find books by content fingerprints, one indexed query per chunk of fingerprints.
+	 * @param maxCount is max number of books to return
+	 * @param fingerprints is decimal crc32 values, as used by sync data
+	 * @return found books
+	 */
 	public ArrayList<FileInfo> findByFingerprints(int maxCount, Collection<String> fingerprints)
 	{
-		// TODO: replace crc32 with sha512
-
 		ArrayList<FileInfo> list = new ArrayList<>();
 		if (fingerprints.size() < 1)
 			return list;
-
-		beginReading();
-		StringBuilder condition = new StringBuilder(" WHERE ");
-		Iterator<String> it = fingerprints.iterator();
-		while (it.hasNext()) {
-			condition.append("b.crc32=").append(it.next());
-			if (it.hasNext())
-				condition.append(" OR ");
-		}
-		String sql = READ_FILEINFO_SQL + condition.toString();
-		Log.d("cr3", "sql: " + sql );
-		try (Cursor rs = mDB.rawQuery(sql, null)) {
-			if (rs.moveToFirst()) {
-				int count = 0;
-				do {
-					FileInfo fi = new FileInfo();
-					readFileInfoFromCursor(fi, rs);
-					list.add(fi);
-					fileInfoCache.put(fi);
-					count++;
-				} while (count < maxCount && rs.moveToNext());
+		ArrayList<String> crcs = new ArrayList<>();
+		for (String fp : fingerprints) {
+			if (fp == null)
+				continue;
+			try {
+				crcs.add(Long.toString(Long.parseLong(fp)));
+			} catch (NumberFormatException e) {
+				Log.w("cr3", "Unknown fingerprint format: " + fp);
 			}
 		}
+		beginReading();
+		findByColumnValues("b.crc32", crcs, maxCount, list);
 		endReading();
 		return list;
 	}
 
-	public ArrayList<FileInfo> loadFileInfos(ArrayList<String> pathNames, final Scanner.ScanControl control, final Engine.ProgressControl progress) {
+	private void findByColumnValues(String column, ArrayList<String> values, int maxCount, ArrayList<FileInfo> list) {
+		HashSet<Long> found = new HashSet<>();
+		for (FileInfo fi : list)
+			found.add(fi.id);
+		for (int start = 0; start < values.size() && list.size() < maxCount; start += MAX_QUERY_PARAMS) {
+			List<String> chunk = values.subList(start, Math.min(values.size(), start + MAX_QUERY_PARAMS));
+			StringBuilder sql = new StringBuilder(READ_FILEINFO_SQL).append(" WHERE ").append(column).append(" IN (");
+			for (int i = 0; i < chunk.size(); i++)
+				sql.append(i > 0 ? ",?" : "?");
+			sql.append(") LIMIT ").append(maxCount - list.size());
+			try (Cursor rs = mDB.rawQuery(sql.toString(), chunk.toArray(new String[0]))) {
+				if (rs.moveToFirst()) {
+					do {
+						FileInfo fi = new FileInfo();
+						readFileInfoFromCursor(fi, rs);
+						if (!found.add(fi.id))
+							continue;
+						list.add(fi);
+						fileInfoCache.put(fi);
+					} while (list.size() < maxCount && rs.moveToNext());
+				}
+			}
+		}
+	}
+
+	private static final int LOAD_FILE_INFOS_BATCH_SIZE = 100;
+
+	/**
+	 * Load records of files, a batch of pathnames per query.
+	 * @param detectMoved is true to look for records of moved files for files not found by pathname
+	 */
+	public ArrayList<FileInfo> loadFileInfos(ArrayList<String> pathNames, boolean detectMoved, final Scanner.ScanControl control, final Engine.ProgressControl progress) {
 		ArrayList<FileInfo> list = new ArrayList<>();
 		if (!isOpened())
 			return list;
 		try {
 			beginReading();
 			int count = pathNames.size();
-			int i = 0;
+			ArrayList<String> notCached = new ArrayList<>();
 			for (String path : pathNames) {
-				FileInfo file = findFileInfoByPathname(path, true);
-				if (control.isStopped())
-					break;
-				progress.setProgress(i * 10000 / (2*count));
-				if (file != null)
-					list.add(new FileInfo(file));
-				i++;
+				FileInfo cached = fileInfoCache.get(path);
+				if (cached != null)
+					list.add(new FileInfo(cached));
+				else
+					notCached.add(path);
+			}
+			HashSet<String> found = new HashSet<>();
+			for (int start = 0; start < notCached.size() && !control.isStopped(); start += LOAD_FILE_INFOS_BATCH_SIZE) {
+				List<String> batch = notCached.subList(start, Math.min(start + LOAD_FILE_INFOS_BATCH_SIZE, notCached.size()));
+				StringBuilder sql = new StringBuilder(READ_FILEINFO_SQL).append(" WHERE b.pathname IN (");
+				for (int i = 0; i < batch.size(); i++)
+					sql.append(i > 0 ? ",?" : "?");
+				sql.append(")");
+				try (Cursor rs = mDB.rawQuery(sql.toString(), batch.toArray(new String[0]))) {
+					if (rs.moveToFirst()) {
+						do {
+							FileInfo file = new FileInfo();
+							readFileInfoFromCursor(file, rs);
+							fileInfoCache.put(file);
+							found.add(file.getPathName());
+							list.add(new FileInfo(file));
+						} while (rs.moveToNext());
+					}
+				}
+				progress.setProgress((count - notCached.size() + start + batch.size()) * 10000 / (2*count));
+			}
+			if (detectMoved) {
+				for (String path : notCached) {
+					if (control.isStopped())
+						break;
+					if (found.contains(path))
+						continue;
+					FileInfo file = findMovedFileInfo(path);
+					if (file != null)
+						list.add(new FileInfo(file));
+				}
 			}
 			endReading();
 		} catch (Exception e) {
@@ -2017,9 +2764,16 @@ public class MainDB extends BaseDB {
 		fileInfoCache.remove(fileInfo);
 		if (bookId == null)
 			return null;
+		// book file may still exist, so directory must be checked again on next scan
+		String[] parts = FileInfo.splitArcName(fileInfo.getPathName());
+		String folderName = new File(parts[1] != null ? parts[1] : parts[0]).getParent();
+		if (folderName != null)
+			invalidateFolderSnapshot(folderName);
 		execSQLIgnoreErrors("DELETE FROM bookmark WHERE book_fk=" + bookId);
 		execSQLIgnoreErrors("DELETE FROM book_author WHERE book_fk=" + bookId);
 		execSQLIgnoreErrors("DELETE FROM book_genre WHERE book_fk=" + bookId);
+		if (ftsAvailable)
+			execSQLIgnoreErrors("DELETE FROM book_fts WHERE docid=" + bookId);
 		execSQLIgnoreErrors("DELETE FROM book WHERE id=" + bookId);
 		return bookId;
 	}
@@ -26,6 +26,7 @@ public final class FileMetadata implements Cloneable {
 
 	public static final String CUSTOM_PROP_FINGERPRINT = "cr3.fingerprint";
 	public static final String CUSTOM_PROP_SOURCE_SIZE = "cr3.filesize";
+	public static final String CUSTOM_PROP_HASH = "cr3.hash";
 
 	public String id;
 	public String fileName;
@@ -70,6 +71,15 @@ public final class FileMetadata implements Cloneable {
 		appProperties.put(CUSTOM_PROP_FINGERPRINT, fingerprint);
 	}
 
+	/**
+	 * @return SHA-256 of uncompressed record content, or null if not set
+	 */
+	public String getCustomPropHash() {
+		if (null != appProperties)
+			return appProperties.get(CUSTOM_PROP_HASH);
+		return null;
+	}
+
 	public int getCustomPropSourceSize() {
 		int size = -1;
 		if (null != appProperties) {
@@ -106,6 +106,17 @@ public interface RemoteAccess {
 	 */
 	void writeFile(String filePath, byte[] data, Map<String, String> customProps, OnOperationCompleteListener<Boolean> completeListener);
 
+	/**
+	 * Write data to file on remote service from stream, without loading all data in memory.
+	 * Large data is uploaded in chunks, interrupted chunk is resent.
+	 *
+	 * @param filePath         full file path to file.
+	 * @param stream           Data to write, will be closed after upload.
+	 * @param length           Data length, or -1 if unknown.
+	 * @param completeListener
+	 */
+	void writeFile(String filePath, InputStream stream, long length, Map<String, String> customProps, OnOperationCompleteListener<Boolean> completeListener);
+
 	/**
 	 * Move file or directory to trash.
 	 *
@@ -0,0 +1,77 @@
+package org.coolreader.sync2;
+
+import org.coolreader.crengine.L;
+import org.coolreader.crengine.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * Content hashes of sync records (settings, bookmarks bundles, current book info)
+ * as they were last uploaded to or downloaded from remote service by this device.
+ *
+ * Remote files carry hash of their content in FileMetadata.CUSTOM_PROP_HASH property,
+ * so listing of remote folder is diffed with this manifest locally,
+ * and only records changed on either side are transferred.
+ */
+public class SyncManifest {
+
+	public static final Logger log = L.create("sync2");
+
+	private final File m_file;
+	private final Properties m_hashes = new Properties();
+	private boolean m_changed;
+
+	public SyncManifest(File file) {
+		m_file = file;
+		if (file.exists()) {
+			try (InputStream is = new FileInputStream(file)) {
+				m_hashes.load(is);
+			} catch (Exception e) {
+				log.e("Cannot read sync manifest: " + e.toString());
+				m_hashes.clear();
+			}
+		}
+	}
+
+	/**
+	 * @param recordName is remote file name
+	 * @return hash of record last transferred, or null if record is not transferred yet
+	 */
+	public synchronized String get(String recordName) {
+		return m_hashes.getProperty(recordName);
+	}
+
+	public synchronized void put(String recordName, String hash) {
+		if (null == hash)
+			return;
+		Object old = m_hashes.setProperty(recordName, hash);
+		if (!hash.equals(old))
+			m_changed = true;
+	}
+
+	public synchronized void clear() {
+		if (!m_hashes.isEmpty()) {
+			m_hashes.clear();
+			m_changed = true;
+		}
+	}
+
+	/**
+	 * Write manifest to file, if changed.
+	 */
+	public synchronized void save() {
+		if (!m_changed)
+			return;
+		try (OutputStream os = new FileOutputStream(m_file)) {
+			m_hashes.store(os, "CoolReader sync manifest");
+			m_changed = false;
+		} catch (Exception e) {
+			log.e("Cannot write sync manifest: " + e.toString());
+		}
+	}
+}
@@ -42,6 +42,7 @@ import org.xml.sax.InputSource;
 import org.xml.sax.XMLReader;
 import org.xmlpull.v1.XmlSerializer;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -51,12 +52,15 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
-import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
 @TargetApi(Build.VERSION_CODES.GINGERBREAD)
@@ -135,6 +139,9 @@ public class Synchronizer {
 	private int m_dataKeepAlive = 14;
 	private int m_flags = 0;
 	private int m_lockTryCount = 0;
+	private SyncManifest m_manifest;
+	// hashes of remote records by file name, read in single listing at start of sync
+	private HashMap<String, String> m_remoteHashes;
 
 	private static final String[] ALLOWED_OPTIONS_PROP_NAMES = {
 			Settings.PROP_FALLBACK_FONT_FACES,
@@ -178,9 +185,12 @@ public class Synchronizer {
 	private static final String REMOTE_FOLDER_PATH = "/.cr3";
 	private static final String REMOTE_SETTINGS_FILE_PATH = REMOTE_FOLDER_PATH + "/cr3.ini.gz";
 	private static final String LOCK_FILE_PATH = REMOTE_FOLDER_PATH + "/.lock";
+	private static final String CURRENTBOOKINFO_FILE_PATH = REMOTE_FOLDER_PATH + "/current.xml.gz";
 	private static final int LOCK_FILE_CHECK_PERIOD = 500;			// ms
 	private static final int LOCK_FILE_CHECK_MAX_COUNT = 120;		// total wait 60 sec.
 	private static final int MAX_FILESIZE_TO_UPLOAD = 10485760;		// 10MB
+	private static final int MAX_PARALLEL_DOWNLOADS = 4;
+	private static final String SYNC_MANIFEST_FILE_NAME = "sync2.manifest";
 
 	private static final int BOOKMARKS_BUNDLE_VERSION = 3;
 	private static final int CURRENTBOOKINFO_BUNDLE_VERSION = 3;
@@ -264,6 +274,7 @@ public class Synchronizer {
 	}
 
 	protected void doneSuccessfully() {
+		saveManifest();
 		m_isBusy = false;
 		BackgroundThread.instance().executeGUI(() -> {
 			if (null != m_onStatusListener) {
@@ -273,6 +284,7 @@ public class Synchronizer {
 	}
 
 	protected void doneFailed(String error) {
+		saveManifest();
 		if (m_removeLockFilePassed) {
 			m_isBusy = false;
 			BackgroundThread.instance().executeGUI(() -> {
@@ -297,6 +309,7 @@ public class Synchronizer {
 	}
 
 	protected void doneAborted() {
+		saveManifest();
 		if (m_removeLockFilePassed) {
 			m_isBusy = false;
 			BackgroundThread.instance().executeGUI(() -> {
@@ -349,6 +362,95 @@ public class Synchronizer {
 		return m_isAbortRequested;
 	}
 
+	private SyncManifest getManifest() {
+		if (null == m_manifest)
+			m_manifest = new SyncManifest(new File(m_coolReader.getFilesDir(), SYNC_MANIFEST_FILE_NAME));
+		return m_manifest;
+	}
+
+	private void saveManifest() {
+		if (null != m_manifest)
+			m_manifest.save();
+	}
+
+	private static String recordName(String remoteFilePath) {
+		int pos = remoteFilePath.lastIndexOf('/');
+		return pos >= 0 ? remoteFilePath.substring(pos + 1) : remoteFilePath;
+	}
+
+	/**
+	 * @return true if remote record is not changed since this device transferred it last time
+	 */
+	protected boolean isRemoteRecordUnchanged(String remoteFilePath) {
+		if ((m_flags & SYNC_FLAG_FORCE) != 0 || null == m_remoteHashes)
+			return false;
+		String name = recordName(remoteFilePath);
+		String remoteHash = m_remoteHashes.get(name);
+		return null != remoteHash && remoteHash.equals(getManifest().get(name));
+	}
+
+	/**
+	 * @return true if remote record has the same content as local one
+	 */
+	protected boolean isRemoteRecordEqual(String remoteFilePath, String hash) {
+		if ((m_flags & SYNC_FLAG_FORCE) != 0 || null == m_remoteHashes)
+			return false;
+		return hash.equals(m_remoteHashes.get(recordName(remoteFilePath)));
+	}
+
+	protected void setRecordUploaded(String remoteFilePath, String hash) {
+		String name = recordName(remoteFilePath);
+		if (null != m_remoteHashes)
+			m_remoteHashes.put(name, hash);
+		getManifest().put(name, hash);
+	}
+
+	protected void setRecordDownloaded(String remoteFilePath) {
+		setRecordApplied(remoteFilePath, getRemoteRecordHash(remoteFilePath));
+	}
+
+	/**
+	 * @return hash of remote record from current listing, null if unknown
+	 */
+	protected String getRemoteRecordHash(String remoteFilePath) {
+		if (null == m_remoteHashes)
+			return null;
+		return m_remoteHashes.get(recordName(remoteFilePath));
+	}
+
+	/**
+	 * Record in manifest that remote record with specified hash is applied locally.
+	 * May be called after sync is finished, e.g. when book for record is looked up in DB,
+	 * then caller must save manifest once all records are applied.
+	 */
+	protected void setRecordApplied(String remoteFilePath, String hash) {
+		if (null == hash)
+			return;
+		getManifest().put(recordName(remoteFilePath), hash);
+	}
+
+	private static HashMap<String, String> hashProps(String hash) {
+		HashMap<String, String> customProps = new HashMap<String, String>(1);
+		customProps.put(FileMetadata.CUSTOM_PROP_HASH, hash);
+		return customProps;
+	}
+
+	private static byte[] readFileContent(String filePath) throws IOException {
+		try (FileInputStream inputStream = new FileInputStream(filePath)) {
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			Utils.copyStreamContent(outputStream, inputStream);
+			return outputStream.toByteArray();
+		}
+	}
+
+	private static byte[] gzip(byte[] data) throws IOException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+			gzipOutputStream.write(data);
+		}
+		return outputStream.toByteArray();
+	}
+
 	protected void clearOperation() {
 		m_startOp = null;
 		m_lastOp = null;
@@ -579,6 +681,43 @@ public class Synchronizer {
 		}
 	}
 
+	// Read hashes of all remote records in single listing, the rest of operations compare them with manifest
+	protected class ListRemoteRecordsSyncOperation extends SyncOperation {
+		@Override
+		void call(Runnable onContinue) {
+			log.d("Starting ListRemoteRecordsSyncOperation operation...");
+
+			m_remoteHashes = null;
+			m_remoteAccess.list(REMOTE_FOLDER_PATH, false, new OnOperationCompleteListener<FileMetadataList>() {
+				@Override
+				public void onCompleted(FileMetadataList metalist, boolean ok) {
+					if (!ok)
+						return;		// onFailed() will be called
+					if (checkAbort())
+						return;
+					m_currentOperationIndex++;
+					updateSyncProgress(m_currentOperationIndex, m_totalOperationsCount);
+					HashMap<String, String> hashes = new HashMap<>();
+					if (null != metalist) {
+						for (FileMetadata meta : metalist) {
+							String hash = meta.getCustomPropHash();
+							if (null != hash)
+								hashes.put(meta.fileName, hash);
+						}
+					}
+					m_remoteHashes = hashes;
+					onContinue.run();
+				}
+
+				@Override
+				public void onFailed(Exception e) {
+					log.e("ListRemoteRecordsSyncOperation: list failed: " + e.toString());
+					doneFailed(e.toString());
+				}
+			});
+		}
+	}
+
 	protected class RemoveLockFileSyncOperation extends SyncOperation {
 		@Override
 		void call(Runnable onContinue) {
@@ -640,6 +779,20 @@ public class Synchronizer {
 		void call(Runnable onContinue) {
 			log.d("Starting CheckUploadSettingsSyncOperation operation...");
 
+			// 0. Nothing to ask if remote settings are the same as local ones
+			try {
+				String hash = Utils.calcSHA256(readFileContent(localFilePath));
+				if (isRemoteRecordEqual(remoteFilePath, hash)) {
+					log.d("CheckUploadSettingsSyncOperation: remote settings are not changed");
+					setRecordUploaded(remoteFilePath, hash);
+					m_currentOperationIndex++;
+					updateSyncProgress(m_currentOperationIndex, m_totalOperationsCount);
+					onContinue.run();
+					return;
+				}
+			} catch (IOException ignored) {
+				// local file errors are handled below
+			}
 			// 1. Check remote file modification file
 			m_remoteAccess.stat(remoteFilePath, true, new OnOperationCompleteListener<FileMetadata>() {
 				@Override
@@ -717,21 +870,17 @@ public class Synchronizer {
 			log.d("Starting UploadSettingsSyncOperation operation...");
 
 			try {
-				FileInputStream inputStream = new FileInputStream(localFilePath);
-				ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-				GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream);
-				byte[] buf = new byte[4096];
-				int readBytes;
-				while (true) {
-					readBytes = inputStream.read(buf);
-					if (readBytes > 0)
-						gzipOutputStream.write(buf, 0, readBytes);
-					else
-						break;
+				byte[] content = readFileContent(localFilePath);
+				final String hash = Utils.calcSHA256(content);
+				if (isRemoteRecordEqual(remoteFilePath, hash)) {
+					log.d("UploadSettingsSyncOperation: remote settings are not changed, skipping");
+					setRecordUploaded(remoteFilePath, hash);
+					m_currentOperationIndex++;
+					updateSyncProgress(m_currentOperationIndex, m_totalOperationsCount);
+					onContinue.run();
+					return;
 				}
-				gzipOutputStream.close();
-				outputStream.close();
-				m_remoteAccess.writeFile(remoteFilePath, outputStream.toByteArray(), null, new OnOperationCompleteListener<Boolean>() {
+				m_remoteAccess.writeFile(remoteFilePath, gzip(content), hashProps(hash), new OnOperationCompleteListener<Boolean>() {
 					@Override
 					public void onCompleted(Boolean result, boolean ok) {
 						if (!ok)
@@ -742,6 +891,7 @@ public class Synchronizer {
 						updateSyncProgress(m_currentOperationIndex, m_totalOperationsCount);
 						if (null != result && result) {
 							log.d("file created or updated.");
+							setRecordUploaded(remoteFilePath, hash);
 							onContinue.run();
 						} else {
 							log.e("UploadSettingsSyncOperation: file NOT created!");
@@ -778,6 +928,14 @@ public class Synchronizer {
 		void call(Runnable onContinue) {
 			log.d("Starting CheckDownloadSettingsSyncOperation operation...");
 
+			if (isRemoteRecordUnchanged(remoteFilePath)) {
+				log.d("CheckDownloadSettingsSyncOperation: remote settings are not changed since last sync");
+				m_currentOperationIndex++;
+				updateSyncProgress(m_currentOperationIndex, m_totalOperationsCount);
+				onContinue.run();
+				return;
+			}
+
 			// 1. Check remote file modification file
 			m_remoteAccess.stat(remoteFilePath, true, new OnOperationCompleteListener<FileMetadata>() {
 				@Override
@@ -856,6 +1014,14 @@ public class Synchronizer {
 		void call(Runnable onContinue) {
 			log.d("Starting DownloadSettingsSyncOperation operation...");
 
+			if (isRemoteRecordUnchanged(remoteFilePath)) {
+				log.d("DownloadSettingsSyncOperation: remote settings are not changed since last sync, skipping");
+				m_currentOperationIndex++;
+				updateSyncProgress(m_currentOperationIndex, m_totalOperationsCount);
+				onContinue.run();
+				return;
+			}
+
 			m_remoteAccess.readFile(remoteFilePath, new OnOperationCompleteListener<InputStream>() {
 				@Override
 				public void onCompleted(InputStream inputStream, boolean ok) {
@@ -892,6 +1058,7 @@ public class Synchronizer {
 									m_onStatusListener.onSettingsLoaded(props, (m_flags & SYNC_FLAG_QUIETLY) == 0);
 								}
 							});
+							setRecordDownloaded(remoteFilePath);
 							log.d(" ... done.");
 						} catch (Exception e) {
 							log.e("DownloadSettingsSyncOperation: file opened, but failed to read or write: " + e.toString());
@@ -926,11 +1093,28 @@ public class Synchronizer {
 		void call(Runnable onContinue) {
 			log.d("Starting UploadBookmarksSyncOperation operation...");
 			FileInfo fileInfo = bookInfo.getFileInfo();
-			byte[] data = getCurrentBookBookmarksData(bookInfo);
+			byte[] content = getCurrentBookBookmarksData(bookInfo);
+			byte[] data = null;
+			try {
+				if (null != content)
+					data = gzip(content);
+			} catch (IOException e) {
+				log.e("UploadBookmarksSyncOperation: compression failed: " + e.toString());
+			}
 			if (null != data) {
-				// TODO: replace crc32 with sha512 and remove filename from this
+				// TODO: remove filename from this
 				String fileName = fileInfo.filename + "_" + fileInfo.crc32 + ".bmk.xml.gz";
-				m_remoteAccess.writeFile(REMOTE_FOLDER_PATH + "/" + fileName, data, null, new OnOperationCompleteListener<Boolean>() {
+				final String remoteFilePath = REMOTE_FOLDER_PATH + "/" + fileName;
+				final String hash = Utils.calcSHA256(content);
+				if (isRemoteRecordEqual(remoteFilePath, hash)) {
+					log.d("UploadBookmarksSyncOperation: remote bookmarks are not changed, skipping");
+					setRecordUploaded(remoteFilePath, hash);
+					m_currentOperationIndex++;
+					updateSyncProgress(m_currentOperationIndex, m_totalOperationsCount);
+					onContinue.run();
+					return;
+				}
+				m_remoteAccess.writeFile(remoteFilePath, data, hashProps(hash), new OnOperationCompleteListener<Boolean>() {
 					@Override
 					public void onCompleted(Boolean result, boolean ok) {
 						if (!ok)
@@ -941,6 +1125,7 @@ public class Synchronizer {
 						updateSyncProgress(m_currentOperationIndex, m_totalOperationsCount);
 						if (null != result && result) {
 							log.d("file created or updated.");
+							setRecordUploaded(remoteFilePath, hash);
 							onContinue.run();
 						} else {
 							log.e("UploadBookmarksSyncOperation: file NOT created!");
@@ -964,84 +1149,199 @@ public class Synchronizer {
 		}
 	}
 
-	// download bookmarks for one specified book
-	protected class DownloadBookmarksSyncOperation extends SyncOperation {
-		private final String fileName;
-
-		public DownloadBookmarksSyncOperation(String fileName) {
-			this.fileName = fileName;
-		}
-
+	protected class DownloadAllBookmarksSyncOperation extends SyncOperation {
 		@Override
 		void call(Runnable onContinue) {
-			log.d("Starting DownloadBookmarksSyncOperation operation...");
+			log.d("Starting DownloadAllBookmarksSyncOperation operation...");
 
-			m_remoteAccess.readFile(fileName, new OnOperationCompleteListener<InputStream>() {
+			m_remoteAccess.list(REMOTE_FOLDER_PATH, true, new OnOperationCompleteListener<FileMetadataList>() {
 				@Override
-				public void onCompleted(InputStream inputStream, boolean ok) {
+				public void onCompleted(FileMetadataList metalist, boolean ok) {
 					if (!ok)
 						return;		// onFailed() will be called
 					if (checkAbort())
 						return;
 					m_currentOperationIndex++;
 					updateSyncProgress(m_currentOperationIndex, m_totalOperationsCount);
-					if (null != inputStream) {
-						syncBookmarks(inputStream);
-						onContinue.run();
+					if (null != metalist) {
+						ArrayList<String> fileNames = new ArrayList<>();
+						for (FileMetadata meta : metalist) {
+							if (meta.fileName.endsWith(".bmk.xml.gz")) {
+								String fileName = REMOTE_FOLDER_PATH + "/" + meta.fileName;
+								if (isRemoteRecordUnchanged(fileName)) {
+									log.v("bookmarks in file " + meta.fileName + " are not changed since last sync");
+									continue;
+								}
+								log.d("scheduling bookmark loading from file " + meta.fileName);
+								fileNames.add(fileName);
+							}
+						}
+						// each file is counted as separate operation for progress
+						m_totalOperationsCount += fileNames.size();
+						new BookmarksDownloader(fileNames, onContinue).start();
 					} else {
-						log.e("DownloadBookmarksSyncOperation: can't read bookmarks bundle");
-						doneFailed("Can't read bookmarks bundle");
+						log.e("DownloadAllBookmarksSyncOperation: list return null");
+						doneFailed("list return null");
 					}
 				}
 
 				@Override
 				public void onFailed(Exception e) {
-					log.e("DownloadBookmarksSyncOperation: readFile failed: " + e.toString());
+					log.e("DownloadAllBookmarksSyncOperation: list failed: " + e.toString());
 					doneFailed(e.toString());
 				}
 			});
 		}
 	}
 
-	protected class DownloadAllBookmarksSyncOperation extends SyncOperation {
-		@Override
-		void call(Runnable onContinue) {
-			log.d("Starting DownloadAllBookmarksSyncOperation operation...");
+	/**
+	 * Downloads bookmarks bundles keeping up to MAX_PARALLEL_DOWNLOADS requests in flight.
+	 * Downloaded bundles are parsed in single worker thread while next ones are being fetched,
+	 * all parsed bundles are synced at once after the last one.
+	 */
+	private class BookmarksDownloader {
+		private final ArrayList<String> m_fileNames;
+		private final Runnable m_onContinue;
+		private final ArrayList<BookmarksBundle> m_bundles = new ArrayList<>();
+		// parsing, progress and completion are handled in this thread only
+		private final ExecutorService m_parseExecutor = Executors.newSingleThreadExecutor();
+		private XMLReader m_xmlReader;
+		private int m_nextIndex;
+		private int m_remaining;
+		// requests which results are not yet handled in parser thread, guarded by this
+		private int m_inFlight;
+		private volatile boolean m_finished;
+
+		BookmarksDownloader(ArrayList<String> fileNames, Runnable onContinue) {
+			m_fileNames = fileNames;
+			m_onContinue = onContinue;
+			m_remaining = fileNames.size();
+		}
 
-			m_remoteAccess.list(REMOTE_FOLDER_PATH, true, new OnOperationCompleteListener<FileMetadataList>() {
+		void start() {
+			if (m_fileNames.isEmpty()) {
+				post(this::finish);
+				return;
+			}
+			for (int i = 0; i < MAX_PARALLEL_DOWNLOADS; i++)
+				fetchNext();
+		}
+
+		private void fetchNext() {
+			final String fileName;
+			synchronized (this) {
+				if (m_finished || m_nextIndex >= m_fileNames.size())
+					return;
+				fileName = m_fileNames.get(m_nextIndex++);
+				m_inFlight++;
+			}
+			m_remoteAccess.readFile(fileName, new OnOperationCompleteListener<InputStream>() {
 				@Override
-				public void onCompleted(FileMetadataList metalist, boolean ok) {
+				public void onCompleted(InputStream inputStream, boolean ok) {
 					if (!ok)
 						return;		// onFailed() will be called
-					if (checkAbort())
-						return;
-					m_currentOperationIndex++;
-					updateSyncProgress(m_currentOperationIndex, m_totalOperationsCount);
-					if (null != metalist) {
-						SyncOperation op = DownloadAllBookmarksSyncOperation.this;
-						for (FileMetadata meta : metalist) {
-							if (meta.fileName.endsWith(".bmk.xml.gz")) {
-								log.d("scheduling bookmark loading from file " + meta.fileName);
-								String fileName = REMOTE_FOLDER_PATH + "/" + meta.fileName;
-								SyncOperation downloadBookmark = new DownloadBookmarksSyncOperation(fileName);
-								insertOperation(op, downloadBookmark);
-								op = downloadBookmark;
-							}
+					// network part: read whole bundle in this thread, bundles are small
+					byte[] data = null;
+					if (null != inputStream) {
+						try {
+							ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+							Utils.copyStreamContent(outputStream, inputStream);
+							data = outputStream.toByteArray();
+						} catch (IOException e) {
+							log.e("BookmarksDownloader: can't read " + fileName + ": " + e.toString());
+						} finally {
+							try {
+								inputStream.close();
+							} catch (IOException ignored) {}
 						}
-						onContinue.run();
-					} else {
-						log.e("DownloadAllBookmarksSyncOperation: list return null");
-						doneFailed("list return null");
 					}
+					final byte[] finalData = data;
+					fetchNext();
+					post(() -> {
+						requestDone();
+						onDownloaded(fileName, finalData);
+					});
 				}
 
 				@Override
 				public void onFailed(Exception e) {
-					log.e("DownloadAllBookmarksSyncOperation: list failed: " + e.toString());
-					doneFailed(e.toString());
+					log.e("BookmarksDownloader: readFile failed: " + e.toString());
+					post(() -> {
+						requestDone();
+						fail(e.toString());
+					});
 				}
 			});
 		}
+
+		private synchronized void requestDone() {
+			m_inFlight--;
+		}
+
+		/**
+		 * Run task in parser thread, then shut the thread down once download is finished and no requests are in flight.
+		 */
+		private void post(final Runnable task) {
+			try {
+				m_parseExecutor.execute(() -> {
+					task.run();
+					synchronized (this) {
+						if (!m_finished || m_inFlight > 0)
+							return;
+					}
+					m_parseExecutor.shutdown();
+				});
+			} catch (RejectedExecutionException e) {
+				// should not happen: executor is shut down after results of all requests are handled
+				log.e("BookmarksDownloader: result is dropped, parser is already stopped");
+			}
+		}
+
+		private void onDownloaded(String fileName, byte[] data) {
+			// parser thread
+			if (m_finished)
+				return;
+			if (checkAbort()) {
+				m_finished = true;
+				return;
+			}
+			m_currentOperationIndex++;
+			updateSyncProgress(m_currentOperationIndex, m_totalOperationsCount);
+			if (null == data) {
+				log.e("BookmarksDownloader: can't read bookmarks bundle");
+				fail("Can't read bookmarks bundle");
+				return;
+			}
+			try {
+				if (null == m_xmlReader)
+					m_xmlReader = SAXParserFactory.newInstance().newSAXParser().getXMLReader();
+				BookmarksBundle bundle = parseBookmarks(m_xmlReader, new ByteArrayInputStream(data));
+				if (null != bundle) {
+					bundle.recordPath = fileName;
+					bundle.recordHash = getRemoteRecordHash(fileName);
+					m_bundles.add(bundle);
+				}
+			} catch (Exception e) {
+				log.e("BookmarksDownloader: can't create parser: " + e.toString());
+			}
+			if (--m_remaining == 0)
+				finish();
+		}
+
+		private void fail(String error) {
+			// parser thread
+			if (m_finished)
+				return;
+			m_finished = true;
+			doneFailed(error);
+		}
+
+		private void finish() {
+			// parser thread
+			m_finished = true;
+			syncBookmarks(m_bundles);
+			m_onContinue.run();
+		}
 	}
 
 	protected class UploadCurrentBookInfoSyncOperation extends SyncOperation {
@@ -1058,7 +1358,6 @@ public class Synchronizer {
 			FileInfo fileInfo = bookInfo.getFileInfo();
 			try {
 				ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-				GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream);
 				Properties props = new Properties();
 				props.setInt("version", CURRENTBOOKINFO_BUNDLE_VERSION);
 				props.setProperty("filename", fileInfo.filename);
@@ -1068,10 +1367,19 @@ public class Synchronizer {
 				props.setInt("seriesNumber", fileInfo.seriesNumber);
 				props.setLong("size", fileInfo.size);
 				props.setLong("crc32", fileInfo.crc32);
-				props.storeToXML(gzipOutputStream, "CoolReader current document info");
-				gzipOutputStream.close();
+				props.storeToXML(outputStream, "CoolReader current document info");
 				outputStream.close();
-				m_remoteAccess.writeFile(REMOTE_FOLDER_PATH + "/current.xml.gz", outputStream.toByteArray(), null, new OnOperationCompleteListener<Boolean>() {
+				byte[] content = outputStream.toByteArray();
+				final String hash = Utils.calcSHA256(content);
+				if (isRemoteRecordEqual(CURRENTBOOKINFO_FILE_PATH, hash)) {
+					log.d("UploadCurrentBookInfoSyncOperation: remote current book info is not changed, skipping");
+					setRecordUploaded(CURRENTBOOKINFO_FILE_PATH, hash);
+					m_currentOperationIndex++;
+					updateSyncProgress(m_currentOperationIndex, m_totalOperationsCount);
+					onContinue.run();
+					return;
+				}
+				m_remoteAccess.writeFile(CURRENTBOOKINFO_FILE_PATH, gzip(content), hashProps(hash), new OnOperationCompleteListener<Boolean>() {
 					@Override
 					public void onCompleted(Boolean result, boolean ok) {
 						if (!ok)
@@ -1082,6 +1390,7 @@ public class Synchronizer {
 						updateSyncProgress(m_currentOperationIndex, m_totalOperationsCount);
 						if (null != result && result) {
 							log.d("file created or updated.");
+							setRecordUploaded(CURRENTBOOKINFO_FILE_PATH, hash);
 							onContinue.run();
 						} else {
 							log.e("UploadCurrentBookInfoSyncOperation: failed to save current book info");
@@ -1107,7 +1416,14 @@ public class Synchronizer {
 		void call(Runnable onContinue) {
 			log.d("Starting DownloadCurrentBookInfoSyncOperation operation...");
 
-			m_remoteAccess.readFile(REMOTE_FOLDER_PATH + "/current.xml.gz", new OnOperationCompleteListener<InputStream>() {
+			if (isRemoteRecordUnchanged(CURRENTBOOKINFO_FILE_PATH)) {
+				log.d("DownloadCurrentBookInfoSyncOperation: current book info is not changed since last sync, skipping");
+				m_currentOperationIndex++;
+				updateSyncProgress(m_currentOperationIndex, m_totalOperationsCount);
+				onContinue.run();
+				return;
+			}
+			m_remoteAccess.readFile(CURRENTBOOKINFO_FILE_PATH, new OnOperationCompleteListener<InputStream>() {
 				@Override
 				public void onCompleted(InputStream inputStream, boolean ok) {
 					if (!ok)
@@ -1131,7 +1447,7 @@ public class Synchronizer {
 								fileInfo.seriesNumber = props.getInt("seriesNumber", 0);
 								fileInfo.size = props.getLong("size", 0);
 								fileInfo.crc32 = props.getLong("crc32", 0);
-								syncSetCurrentBook(fileInfo);
+								syncSetCurrentBook(fileInfo, getRemoteRecordHash(CURRENTBOOKINFO_FILE_PATH));
 								onContinue.run();
 							} else {
 								throw new RuntimeException("Incompatible file info version " + version);
@@ -1203,24 +1519,23 @@ public class Synchronizer {
 					}
 					if (needUpload) {
 						// Upload file content
+						// compressed data is written to temporary file and streamed from it, not kept in memory
+						File gzipFile = null;
 						try {
-							byte[] buff = new byte[4096];
-							FileInputStream inputStream = new FileInputStream(bookFile);
-							ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-							GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream);
-							int rb;
-							while ((rb = inputStream.read(buff)) > 0) {
-								gzipOutputStream.write(buff, 0, rb);
+							gzipFile = File.createTempFile("upload", ".gz", m_coolReader.getCacheDir());
+							try (FileInputStream inputStream = new FileInputStream(bookFile);
+								 GZIPOutputStream gzipOutputStream = new GZIPOutputStream(new FileOutputStream(gzipFile))) {
+								Utils.copyStreamContent(gzipOutputStream, inputStream);
 							}
-							gzipOutputStream.close();
-							outputStream.close();
 							HashMap<String, String> customProps = new HashMap<String, String>(2);
 							customProps.put(FileMetadata.CUSTOM_PROP_FINGERPRINT, fingerprint);
 							customProps.put(FileMetadata.CUSTOM_PROP_SOURCE_SIZE, Long.toString(bookFileSize, 10));
 							log.d("UploadCurrentBookBodySyncOperation: starting to upload file: " + bookFileName);
-							m_remoteAccess.writeFile(cloudFilePath, outputStream.toByteArray(), customProps, new OnOperationCompleteListener<Boolean>() {
+							final File finalGzipFile = gzipFile;
+							m_remoteAccess.writeFile(cloudFilePath, new FileInputStream(gzipFile), gzipFile.length(), customProps, new OnOperationCompleteListener<Boolean>() {
 								@Override
 								public void onCompleted(Boolean result, boolean ok) {
+									finalGzipFile.delete();
 									if (!ok)
 										return;        // onFailed() will be called
 									if (checkAbort())
@@ -1238,11 +1553,14 @@ public class Synchronizer {
 
 								@Override
 								public void onFailed(Exception e) {
+									finalGzipFile.delete();
 									log.e("UploadCurrentBookBodySyncOperation: upload failed: " + e.toString());
 									doneFailed(e.toString());
 								}
 							});
 						} catch (Exception e) {
+							if (null != gzipFile)
+								gzipFile.delete();
 							log.e("UploadCurrentBookBodySyncOperation: file read failed: " + e.toString());
 							doneFailed(e.toString());
 						}
@@ -1312,19 +1630,13 @@ public class Synchronizer {
 								}
 								db.findByFingerprints(fingerprints.size() + 10, fingerprints, fileList -> {
 									// db service thread
+									HashSet<String> existingFingerprints = new HashSet<>();
+									for (FileInfo fileInfo : fileList) {
+										if (fileInfo.exists())
+											existingFingerprints.add(Long.toString(fileInfo.crc32));
+									}
 									for (DownloadInfo reqinfo : filesToCheck) {
-										boolean found = false;
-										for (FileInfo fileInfo : fileList) {
-											long req_crc32 = -1;
-											try {
-												req_crc32 = Long.parseLong(reqinfo.m_meta.getCustomPropFingerprint());
-											} catch (Exception ignored) {}
-											if (fileInfo.crc32 == req_crc32 && fileInfo.exists()) {
-												found = true;
-												break;
-											}
-										}
-										if (!found)
+										if (!existingFingerprints.contains(reqinfo.m_meta.getCustomPropFingerprint()))
 											filesToDownload.add(reqinfo);
 									}
 									if (filesToDownload.size() > 0) {
@@ -1491,6 +1803,7 @@ public class Synchronizer {
 					updateSyncProgress(m_currentOperationIndex, m_totalOperationsCount);
 					if (null != result && result) {
 						log.d("data removed.");
+						getManifest().clear();
 						onContinue.run();
 					} else {
 						log.e("DeleteAllAppDataSyncOperation: failed to remove");
@@ -1614,6 +1927,7 @@ public class Synchronizer {
 			addOperation(new SignInQuietlySyncOperation());
 		addOperation(new CheckAppFolderSyncOperation());
 		addOperation(new CheckLockFileSyncOperation());
+		addOperation(new ListRemoteRecordsSyncOperation());
 		if ((m_flags & SYNC_FLAG_FORCE) != 0 || hasTarget(SyncTarget.SETTINGS)) {
 			if ((m_flags & SYNC_FLAG_QUIETLY) != 0)
 				addOperation(new DownloadSettingsSyncOperation(REMOTE_SETTINGS_FILE_PATH));
@@ -1654,6 +1968,7 @@ public class Synchronizer {
 			addOperation(new SignInQuietlySyncOperation());
 		addOperation(new CheckAppFolderSyncOperation());
 		addOperation(new CheckLockFileSyncOperation());
+		addOperation(new ListRemoteRecordsSyncOperation());
 		if ((m_flags & SYNC_FLAG_FORCE) != 0 || hasTarget(SyncTarget.SETTINGS)) {
 			if ((m_flags & SYNC_FLAG_QUIETLY) != 0) {
 				addOperation(new UploadSettingsSyncOperation(m_coolReader.getSettingsFile(0), REMOTE_SETTINGS_FILE_PATH));
@@ -1703,6 +2018,7 @@ public class Synchronizer {
 			addOperation(new SignInQuietlySyncOperation());
 		addOperation(new CheckAppFolderSyncOperation());
 		addOperation(new CheckLockFileSyncOperation());
+		addOperation(new ListRemoteRecordsSyncOperation());
 		for (SyncTarget target : targets) {
 			switch (target) {
 				case SETTINGS:
@@ -1753,6 +2069,7 @@ public class Synchronizer {
 			addOperation(new SignInQuietlySyncOperation());
 		addOperation(new CheckAppFolderSyncOperation());
 		addOperation(new CheckLockFileSyncOperation());
+		addOperation(new ListRemoteRecordsSyncOperation());
 		for (SyncTarget target : targets) {
 			switch (target) {
 				case SETTINGS:
@@ -1816,10 +2133,10 @@ public class Synchronizer {
 		FileInfo fileInfo = bookInfo.getFileInfo();
 		if (null != fileInfo) {
 			try {
+				// not compressed here: hash of bundle is calculated on plain content
 				ByteArrayOutputStream ostream = new ByteArrayOutputStream();
-				GZIPOutputStream gzipOutputStream = new GZIPOutputStream(ostream);
 				XmlSerializer serializer = Xml.newSerializer();
-				serializer.setOutput(gzipOutputStream, "utf-8");
+				serializer.setOutput(ostream, "utf-8");
 				serializer.startDocument("UTF-8", true);
 				// root tag
 				serializer.startTag("", "root");
@@ -1905,7 +2222,6 @@ public class Synchronizer {
 				serializer.endTag("", "root");
 				serializer.endDocument();
 				serializer.flush();
-				gzipOutputStream.close();
 				ostream.close();
 				data = ostream.toByteArray();
 			} catch (Exception e) {
@@ -1915,81 +2231,128 @@ public class Synchronizer {
 		return data;
 	}
 
-	private void syncBookmarks(InputStream inputStream) {
-		log.v("syncBookmarks()");
-		// 1. Read & parse bookmarks from stream
-		FileInfo fileInfo = null;
-		List<Bookmark> bookmarks = null;
+	private static class BookmarksBundle {
+		final FileInfo fileInfo;
+		final List<Bookmark> bookmarks;
+		// remote record this bundle is read from, to be marked in manifest once applied to local book
+		String recordPath;
+		String recordHash;
+
+		BookmarksBundle(FileInfo fileInfo, List<Bookmark> bookmarks) {
+			this.fileInfo = fileInfo;
+			this.bookmarks = bookmarks;
+		}
+	}
+
+	/**
+	 * Parse gzipped bookmarks bundle.
+	 * @param xmlReader is reader to reuse for parsing
+	 * @param inputStream is bundle data
+	 * @return parsed bundle, or null on error
+	 */
+	private BookmarksBundle parseBookmarks(XMLReader xmlReader, InputStream inputStream) {
 		try {
-			SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
-			SAXParser saxParser = saxParserFactory.newSAXParser();
-			XMLReader xmlReader = saxParser.getXMLReader();
 			BookmarksContentHandler contentHandler = new BookmarksContentHandler();
 			xmlReader.setContentHandler(contentHandler);
 			GZIPInputStream gzipInputStream = new GZIPInputStream(inputStream);
 			xmlReader.parse(new InputSource(gzipInputStream));
 			int version = contentHandler.getVersion();
 			if (BOOKMARKS_BUNDLE_VERSION == version) {
-				fileInfo = contentHandler.getFileInfo();
-				bookmarks = contentHandler.getBookmarks();
+				FileInfo fileInfo = contentHandler.getFileInfo();
+				List<Bookmark> bookmarks = contentHandler.getBookmarks();
+				if (null != fileInfo && null != bookmarks)
+					return new BookmarksBundle(fileInfo, bookmarks);
 			} else {
 				throw new RuntimeException("incompatible bookmarks version " + version);
 			}
 		} catch (Exception e) {
-			log.e("syncBookmarks() failed: " + e.toString());
-		}
-		// 2. Sync with ReaderView
-		if (null != fileInfo && null != bookmarks) {
-			log.v("fileInfo & bookmarks decoded.");
-			// Sync with ReaderView and DB
-			final List<Bookmark> finalBookmarks = bookmarks;
-			final FileInfo finalFileInfo = fileInfo;
-			BackgroundThread.instance().executeGUI(() -> m_coolReader.waitForCRDBService(() -> {
-				CRDBService.BookSearchCallback searchCallback = fileList -> {
-					// Check this files for existence
-					ArrayList<FileInfo> newList = new ArrayList<FileInfo>();
-					for (FileInfo fi : fileList) {
-						if (fi.exists())
-							newList.add(fi);
-					}
-					if (fileList.size() != newList.size())
-						fileList = newList;
-					if (0 == fileList.size()) {
-						// this book not found in db
-						// find in filesystem?
-						log.e("file \"" + finalFileInfo.filename + "\" not found in database!");
-					} else {
-						if (fileList.size() > 1) {
-							// multiple files found that matches this fileInfo
-							// select first or nothing?
-							log.e("multiple files with name \"" + finalFileInfo.filename + "\" found, using first.");
-							// TODO: show message
-						}
-						FileInfo dbFileInfo = fileList.get(0);
-						BookInfo bookInfo = new BookInfo(dbFileInfo);
-						for (Bookmark bk : finalBookmarks) {
-							bookInfo.addBookmark(bk);
-						}
-						log.d("Book \"" + dbFileInfo + "\" found, syncing...");
-						if (null != m_onStatusListener)
-							m_onStatusListener.onBookmarksLoaded(bookInfo, (m_flags & SYNC_FLAG_ASK_CHANGED) != 0);
-					}
+			log.e("parseBookmarks() failed: " + e.toString());
+		}
+		return null;
+	}
+
+	private void syncBookmarks(final BookmarksBundle bundle, List<FileInfo> fileList) {
+		// GUI thread
+		// Check this files for existence
+		ArrayList<FileInfo> newList = new ArrayList<FileInfo>();
+		for (FileInfo fi : fileList) {
+			if (fi.exists())
+				newList.add(fi);
+		}
+		if (0 == newList.size()) {
+			// this book not found in db
+			// find in filesystem?
+			log.e("file \"" + bundle.fileInfo.filename + "\" not found in database!");
+		} else {
+			if (newList.size() > 1) {
+				// multiple files found that matches this fileInfo
+				// select first or nothing?
+				log.e("multiple files with name \"" + bundle.fileInfo.filename + "\" found, using first.");
+				// TODO: show message
+			}
+			FileInfo dbFileInfo = newList.get(0);
+			BookInfo bookInfo = new BookInfo(dbFileInfo);
+			for (Bookmark bk : bundle.bookmarks) {
+				bookInfo.addBookmark(bk);
+			}
+			log.d("Book \"" + dbFileInfo + "\" found, syncing...");
+			if (null != m_onStatusListener)
+				m_onStatusListener.onBookmarksLoaded(bookInfo, (m_flags & SYNC_FLAG_ASK_CHANGED) != 0);
+			// record is skipped in next syncs only if it's applied, not found books are retried
+			setRecordApplied(bundle.recordPath, bundle.recordHash);
+		}
+	}
+
+	/**
+	 * Sync bookmarks of all downloaded bundles with ReaderView and DB.
+	 * Books are looked up by fingerprints in single DB query, only not found ones are searched by patterns.
+	 */
+	private void syncBookmarks(final List<BookmarksBundle> bundles) {
+		log.v("syncBookmarks(): " + bundles.size() + " bundles");
+		if (bundles.isEmpty())
+			return;
+		BackgroundThread.instance().executeGUI(() -> m_coolReader.waitForCRDBService(() -> {
+			ArrayList<String> fingerprints = new ArrayList<String>(bundles.size());
+			for (BookmarksBundle bundle : bundles)
+				fingerprints.add(Long.toString(bundle.fileInfo.crc32));
+			m_coolReader.getDB().findByFingerprints(bundles.size() * 4 + 10, fingerprints, fileList -> {
+				// manifest is saved once, when all bundles are looked up
+				final int[] remaining = { bundles.size() };
+				final Runnable onBundleDone = () -> {
+					if (--remaining[0] == 0)
+						saveManifest();
 				};
-				ArrayList<String> fingerprints = new ArrayList<String>();
-				fingerprints.add(Long.toString(finalFileInfo.crc32));
-				m_coolReader.getDB().findByFingerprints(10, fingerprints, fileList -> {
-					if (!fileList.isEmpty()) {
-						searchCallback.onBooksFound(fileList);
+				HashMap<Long, ArrayList<FileInfo>> byCrc32 = new HashMap<>();
+				for (FileInfo fi : fileList) {
+					ArrayList<FileInfo> list = byCrc32.get(fi.crc32);
+					if (null == list) {
+						list = new ArrayList<>();
+						byCrc32.put(fi.crc32, list);
+					}
+					list.add(fi);
+				}
+				for (final BookmarksBundle bundle : bundles) {
+					ArrayList<FileInfo> found = byCrc32.get(bundle.fileInfo.crc32);
+					if (null != found) {
+						syncBookmarks(bundle, found);
+						onBundleDone.run();
 					} else {
 						// fallback, try to find by pattern
-						m_coolReader.getDB().findByPatterns(2, finalFileInfo.authors, finalFileInfo.title, finalFileInfo.series, finalFileInfo.filename, searchCallback);
+						final FileInfo fileInfo = bundle.fileInfo;
+						m_coolReader.getDB().findByPatterns(2, fileInfo.authors, fileInfo.title, fileInfo.series, fileInfo.filename, list -> {
+							syncBookmarks(bundle, list);
+							onBundleDone.run();
+						});
 					}
-				});
-			}));
-		}
+				}
+			});
+		}));
 	}
 
-	private void syncSetCurrentBook(final FileInfo fileInfo) {
+	/**
+	 * @param recordHash is hash of remote current book record, to be marked in manifest if book is found
+	 */
+	private void syncSetCurrentBook(final FileInfo fileInfo, final String recordHash) {
 		log.v("syncSetCurrentBook()");
 		BackgroundThread.instance().executeGUI(() -> m_coolReader.waitForCRDBService(() -> {
 			CRDBService.BookSearchCallback searchCallback = fileList -> {
@@ -2020,6 +2383,8 @@ public class Synchronizer {
 						log.d("Book \"" + dbFileInfo + "\" found, call listener to load this book...");
 						m_onStatusListener.onCurrentBookInfoLoaded(fileList.get(0), (m_flags & SYNC_FLAG_ASK_CHANGED) != 0);
 					}
+					setRecordApplied(CURRENTBOOKINFO_FILE_PATH, recordHash);
+					saveManifest();
 				}
 			};
 			ArrayList<String> fingerprints = new ArrayList<String>();
@@ -3,13 +3,15 @@ package org.coolreader.tts;
 public interface OnTTSStatusListener {
 	/**
 	 * On utterance speech synthesis started.
+	 * @param utteranceId id of utterance passed to say or queueUtterance
 	 */
-	void onUtteranceStart();
+	void onUtteranceStart(String utteranceId);
 
 	/**
 	 * On utterance speech synthesis completed.
+	 * @param utteranceId id of utterance passed to say or queueUtterance
 	 */
-	void onUtteranceDone();
+	void onUtteranceDone(String utteranceId);
 
 	/**
 	 * On error occurred.
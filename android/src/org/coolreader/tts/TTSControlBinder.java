@@ -35,6 +35,13 @@ public class TTSControlBinder extends Binder {
 		mService.say(utterance, callback, new Handler());
 	}
 
+	/**
+	 * Add utterance to speech after current one and already queued ones, only while playing.
+	 */
+	public void queueUtterance(String utteranceId, String utterance, TTSControlService.BooleanResultCallback callback) {
+		mService.queueUtterance(utteranceId, utterance, callback, new Handler());
+	}
+
 	public void pause(TTSControlService.BooleanResultCallback callback) {
 		mService.pause(callback, new Handler());
 	}
@@ -57,6 +57,7 @@ import org.coolreader.db.Task;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -105,6 +106,8 @@ public class TTSControlService extends BaseService {
 	private String mAuthors;
 	private String mTitle;
 	private String mCurrentUtterance;
+	// utterances queued to TTS engine after current one: utterance id -> text
+	private final LinkedHashMap<String, String> mQueuedUtterances = new LinkedHashMap<>();
 	private Bitmap mCoverBitmap;
 	private Bundle mTTSParamsBundle = null;			// for API21+
 	private HashMap<String, String> mTTSParamsMap;	// for API<21
@@ -743,6 +746,15 @@ public class TTSControlService extends BaseService {
 	 * @param utterance Utterance to speech.
 	 */
 	private boolean say_impl(String utterance) {
+		return say_impl(utterance, CR3_UTTERANCE_ID);
+	}
+
+	/**
+	 * Add text to TTS engine queue.
+	 * @param utterance Utterance to speech.
+	 * @param utteranceId Utterance id passed to progress callbacks.
+	 */
+	private boolean say_impl(String utterance, String utteranceId) {
 		if (null != mTTS) {
 			int ret;
 			if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
@@ -750,13 +762,13 @@ public class TTSControlService extends BaseService {
 					mTTSParamsBundle = new Bundle();
 					mTTSParamsBundle.putInt(TextToSpeech.Engine.KEY_PARAM_STREAM, AudioManager.STREAM_MUSIC);
 				}
-				ret = mTTS.speak(utterance, TextToSpeech.QUEUE_ADD, mTTSParamsBundle, CR3_UTTERANCE_ID);
+				ret = mTTS.speak(utterance, TextToSpeech.QUEUE_ADD, mTTSParamsBundle, utteranceId);
 			} else {
 				if (null == mTTSParamsMap) {
 					mTTSParamsMap = new HashMap<String, String>();
 					mTTSParamsMap.put(TextToSpeech.Engine.KEY_PARAM_STREAM, String.valueOf(AudioManager.STREAM_MUSIC));
-					mTTSParamsMap.put(TextToSpeech.Engine.KEY_PARAM_UTTERANCE_ID, CR3_UTTERANCE_ID);
 				}
+				mTTSParamsMap.put(TextToSpeech.Engine.KEY_PARAM_UTTERANCE_ID, utteranceId);
 				ret = mTTS.speak(utterance, TextToSpeech.QUEUE_ADD, mTTSParamsMap);
 			}
 			return TextToSpeech.SUCCESS == ret;
@@ -764,11 +776,43 @@ public class TTSControlService extends BaseService {
 		return false;
 	}
 
+	/**
+	 * Called when engine starts to speech utterance: queued utterance becomes current one.
+	 */
+	private void onUtteranceStart_impl(String utteranceId) {
+		synchronized (mLocker) {
+			String utterance = mQueuedUtterances.remove(utteranceId);
+			if (null != utterance)
+				mCurrentUtterance = utterance;
+		}
+		if (null != mStatusListener)
+			mStatusListener.onUtteranceStart(utteranceId);
+	}
+
+	/**
+	 * Called when utterance is spoken: next sentence is requested only if nothing is queued after it.
+	 */
+	private void onUtteranceDone_impl(String utteranceId) {
+		boolean hasQueued;
+		synchronized (mLocker) {
+			hasQueued = !mQueuedUtterances.isEmpty();
+		}
+		if (null != mStatusListener) {
+			mStatusListener.onUtteranceDone(utteranceId);
+			if (!hasQueued)
+				mStatusListener.onNextSentenceRequested(mBinder);
+		}
+	}
+
 	/**
 	 * Stop to speech current utterance. Optional callback can be used to implement sentence switch.
 	 * @param callback runnable to executed after completion.
 	 */
 	private boolean stopUtterance_impl(Runnable callback) {
+		synchronized (mLocker) {
+			// engine queue is flushed by stop()
+			mQueuedUtterances.clear();
+		}
 		if (null != mTTS) {
 			mOnUtteranceStopOnce = callback;
 			if (mTTS.isSpeaking()) {
@@ -1079,6 +1123,13 @@ public class TTSControlService extends BaseService {
 			@Override
 			public void work() {
 				mCurrentUtterance = utterance;
+				boolean hadQueued;
+				synchronized (mLocker) {
+					hadQueued = !mQueuedUtterances.isEmpty();
+					mQueuedUtterances.clear();
+				}
+				if (hadQueued && null != mTTS)
+					mTTS.stop(); // drop queued utterances, new one is spoken instead
 				boolean result;
 				if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP)
 					mMediaSessionCallback.onPlay();
@@ -1094,6 +1145,35 @@ public class TTSControlService extends BaseService {
 		});
 	}
 
+	public void queueUtterance(String utteranceId, String utterance, BooleanResultCallback callback, Handler handler) {
+		execTask(new Task("queueUtterance") {
+			@Override
+			public void work() {
+				boolean result = false;
+				boolean queued = false;
+				synchronized (mLocker) {
+					// while paused, queued utterances are dropped: current one is spoken again on resume
+					// before API 15 there is no utterance start callback, so caller must speak sentences one by one
+					if (State.PLAYING == mState && Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1) {
+						mQueuedUtterances.put(utteranceId, utterance);
+						queued = true;
+					}
+				}
+				if (queued) {
+					result = say_impl(utterance, utteranceId);
+					if (!result) {
+						synchronized (mLocker) {
+							mQueuedUtterances.remove(utteranceId);
+						}
+					}
+				}
+				final boolean res = result;
+				if (null != callback)
+					sendTask(handler, () -> callback.onResult(res));
+			}
+		});
+	}
+
 	public void pause(BooleanResultCallback callback, Handler handler) {
 		execTask(new Task("pause") {
 			@Override
@@ -1402,15 +1482,13 @@ public class TTSControlService extends BaseService {
 						mOnUtteranceStopOnce.run();
 						mOnUtteranceStopOnce = null;
 					}
-					if (null != mStatusListener) {
-						mStatusListener.onUtteranceDone();
-						mStatusListener.onNextSentenceRequested(mBinder);
-					}
+					onUtteranceDone_impl(utteranceId);
 				});
 			} else {
 				mTTS.setOnUtteranceProgressListener(new UtteranceProgressListener() {
 					@Override
 					public void onStart(String utteranceId) {
+						onUtteranceStart_impl(utteranceId);
 					}
 
 					@Override
@@ -1419,10 +1497,7 @@ public class TTSControlService extends BaseService {
 							mOnUtteranceStopOnce.run();
 							mOnUtteranceStopOnce = null;
 						}
-						if (null != mStatusListener) {
-							mStatusListener.onUtteranceDone();
-							mStatusListener.onNextSentenceRequested(mBinder);
-						}
+						onUtteranceDone_impl(utteranceId);
 						synchronized (mLocker) {
 							if (null != mMediaPlayer) {
 								mMediaPlayer.stop();
@@ -1450,10 +1525,7 @@ public class TTSControlService extends BaseService {
 								mOnUtteranceStopOnce.run();
 								mOnUtteranceStopOnce = null;
 							}
-							if (null != mStatusListener) {
-								mStatusListener.onUtteranceDone();
-								mStatusListener.onNextSentenceRequested(mBinder);
-							}
+							onUtteranceDone_impl(utteranceId);
 							synchronized (mLocker) {
 								if (null != mMediaPlayer) {
 									mMediaPlayer.stop();
@@ -1482,10 +1554,7 @@ public class TTSControlService extends BaseService {
 								mOnUtteranceStopOnce.run();
 								mOnUtteranceStopOnce = null;
 							}
-							if (null != mStatusListener) {
-								mStatusListener.onUtteranceDone();
-								mStatusListener.onNextSentenceRequested(mBinder);
-							}
+							onUtteranceDone_impl(utteranceId);
 							synchronized (mLocker) {
 								if (null != mMediaPlayer) {
 									mMediaPlayer.stop();